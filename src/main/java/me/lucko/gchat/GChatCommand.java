@@ -25,6 +25,9 @@
 
 package me.lucko.gchat;
 
+import me.lucko.gchat.api.ChatLane;
+import me.lucko.gchat.placeholder.MonitoredPlaceholder;
+import me.lucko.gchat.queue.ChatQueue;
 import net.kyori.text.TextComponent;
 import net.kyori.text.adapter.bungeecord.TextAdapter;
 import net.kyori.text.format.TextColor;
@@ -72,7 +75,50 @@ public class GChatCommand extends Command {
             return;
         }
 
+        if (subCommand.equals("stats") && sender.hasPermission("gchat.command.stats")) {
+            ChatQueue queue = plugin.getChatQueue();
+            if (queue == null) {
+                TextAdapter.sendComponent(sender, PREFIX.append(TextComponent.of("Overload protection is not enabled.").color(TextColor.WHITE).decoration(TextDecoration.BOLD, false)));
+                return;
+            }
+
+            TextAdapter.sendComponent(sender, PREFIX.append(TextComponent.of("Chat queue statistics:").color(TextColor.WHITE).decoration(TextDecoration.BOLD, false)));
+            for (ChatLane lane : ChatLane.values()) {
+                sendStat(sender, "Queued (" + lane.name().toLowerCase() + ")", queue.getQueued(lane));
+            }
+            sendStat(sender, "Submitted", queue.getSubmitted());
+            sendStat(sender, "Processed", queue.getProcessed());
+            sendStat(sender, "Coalesced", queue.getCoalesced());
+            sendStat(sender, "Dropped", queue.getShed());
+            sendStat(sender, "Average wait (us)", queue.getAverageLatency());
+            sendStat(sender, "Max wait (us)", queue.getMaxLatency());
+            return;
+        }
+
+        if (subCommand.equals("providers") && sender.hasPermission("gchat.command.providers")) {
+            TextAdapter.sendComponent(sender, PREFIX.append(TextComponent.of("Placeholder providers:").color(TextColor.WHITE).decoration(TextDecoration.BOLD, false)));
+            for (MonitoredPlaceholder placeholder : plugin.getMonitoredPlaceholders()) {
+                MonitoredPlaceholder.State state = placeholder.getState();
+                TextColor stateColor = state == MonitoredPlaceholder.State.CLOSED ? TextColor.GREEN : state == MonitoredPlaceholder.State.OPEN ? TextColor.RED : TextColor.YELLOW;
+
+                TextAdapter.sendComponent(sender, TextComponent.of("- " + placeholder.getName() + " ").color(TextColor.GRAY)
+                        .append(TextComponent.of(state.name().toLowerCase().replace('_', '-')).color(stateColor)));
+                TextAdapter.sendComponent(sender, TextComponent.of("  calls: " + placeholder.getCalls() +
+                        ", errors: " + placeholder.getErrors() +
+                        ", slow: " + placeholder.getSlowCalls() +
+                        ", trips: " + placeholder.getTrips() +
+                        ", avg: " + placeholder.getAverageTime() + "us" +
+                        ", max: " + placeholder.getMaxTime() + "us").color(TextColor.WHITE));
+            }
+            return;
+        }
+
         TextComponent unknownCommand = PREFIX.append(TextComponent.of("Unknown sub command.").color(TextColor.WHITE).decoration(TextDecoration.BOLD, false));
         TextAdapter.sendComponent(sender, unknownCommand);
     }
+
+    private static void sendStat(CommandSender sender, String name, long value) {
+        TextAdapter.sendComponent(sender, TextComponent.of("- " + name + ": ").color(TextColor.GRAY)
+                .append(TextComponent.of(Long.toString(value)).color(TextColor.WHITE)));
+    }
 }
@@ -25,18 +25,20 @@
 
 package me.lucko.gchat;
 
-import com.google.common.collect.Iterables;
 import lombok.RequiredArgsConstructor;
+import me.lucko.gchat.MessageRenderer.PreparedFormat;
 import me.lucko.gchat.api.ChatFormat;
 import me.lucko.gchat.api.events.GChatEvent;
 import me.lucko.gchat.api.events.GChatMessageFormedEvent;
 import me.lucko.gchat.api.events.GChatMessageSendEvent;
+import me.lucko.gchat.log.ChatLogRecord;
+import me.lucko.gchat.mention.Mention;
+import me.lucko.gchat.mute.Mute;
+import me.lucko.gchat.queue.ChatQueue;
+import me.lucko.gchat.queue.SendCoalescer;
 import net.kyori.text.Component;
 import net.kyori.text.TextComponent;
 import net.kyori.text.adapter.bungeecord.TextAdapter;
-import net.kyori.text.event.ClickEvent;
-import net.kyori.text.event.HoverEvent;
-import net.kyori.text.serializer.legacy.LegacyComponentSerializer;
 import net.kyori.text.serializer.plain.PlainComponentSerializer;
 import net.md_5.bungee.api.connection.ProxiedPlayer;
 import net.md_5.bungee.api.event.ChatEvent;
@@ -44,11 +46,18 @@ import net.md_5.bungee.api.plugin.Listener;
 import net.md_5.bungee.event.EventHandler;
 import net.md_5.bungee.event.EventPriority;
 
-import java.util.regex.Pattern;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Predicate;
 
 @RequiredArgsConstructor
 public class GChatListener implements Listener {
-    private static final Pattern STRIP_COLOR_PATTERN = Pattern.compile("(?i)(" + String.valueOf('§') + "|&)[0-9A-FK-OR]");
     private final GChatPlugin plugin;
 
     @EventHandler(priority = EventPriority.NORMAL)
@@ -58,6 +67,14 @@ public class GChatListener implements Listener {
 
         ProxiedPlayer player = ((ProxiedPlayer) e.getSender());
 
+        // reject messages from muted players before doing any other work
+        Mute mute = plugin.getMuteManager().getMute(player);
+        if (mute != null) {
+            e.setCancelled(true);
+            plugin.getMuteManager().sendMutedMessage(player, mute);
+            return;
+        }
+
         GChatEvent gChatEvent = new GChatEvent(player, e);
         plugin.getProxy().getPluginManager().callEvent(gChatEvent);
 
@@ -100,63 +117,192 @@ public class GChatListener implements Listener {
         // we have a format, so cancel the event.
         e.setCancelled(true);
 
-        // get the actual message format, and apply replacements.
-        String formatText = format.getFormatText();
-        formatText = plugin.replacePlaceholders(player, formatText);
-
-        // get any hover text, and apply replacements.
-        String hover = format.getHoverText();
-        hover = plugin.replacePlaceholders(player, hover);
-
-        // get the click event type, and the value if present.
-        ClickEvent.Action clickType = format.getClickType();
-        String clickValue = format.getClickValue();
-        if (clickType != null) {
-            clickValue = plugin.replacePlaceholders(player, clickValue);
+        ChatQueue queue = plugin.getChatQueue();
+        if (queue != null) {
+            queue.submit(player, format, e.getMessage());
+        } else {
+            handle(player, format, Collections.singletonList(e.getMessage()));
         }
+    }
 
-        // get the players message, and remove any color if they don't have permission for it.
-        String playerMessage;
-        if (player.hasPermission("gchat.color")) {
-            playerMessage = e.getMessage();
-        } else {
-            playerMessage = STRIP_COLOR_PATTERN.matcher(e.getMessage()).replaceAll("");
+    /**
+     * Formats and sends chat messages from a player to the network.
+     *
+     * <p>If more than one message is given, they are sent together as a single multi-line
+     * message. This happens when the {@link ChatQueue} coalesces messages under load.</p>
+     *
+     * @param player the player sending the messages
+     * @param format the format to use
+     * @param rawMessages the messages
+     */
+    public void handle(ProxiedPlayer player, ChatFormat format, List<String> rawMessages) {
+        // get the players messages, and remove any color if they don't have permission for it.
+        // then pass them through the chat filter
+        List<String> playerMessages = new ArrayList<>(rawMessages.size());
+        for (String rawMessage : rawMessages) {
+            String playerMessage = plugin.getFilterHandler().filter(player, plugin.getRenderer().formatPlayerMessage(player, rawMessage));
+            if (playerMessage != null) {
+                playerMessages.add(playerMessage);
+            }
+        }
+        if (playerMessages.isEmpty()) {
+            return;
         }
 
-        // apply the players message to the chat format
-        formatText = formatText.replace("{message}", playerMessage);
+        send(player, format, playerMessages, p -> true);
+    }
 
-        // apply any hover events
-        HoverEvent hoverEvent = hover == null ? null : HoverEvent.showText(LegacyComponentSerializer.legacy().deserialize(hover, '&'));
-        ClickEvent clickEvent = clickType == null ? null : ClickEvent.of(clickType, clickValue);
+    /**
+     * Formats and sends messages from a player to the players in an audience.
+     *
+     * <p>The messages are sent as given, without being filtered or having their colors removed.</p>
+     *
+     * @param player the player sending the messages
+     * @param format the format to use
+     * @param playerMessages the messages
+     * @param audience the players who should receive the messages
+     */
+    public void send(ProxiedPlayer player, ChatFormat format, List<String> playerMessages, Predicate<ProxiedPlayer> audience) {
+        // render the format into a message, as seen by the console
+        MessageRenderer renderer = plugin.getRenderer();
+        PreparedFormat prepared = renderer.prepare(format, player, null);
+        List<String> consoleValues = renderer.resolveViewer(prepared, player, null);
+        ViewerGroup consoleGroup = new ViewerGroup(renderer.applyViewer(prepared, consoleValues));
 
-        // convert the format to a message
-        TextComponent message = LegacyComponentSerializer.legacy().deserialize(formatText, '&').toBuilder()
-                .applyDeep(m -> {
-                    if (hoverEvent != null) {
-                        m.hoverEvent(hoverEvent);
-                    }
-                    if (clickEvent != null) {
-                        m.clickEvent(clickEvent);
-                    }
-                })
-                .build();
+        for (String playerMessage : playerMessages) {
+            TextComponent line = renderer.render(consoleGroup.prepared, playerMessage);
+
+            GChatMessageFormedEvent formedEvent = new GChatMessageFormedEvent(player, format, playerMessage, line);
+            plugin.getProxy().getPluginManager().callEvent(formedEvent);
 
-        GChatMessageFormedEvent formedEvent = new GChatMessageFormedEvent(player, format, playerMessage, message);
-        plugin.getProxy().getPluginManager().callEvent(formedEvent);
+            // log chat message
+            plugin.getChatLogger().log(new ChatLogRecord(PlainComponentSerializer.INSTANCE.serialize(line), format.getId(), player.getName(), null, playerMessage));
+
+            consoleGroup.lines.add(line);
+        }
 
-        // log chat message
-        plugin.getChatLogger().info(PlainComponentSerializer.INSTANCE.serialize(message));
+        String playerMessage = String.join("\n", playerMessages);
 
-        // send the message to online players
-        Iterable<ProxiedPlayer> recipients = Iterables.filter(plugin.getProxy().getPlayers(), p -> {
+        // send the message to online players, skipping players ignoring the sender before any events are created
+        boolean ignoreExempt = player.hasPermission("gchat.ignore.exempt");
+        List<ProxiedPlayer> candidates = plugin.getFanOut().filter(plugin.getProxy().getPlayers(), p ->
+                audience.test(p) && (ignoreExempt || !plugin.getIgnoreManager().isIgnoring(p.getUniqueId(), player.getUniqueId())));
+
+        // events are called on this thread, as listeners don't expect to be called concurrently
+        List<ProxiedPlayer> recipients = new ArrayList<>(candidates.size());
+        for (ProxiedPlayer p : candidates) {
             boolean cancelled = plugin.getConfig().isRequireReceivePermission() && !player.hasPermission("gchat.receive");
             GChatMessageSendEvent sendEvent = new GChatMessageSendEvent(player, p, format, playerMessage, cancelled);
             plugin.getProxy().getPluginManager().callEvent(sendEvent);
-            return !sendEvent.isCancelled();
-        });
+            if (!sendEvent.isCancelled()) {
+                recipients.add(p);
+            }
+        }
+
+        SendCoalescer coalescer = plugin.getSendCoalescer();
+
+        // find any players mentioned in the message
+        List<List<Mention>> lineMentions = new ArrayList<>(playerMessages.size());
+        Set<UUID> mentioned = new HashSet<>();
+        for (String line : playerMessages) {
+            List<Mention> mentions = new ArrayList<>();
+            for (Mention mention : plugin.getMentionManager().findMentions(line)) {
+                if (!mention.getPlayer().equals(player.getUniqueId())) {
+                    mentions.add(mention);
+                    mentioned.add(mention.getPlayer());
+                }
+            }
+            lineMentions.add(mentions);
+        }
+
+        if (mentioned.isEmpty() && !prepared.isViewerDependent()) {
+            coalescer.send(recipients, joinLines(consoleGroup.lines), format.getCoalesceWindow());
+            return;
+        }
+
+        // group recipients by the values of any viewer placeholders, so each distinct variant
+        // of the message is only rendered (and serialized) once
+        Map<List<String>, ViewerGroup> groups = new HashMap<>();
+        groups.put(consoleValues, consoleGroup);
+
+        for (ProxiedPlayer recipient : recipients) {
+            List<String> values = renderer.resolveViewer(prepared, player, recipient);
+            ViewerGroup group = groups.get(values);
+            if (group == null) {
+                group = new ViewerGroup(renderer.applyViewer(prepared, values));
+                groups.put(values, group);
+            }
+
+            if (!mentioned.contains(recipient.getUniqueId())) {
+                group.recipients.add(recipient);
+                continue;
+            }
+
+            // mentioned players receive their own variant of the message, with the mention highlighted
+            List<TextComponent> lines = group.getLines(renderer, playerMessages);
+            List<TextComponent> highlightedLines = new ArrayList<>(lines.size());
+            for (int i = 0; i < lines.size(); i++) {
+                List<Mention> recipientMentions = new ArrayList<>();
+                for (Mention mention : lineMentions.get(i)) {
+                    if (mention.getPlayer().equals(recipient.getUniqueId())) {
+                        recipientMentions.add(mention);
+                    }
+                }
+
+                if (recipientMentions.isEmpty()) {
+                    highlightedLines.add(lines.get(i));
+                } else {
+                    String highlighted = renderer.highlightMentions(group.prepared, playerMessages.get(i), recipientMentions);
+                    highlightedLines.add(renderer.render(group.prepared, highlighted));
+                }
+            }
 
-        TextAdapter.sendComponent(recipients, message);
+            coalescer.send(recipient, joinLines(highlightedLines), format.getCoalesceWindow());
+            plugin.getMentionManager().notifyMentioned(player, recipient);
+        }
+
+        for (ViewerGroup group : groups.values()) {
+            if (!group.recipients.isEmpty()) {
+                coalescer.send(group.recipients, joinLines(group.getLines(renderer, playerMessages)), format.getCoalesceWindow());
+            }
+        }
+    }
+
+    private static Component joinLines(List<TextComponent> lines) {
+        if (lines.size() == 1) {
+            return lines.get(0);
+        }
+
+        TextComponent.Builder builder = TextComponent.builder("");
+        for (int i = 0; i < lines.size(); i++) {
+            if (i != 0) {
+                builder.append(TextComponent.newline());
+            }
+            builder.append(lines.get(i));
+        }
+        return builder.build();
+    }
+
+    /**
+     * The recipients who see the same variant of a message.
+     */
+    private static final class ViewerGroup {
+        private final PreparedFormat prepared;
+        private final List<TextComponent> lines = new ArrayList<>();
+        private final List<ProxiedPlayer> recipients = new ArrayList<>();
+
+        ViewerGroup(PreparedFormat prepared) {
+            this.prepared = prepared;
+        }
+
+        List<TextComponent> getLines(MessageRenderer renderer, List<String> playerMessages) {
+            if (this.lines.isEmpty()) {
+                for (String playerMessage : playerMessages) {
+                    this.lines.add(renderer.render(this.prepared, playerMessage));
+                }
+            }
+            return this.lines;
+        }
     }
 
 }
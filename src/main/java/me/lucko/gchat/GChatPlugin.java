@@ -25,31 +25,69 @@
 
 package me.lucko.gchat;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import lombok.Getter;
 import lombok.NonNull;
+import me.lucko.gchat.api.Audience;
 import me.lucko.gchat.api.ChatFormat;
 import me.lucko.gchat.api.GChatApi;
 import me.lucko.gchat.api.Placeholder;
+import me.lucko.gchat.api.PlayerPreferences;
+import me.lucko.gchat.api.ViewerPlaceholder;
+import me.lucko.gchat.api.events.GChatBroadcastEvent;
 import me.lucko.gchat.config.GChatConfig;
+import me.lucko.gchat.filter.FilterHandler;
 import me.lucko.gchat.hooks.LuckPermsHook;
+import me.lucko.gchat.ignore.IgnoreCommand;
+import me.lucko.gchat.ignore.IgnoreManager;
+import me.lucko.gchat.mention.MentionManager;
+import me.lucko.gchat.log.ChatLogFormatter;
+import me.lucko.gchat.log.ChatLogRecord;
+import me.lucko.gchat.log.RotatingLogHandler;
+import me.lucko.gchat.messaging.Mailbox;
+import me.lucko.gchat.messaging.MessageCommand;
+import me.lucko.gchat.mute.MuteCommand;
+import me.lucko.gchat.mute.MuteManager;
+import me.lucko.gchat.mute.UnmuteCommand;
+import me.lucko.gchat.messaging.PrivateMessageManager;
+import me.lucko.gchat.messaging.ReplyCommand;
+import me.lucko.gchat.messaging.SocialSpyCommand;
+import me.lucko.gchat.placeholder.MonitoredPlaceholder;
+import me.lucko.gchat.placeholder.NetworkPlaceholders;
 import me.lucko.gchat.placeholder.StandardPlaceholders;
+import me.lucko.gchat.placeholder.ViewerRelationPlaceholder;
+import me.lucko.gchat.queue.ChatQueue;
+import me.lucko.gchat.queue.FanOut;
+import me.lucko.gchat.queue.SendCoalescer;
+import me.lucko.gchat.storage.PreferenceStore;
+import me.lucko.gchat.storage.RuntimeSnapshot;
+import net.kyori.text.Component;
+import net.kyori.text.serializer.plain.PlainComponentSerializer;
 import net.md_5.bungee.api.connection.ProxiedPlayer;
+import net.md_5.bungee.api.connection.Server;
 import net.md_5.bungee.api.plugin.Plugin;
 import net.md_5.bungee.config.Configuration;
 import net.md_5.bungee.config.ConfigurationProvider;
 import net.md_5.bungee.config.YamlConfiguration;
-import net.md_5.bungee.log.ConciseFormatter;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.logging.FileHandler;
+import java.util.function.Predicate;
+import java.util.logging.Handler;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -57,13 +95,58 @@ import java.util.regex.Pattern;
 public class GChatPlugin extends Plugin implements GChatApi {
     private static final Pattern PLACEHOLDER_PATTERN = Pattern.compile("\\{([^\\{\\}]+)\\}");
 
+    /** The runtime snapshot sections, see {@link RuntimeSnapshot} */
+    private static final String REPLIES_SECTION = "replies";
+    private static final String PLACEHOLDER_SECTION_PREFIX = "placeholder:";
+
     @Getter
     private GChatConfig config;
 
     @Getter
     private Logger chatLogger;
 
-    private final Set<Placeholder> placeholders = ConcurrentHashMap.newKeySet();
+    @Getter
+    private final MessageRenderer renderer = new MessageRenderer(this);
+
+    @Getter
+    private final FilterHandler filterHandler = new FilterHandler(this);
+
+    @Getter
+    private PreferenceStore preferenceStore;
+
+    @Getter
+    private PrivateMessageManager privateMessageManager;
+
+    @Getter
+    private IgnoreManager ignoreManager;
+
+    @Getter
+    private Mailbox mailbox;
+
+    @Getter
+    private ChatQueue chatQueue;
+
+    @Getter
+    private final SendCoalescer sendCoalescer = new SendCoalescer(this);
+
+    @Getter
+    private FanOut fanOut;
+
+    @Getter
+    private MentionManager mentionManager;
+
+    @Getter
+    private MuteManager muteManager;
+
+    private NetworkPlaceholders networkPlaceholders;
+
+    private GChatListener listener;
+
+    /** Runtime state saved when gChat was last disabled, read as each component starts */
+    private RuntimeSnapshot snapshot;
+
+    private final Map<Placeholder, MonitoredPlaceholder> placeholders = new ConcurrentHashMap<>();
+    private final Set<ViewerPlaceholder> viewerPlaceholders = ConcurrentHashMap.newKeySet();
 
     @Override
     public void onEnable() {
@@ -76,19 +159,92 @@ public class GChatPlugin extends Plugin implements GChatApi {
             throw new RuntimeException("Failed to load config", e);
         }
 
+        // load runtime state saved when gChat was last disabled
+        if (config.isWarmRestart()) {
+            loadSnapshot();
+        }
+
         // init placeholder hooks
-        placeholders.add(new StandardPlaceholders());
+        registerPlaceholder(new StandardPlaceholders());
+        viewerPlaceholders.add(new ViewerRelationPlaceholder(this));
+
+        // init network counts
+        networkPlaceholders = new NetworkPlaceholders(this);
+        networkPlaceholders.rebuild();
+        registerPlaceholder(networkPlaceholders);
+        getProxy().getPluginManager().registerListener(this, networkPlaceholders);
 
         // hook with luckperms
         if (getProxy().getPluginManager().getPlugin("LuckPerms") != null) {
-            placeholders.add(new LuckPermsHook());
+            registerPlaceholder(new LuckPermsHook());
+        }
+
+        // open the preference store
+        preferenceStore = new PreferenceStore(this);
+        try {
+            preferenceStore.open();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open preference store", e);
+        }
+        getProxy().getPluginManager().registerListener(this, preferenceStore);
+
+        // init ignore lists
+        ignoreManager = new IgnoreManager(this);
+        getProxy().getPluginManager().registerListener(this, ignoreManager);
+
+        // init mention detection
+        mentionManager = new MentionManager(this);
+        getProxy().registerChannel(MentionManager.PING_CHANNEL);
+        getProxy().getPluginManager().registerListener(this, mentionManager);
+        mentionManager.scheduleRebuild();
+
+        // load mutes
+        muteManager = new MuteManager(this);
+        muteManager.open();
+
+        // start the fan out threads
+        if (config.isFanOut()) {
+            fanOut = new FanOut(this, config.getFanOutThreshold(), config.getFanOutThreads(), config.getFanOutQueueCapacity());
+        } else {
+            fanOut = new FanOut(this, Integer.MAX_VALUE, 0, 0);
         }
 
         // register chat listener
-        getProxy().getPluginManager().registerListener(this, new GChatListener(this));
+        listener = new GChatListener(this);
+        getProxy().getPluginManager().registerListener(this, listener);
+
+        // start the chat queue
+        if (config.isOverload()) {
+            chatQueue = new ChatQueue(this, listener, config.getOverloadCapacity(), config.getOverloadWorkers(), config.getOverloadMaxCoalesce());
+        }
 
         // register command
         getProxy().getPluginManager().registerCommand(this, new GChatCommand(this));
+        getProxy().getPluginManager().registerCommand(this, new IgnoreCommand(this));
+        getProxy().getPluginManager().registerCommand(this, new MuteCommand(this));
+        getProxy().getPluginManager().registerCommand(this, new UnmuteCommand(this));
+
+        // register private messaging
+        if (config.isPrivateMessages()) {
+            privateMessageManager = new PrivateMessageManager(this);
+            restoreSnapshot(REPLIES_SECTION, privateMessageManager::readSnapshot);
+            getProxy().getPluginManager().registerListener(this, privateMessageManager);
+
+            // hold messages sent to offline players
+            if (config.isMailbox()) {
+                mailbox = new Mailbox(this);
+                try {
+                    mailbox.open();
+                } catch (IOException e) {
+                    throw new RuntimeException("Failed to open mailbox", e);
+                }
+                getProxy().getPluginManager().registerListener(this, mailbox);
+            }
+
+            getProxy().getPluginManager().registerCommand(this, new MessageCommand(this));
+            getProxy().getPluginManager().registerCommand(this, new ReplyCommand(this));
+            getProxy().getPluginManager().registerCommand(this, new SocialSpyCommand(this));
+        }
 
         // init api singleton
         GChat.setApi(this);
@@ -96,23 +252,164 @@ public class GChatPlugin extends Plugin implements GChatApi {
 
     @Override
     public void onDisable() {
+        // stop processing chat
+        if (chatQueue != null) {
+            chatQueue.shutdown();
+        }
+
+        // send any messages still being held
+        sendCoalescer.flush();
+        if (fanOut != null) {
+            fanOut.shutdown();
+        }
+
+        // save runtime state, so it can be restored if gChat is enabled again shortly
+        if (config != null && config.isWarmRestart()) {
+            saveSnapshot();
+        }
+
+        // save mutes
+        if (muteManager != null) {
+            muteManager.close();
+        }
+
+        // write any messages for offline players
+        if (mailbox != null) {
+            mailbox.close();
+        }
+
+        // flush any pending preference changes
+        if (preferenceStore != null) {
+            preferenceStore.close();
+        }
+
+        // write any chat still waiting to be logged
+        if (chatLogger != null && chatLogger != getLogger()) {
+            for (Handler handler : chatLogger.getHandlers()) {
+                handler.close();
+            }
+        }
+
         // null the api singleton
         GChat.setApi(null);
     }
 
+    private File getSnapshotFile() {
+        return new File(new File(getDataFolder(), "data"), "runtime.dat");
+    }
+
+    private void loadSnapshot() {
+        try {
+            snapshot = RuntimeSnapshot.load(getSnapshotFile(), config.getWarmRestartMaxAge(), config.getSnapshotFingerprint());
+        } catch (IOException e) {
+            getLogger().warning("Unable to load runtime state from " + getSnapshotFile() + ", starting without it.");
+            e.printStackTrace();
+        }
+    }
+
+    private void restoreSnapshot(String section, RuntimeSnapshot.SectionReader reader) {
+        RuntimeSnapshot snapshot = this.snapshot;
+        if (snapshot == null) {
+            return;
+        }
+
+        try {
+            snapshot.read(section, reader);
+        } catch (IOException e) {
+            getLogger().warning("Unable to restore runtime state for " + section);
+            e.printStackTrace();
+        }
+    }
+
+    private void saveSnapshot() {
+        RuntimeSnapshot snapshot = new RuntimeSnapshot(config.getSnapshotFingerprint());
+        try {
+            if (privateMessageManager != null) {
+                snapshot.put(REPLIES_SECTION, privateMessageManager::writeSnapshot);
+            }
+            for (MonitoredPlaceholder placeholder : placeholders.values()) {
+                String id = getSnapshotId(placeholder);
+                if (id != null) {
+                    snapshot.put(PLACEHOLDER_SECTION_PREFIX + id, placeholder::writeSnapshot);
+                }
+            }
+            snapshot.save(getSnapshotFile());
+        } catch (IOException e) {
+            getLogger().severe("Unable to save runtime state to " + getSnapshotFile());
+            e.printStackTrace();
+        }
+    }
+
     @Override
     public boolean registerPlaceholder(@NonNull Placeholder placeholder) {
-        return placeholders.add(placeholder);
+        MonitoredPlaceholder monitored = new MonitoredPlaceholder(this, placeholder);
+        if (placeholders.putIfAbsent(placeholder, monitored) != null) {
+            return false;
+        }
+
+        String id = getSnapshotId(monitored);
+        if (id != null) {
+            restoreSnapshot(PLACEHOLDER_SECTION_PREFIX + id, monitored::readSnapshot);
+        }
+        return true;
+    }
+
+    /**
+     * Gets the id a placeholder's state is saved under in the runtime snapshot.
+     *
+     * <p>Placeholders are identified by class name, so placeholders without a stable name
+     * (lambdas and anonymous classes), or whose class is registered more than once, aren't
+     * saved.</p>
+     *
+     * @param placeholder the placeholder
+     * @return the id, or null if the placeholder has no stable id
+     */
+    private String getSnapshotId(MonitoredPlaceholder placeholder) {
+        Class<?> clazz = placeholder.getPlaceholder().getClass();
+        if (clazz.isSynthetic() || clazz.isAnonymousClass() || clazz.isLocalClass() || clazz.getName().contains("$$Lambda")) {
+            return null;
+        }
+
+        for (Placeholder other : placeholders.keySet()) {
+            if (other != placeholder.getPlaceholder() && other.getClass() == clazz) {
+                return null;
+            }
+        }
+        return clazz.getName();
     }
 
     @Override
     public boolean unregisterPlaceholder(@NonNull Placeholder placeholder) {
-        return placeholders.remove(placeholder);
+        return placeholders.remove(placeholder) != null;
     }
 
     @Override
     public ImmutableSet<Placeholder> getPlaceholders() {
-        return ImmutableSet.copyOf(placeholders);
+        return ImmutableSet.copyOf(placeholders.keySet());
+    }
+
+    /**
+     * Gets the monitoring state of the registered placeholders.
+     *
+     * @return the monitored placeholders
+     */
+    public Collection<MonitoredPlaceholder> getMonitoredPlaceholders() {
+        return Collections.unmodifiableCollection(placeholders.values());
+    }
+
+    @Override
+    public boolean registerViewerPlaceholder(@NonNull ViewerPlaceholder placeholder) {
+        return viewerPlaceholders.add(placeholder);
+    }
+
+    @Override
+    public boolean unregisterViewerPlaceholder(@NonNull ViewerPlaceholder placeholder) {
+        return viewerPlaceholders.remove(placeholder);
+    }
+
+    @Override
+    public ImmutableSet<ViewerPlaceholder> getViewerPlaceholders() {
+        return ImmutableSet.copyOf(viewerPlaceholders);
     }
 
     @Override
@@ -120,6 +417,11 @@ public class GChatPlugin extends Plugin implements GChatApi {
         return config.getFormats();
     }
 
+    @Override
+    public List<ChatFormat> getFormats(@NonNull String server) {
+        return ImmutableList.copyOf(config.getFormats(server));
+    }
+
     @Override
     public String replacePlaceholders(ProxiedPlayer player, String text) {
         if (text == null || text.isEmpty() || placeholders.isEmpty()) {
@@ -131,7 +433,7 @@ public class GChatPlugin extends Plugin implements GChatApi {
             String definition = matcher.group(1);
             String replacement = null;
 
-            for (Placeholder placeholder : placeholders) {
+            for (MonitoredPlaceholder placeholder : placeholders.values()) {
                 replacement = placeholder.getReplacement(player, definition);
                 if (replacement != null) {
                     break;
@@ -146,17 +448,97 @@ public class GChatPlugin extends Plugin implements GChatApi {
         return text;
     }
 
+    @Override
+    public String replaceViewerPlaceholder(ProxiedPlayer player, ProxiedPlayer viewer, String definition) {
+        for (ViewerPlaceholder placeholder : viewerPlaceholders) {
+            String replacement = placeholder.getReplacement(player, viewer, definition);
+            if (replacement != null) {
+                return replacement;
+            }
+        }
+
+        // fallback to a normal placeholder for the viewer
+        if (viewer == null) {
+            return "";
+        }
+
+        String text = "{" + definition + "}";
+        String replacement = replacePlaceholders(viewer, text);
+        return replacement.equals(text) ? "" : replacement;
+    }
+
     @Override
     public Optional<ChatFormat> getFormat(ProxiedPlayer player) {
-        return config.getFormats().stream()
-                .filter(f -> f.canUse(player))
-                .findFirst();
+        Server server = player.getServer();
+        for (ChatFormat format : config.getFormats(server == null ? null : server.getInfo().getName())) {
+            if (format.canUse(player)) {
+                return Optional.of(format);
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public boolean sendFormatted(@NonNull ProxiedPlayer player, @NonNull String formatId, @NonNull String message, @NonNull Audience audience) {
+        Server server = player.getServer();
+        for (ChatFormat format : config.getFormats(server == null ? null : server.getInfo().getName())) {
+            if (format.getId().equalsIgnoreCase(formatId)) {
+                listener.send(player, format, Collections.singletonList(message), resolveAudience(audience));
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void broadcast(@NonNull Component message, @NonNull Audience audience) {
+        String plainMessage = PlainComponentSerializer.INSTANCE.serialize(message);
+        getProxy().getPluginManager().callEvent(new GChatBroadcastEvent(plainMessage, message, audience));
+
+        List<ProxiedPlayer> recipients = fanOut.filter(getProxy().getPlayers(), resolveAudience(audience));
+        sendCoalescer.send(recipients, message, 0);
+
+        chatLogger.log(new ChatLogRecord(plainMessage, "broadcast", "CONSOLE", null, plainMessage));
+    }
+
+    private Predicate<ProxiedPlayer> resolveAudience(Audience audience) {
+        switch (audience.getType()) {
+            case SERVER:
+                return p -> {
+                    Server server = p.getServer();
+                    return server != null && server.getInfo().getName().equalsIgnoreCase(audience.getValue());
+                };
+            case PERMISSION:
+                return p -> p.hasPermission(audience.getValue());
+            case CHANNEL:
+                List<String> servers = config.getServerGroups().get(audience.getValue().toLowerCase(Locale.ROOT));
+                if (servers == null) {
+                    return p -> false;
+                }
+                return p -> {
+                    Server server = p.getServer();
+                    return server != null && servers.contains(server.getInfo().getName());
+                };
+            default:
+                return p -> true;
+        }
+    }
+
+    @Override
+    public Optional<PlayerPreferences> getPreferences(@NonNull UUID uuid) {
+        return preferenceStore.getLoaded(uuid);
+    }
+
+    @Override
+    public CompletableFuture<PlayerPreferences> loadPreferences(@NonNull UUID uuid) {
+        return preferenceStore.load(uuid);
     }
 
     @Override
     public boolean reloadConfig() {
         try {
             config = loadConfig();
+            networkPlaceholders.rebuild();
             return true;
         } catch (Exception e) {
             e.printStackTrace();
@@ -191,10 +573,16 @@ public class GChatPlugin extends Plugin implements GChatApi {
             Logger logger = Logger.getLogger("gChat");
             logger.setUseParentHandlers(false);
 
-            final ConciseFormatter formatter = new ConciseFormatter(false);
+            // close the handlers from before a reload
+            for (Handler handler : logger.getHandlers()) {
+                logger.removeHandler(handler);
+                handler.close();
+            }
+
+            final ChatLogFormatter formatter = new ChatLogFormatter();
 
             if (config.isLogChat()) {
-                FileHandler logFile = new FileHandler(config.getLogFile(), true);
+                RotatingLogHandler logFile = new RotatingLogHandler(Paths.get(config.getLogFile()), config.isLogRotateDaily(), config.getLogMaxFileSize(), config.isLogCompress(), config.getLogMaxAge(), config.getLogMaxTotalSize());
                 logFile.setFormatter(formatter);
                 logger.addHandler(logFile);
                 getLogger().info("Logging chat to " + config.getLogFile());
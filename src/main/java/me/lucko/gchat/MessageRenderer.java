@@ -0,0 +1,596 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import me.lucko.gchat.api.ChatFormat;
+import me.lucko.gchat.emoji.Emoji;
+import me.lucko.gchat.emoji.EmojiMatch;
+import me.lucko.gchat.link.Link;
+import me.lucko.gchat.mention.Mention;
+import me.lucko.gchat.util.LegacyText;
+import net.kyori.text.Component;
+import net.kyori.text.TextComponent;
+import net.kyori.text.event.ClickEvent;
+import net.kyori.text.event.HoverEvent;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Renders {@link ChatFormat}s into components.
+ */
+@RequiredArgsConstructor
+public class MessageRenderer {
+    private static final Pattern STRIP_COLOR_PATTERN = Pattern.compile("(?i)(" + String.valueOf('§') + "|&)[0-9A-FK-OR]");
+    private static final Pattern TARGET_PLACEHOLDER_PATTERN = Pattern.compile("\\{target_([^\\{\\}]+)\\}");
+    private static final Pattern VIEWER_PLACEHOLDER_PATTERN = Pattern.compile("\\{viewer_([^\\{\\}]+)\\}");
+
+    private static final String MESSAGE_PLACEHOLDER = "{message}";
+
+    private final GChatPlugin plugin;
+
+    /**
+     * Removes any color codes from the players message, unless they have permission to use them.
+     *
+     * @param player the player who sent the message
+     * @param message the message
+     * @return the message to apply to a format
+     */
+    public String formatPlayerMessage(ProxiedPlayer player, String message) {
+        if (player.hasPermission("gchat.color")) {
+            return message;
+        }
+        return STRIP_COLOR_PATTERN.matcher(message).replaceAll("");
+    }
+
+    /**
+     * Renders a format for the given player.
+     *
+     * <p>If a target is given, placeholders prefixed with "target_" (e.g. "{target_name}") are
+     * replaced in the context of the target, and all others in the context of the player.</p>
+     *
+     * <p>Viewer placeholders are replaced as if the message is being viewed by the console.</p>
+     *
+     * @param format the format
+     * @param player the player sending the message
+     * @param target the other party of the message, or null
+     * @param playerMessage the players message, already passed through {@link #formatPlayerMessage(ProxiedPlayer, String)}
+     * @return the rendered message
+     */
+    public TextComponent render(ChatFormat format, ProxiedPlayer player, ProxiedPlayer target, String playerMessage) {
+        PreparedFormat prepared = prepare(format, player, target);
+        return render(applyViewer(prepared, resolveViewer(prepared, player, null)), playerMessage);
+    }
+
+    /**
+     * Renders a format for the given player, for a message to a player who isn't online.
+     *
+     * <p>"{target_name}" is replaced with the name of the target, and any other placeholders
+     * prefixed with "target_" with the placeholder fallback.</p>
+     *
+     * @param format the format
+     * @param player the player sending the message
+     * @param targetName the name of the other party of the message
+     * @param playerMessage the players message, already passed through {@link #formatPlayerMessage(ProxiedPlayer, String)}
+     * @return the rendered message
+     */
+    public TextComponent renderOffline(ChatFormat format, ProxiedPlayer player, String targetName, String playerMessage) {
+        PreparedFormat prepared = prepare(format, player, null, targetName);
+        return render(applyViewer(prepared, resolveViewer(prepared, player, null)), playerMessage);
+    }
+
+    /**
+     * Applies placeholders to a format, so it can be rendered with one or more messages.
+     *
+     * <p>Viewer placeholders are left in place, to be resolved with {@link #resolveViewer(PreparedFormat, ProxiedPlayer, ProxiedPlayer)}
+     * and applied with {@link #applyViewer(PreparedFormat, List)}.</p>
+     *
+     * @param format the format
+     * @param player the player sending the message
+     * @param target the other party of the message, or null
+     * @return the prepared format
+     */
+    public PreparedFormat prepare(ChatFormat format, ProxiedPlayer player, ProxiedPlayer target) {
+        return prepare(format, player, target, null);
+    }
+
+    private PreparedFormat prepare(ChatFormat format, ProxiedPlayer player, ProxiedPlayer target, String offlineTargetName) {
+        // get the actual message format, and apply replacements.
+        String formatText = replacePlaceholders(player, target, offlineTargetName, format.getFormatText());
+
+        // get any hover text, and apply replacements.
+        String hover = replacePlaceholders(player, target, offlineTargetName, format.getHoverText());
+
+        // get the click event type, and the value if present.
+        ClickEvent.Action clickType = format.getClickType();
+        String clickValue = format.getClickValue();
+        if (clickType != null) {
+            clickValue = replacePlaceholders(player, target, offlineTargetName, clickValue);
+        }
+
+        // find any placeholders which depend on the viewer
+        List<String> viewerDefinitions = new ArrayList<>();
+        findViewerDefinitions(formatText, viewerDefinitions);
+        findViewerDefinitions(hover, viewerDefinitions);
+        if (clickType != null) {
+            findViewerDefinitions(clickValue, viewerDefinitions);
+        }
+
+        // links are only made clickable if the format allows it, and the player has permission
+        boolean links = plugin.getConfig().getLinkScanner() != null && format.isLinks() && player.hasPermission("gchat.links");
+        boolean emoji = plugin.getConfig().getEmojiReplacer() != null && player.hasPermission("gchat.emoji");
+
+        return new PreparedFormat(formatText, hover, clickType, clickValue, links, emoji, viewerDefinitions);
+    }
+
+    /**
+     * Resolves the viewer placeholders in a prepared format for a viewer.
+     *
+     * <p>Viewers which resolve to equal lists will see identical messages.</p>
+     *
+     * @param prepared the prepared format
+     * @param player the player sending the message
+     * @param viewer the player viewing the message, or null for the console
+     * @return the replacements, in the order of {@link PreparedFormat#getViewerDefinitions()}
+     */
+    public List<String> resolveViewer(PreparedFormat prepared, ProxiedPlayer player, ProxiedPlayer viewer) {
+        List<String> definitions = prepared.getViewerDefinitions();
+        if (definitions.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<String> values = new ArrayList<>(definitions.size());
+        for (String definition : definitions) {
+            values.add(plugin.replaceViewerPlaceholder(player, viewer, definition));
+        }
+        return values;
+    }
+
+    /**
+     * Applies the replacements for viewer placeholders to a prepared format.
+     *
+     * @param prepared the prepared format
+     * @param values the replacements, from {@link #resolveViewer(PreparedFormat, ProxiedPlayer, ProxiedPlayer)}
+     * @return the prepared format, with no remaining viewer placeholders
+     */
+    public PreparedFormat applyViewer(PreparedFormat prepared, List<String> values) {
+        if (values.isEmpty()) {
+            return prepared;
+        }
+
+        String formatText = prepared.getFormatText();
+        String hover = prepared.getHoverText();
+        String clickValue = prepared.getClickValue();
+        for (int i = 0; i < values.size(); i++) {
+            String placeholder = "{viewer_" + prepared.getViewerDefinitions().get(i) + "}";
+            String value = values.get(i);
+
+            formatText = formatText.replace(placeholder, value);
+            if (hover != null) {
+                hover = hover.replace(placeholder, value);
+            }
+            if (clickValue != null) {
+                clickValue = clickValue.replace(placeholder, value);
+            }
+        }
+
+        return new PreparedFormat(formatText, hover, prepared.getClickType(), clickValue, prepared.isLinks(), prepared.isEmoji(), Collections.emptyList());
+    }
+
+    /**
+     * Renders a prepared format with the given message.
+     *
+     * @param prepared the prepared format
+     * @param playerMessage the players message, already passed through {@link #formatPlayerMessage(ProxiedPlayer, String)}
+     * @return the rendered message
+     */
+    public TextComponent render(PreparedFormat prepared, String playerMessage) {
+        // find any links and shortcodes in the message, expand the shortcodes, and record where they both are
+        List<Span> spans = Collections.emptyList();
+        if (prepared.isLinks() || prepared.isEmoji()) {
+            List<Link> links = prepared.isLinks() ? plugin.getConfig().getLinkScanner().scan(playerMessage) : Collections.emptyList();
+            List<EmojiMatch> emoji = prepared.isEmoji() ? plugin.getConfig().getEmojiReplacer().find(playerMessage) : Collections.emptyList();
+            if (!links.isEmpty() || !emoji.isEmpty()) {
+                spans = new ArrayList<>();
+                playerMessage = markSpans(prepared, playerMessage, links, emoji, spans);
+            }
+        }
+
+        // apply the players message to the chat format
+        String formatText;
+        if (spans.isEmpty()) {
+            formatText = prepared.getFormatText().replace(MESSAGE_PLACEHOLDER, playerMessage);
+        } else {
+            List<Span> displayed = new ArrayList<>();
+            formatText = insertMessage(prepared.getFormatText(), playerMessage, spans, displayed);
+            spans = displayed;
+        }
+
+        // convert the format to a message. the events are set on the root, and inherited by each part
+        TextComponent message = LegacyText.parse(formatText, prepared.getHoverEvent(), prepared.getClickEvent());
+
+        if (spans.isEmpty()) {
+            return message;
+        }
+        return (TextComponent) applySpans(message, new SpanState(spans));
+    }
+
+    /**
+     * Highlights the given mentions within a players message.
+     *
+     * <p>After each mention, the formatting which was active before it is restored.</p>
+     *
+     * @param prepared the format the message will be rendered with
+     * @param playerMessage the players message
+     * @param mentions the mentions to highlight
+     * @return the message with the mentions highlighted
+     */
+    public String highlightMentions(PreparedFormat prepared, String playerMessage, List<Mention> mentions) {
+        String highlight = plugin.getConfig().getMentionsHighlight();
+        String formatPrefix = getFormatPrefix(prepared);
+
+        StringBuilder sb = new StringBuilder(playerMessage.length() + mentions.size() * 16);
+        int last = 0;
+        for (Mention mention : mentions) {
+            sb.append(playerMessage, last, mention.getStart());
+            sb.append(highlight.replace("{mention}", playerMessage.substring(mention.getStart(), mention.getEnd())));
+            sb.append(getLastColors(formatPrefix + playerMessage.substring(0, mention.getEnd())));
+            last = mention.getEnd();
+        }
+        sb.append(playerMessage, last, playerMessage.length());
+        return sb.toString();
+    }
+
+    /**
+     * Gets the legacy color and format codes active at the end of the given text.
+     *
+     * @param text the text
+     * @return the active codes
+     */
+    private static String getLastColors(String text) {
+        StringBuilder formats = new StringBuilder();
+        char color = 0;
+        for (int i = 0; i < text.length() - 1; i++) {
+            char c = text.charAt(i);
+            if (c != '&' && c != '§') {
+                continue;
+            }
+
+            char code = Character.toLowerCase(text.charAt(i + 1));
+            if ((code >= '0' && code <= '9') || (code >= 'a' && code <= 'f')) {
+                color = code;
+                formats.setLength(0);
+            } else if (code >= 'k' && code <= 'o') {
+                formats.append('&').append(code);
+            } else if (code == 'r') {
+                color = 0;
+                formats.setLength(0);
+            } else {
+                continue;
+            }
+            i++;
+        }
+
+        return (color == 0 ? "&r" : "&" + color) + formats;
+    }
+
+    private static String getFormatPrefix(PreparedFormat prepared) {
+        int messageIndex = prepared.getFormatText().indexOf(MESSAGE_PLACEHOLDER);
+        return messageIndex < 0 ? "" : prepared.getFormatText().substring(0, messageIndex);
+    }
+
+    /**
+     * Replaces shortcodes in a message with their emoji, and records where links and emoji
+     * are in the result.
+     *
+     * <p>Shortcodes within links are left as they are.</p>
+     *
+     * @param prepared the format the message will be rendered with
+     * @param message the message
+     * @param links the links in the message
+     * @param emoji the shortcodes in the message
+     * @param spans the list to add the span of each link and emoji to, in order
+     * @return the message with shortcodes replaced
+     */
+    private static String markSpans(PreparedFormat prepared, String message, List<Link> links, List<EmojiMatch> emoji, List<Span> spans) {
+        StringBuilder sb = new StringBuilder(message.length() + emoji.size() * 4);
+        int last = 0;
+        int linkIndex = 0;
+        int emojiIndex = 0;
+        while (linkIndex < links.size() || emojiIndex < emoji.size()) {
+            Link link = linkIndex < links.size() ? links.get(linkIndex) : null;
+            EmojiMatch match = emojiIndex < emoji.size() ? emoji.get(emojiIndex) : null;
+
+            if (match != null && (link == null || match.getEnd() <= link.getStart())) {
+                Emoji e = match.getEmoji();
+                sb.append(message, last, match.getStart());
+                int start = sb.length();
+                sb.append(e.getGlyph());
+                if (e.getHoverEvent() != null) {
+                    spans.add(new Span(start, sb.length(), null, e.getHoverEvent()));
+                }
+
+                // restore the formatting from before the emoji, if it changed it
+                if (e.getGlyph().indexOf('&') >= 0 || e.getGlyph().indexOf('§') >= 0) {
+                    sb.append(getLastColors(getFormatPrefix(prepared) + message.substring(0, match.getStart())));
+                }
+
+                last = match.getEnd();
+                emojiIndex++;
+            } else if (link != null && (match == null || link.getEnd() <= match.getStart())) {
+                sb.append(message, last, link.getStart());
+                int start = sb.length();
+                sb.append(message, link.getStart(), link.getEnd());
+                spans.add(new Span(start, sb.length(), ClickEvent.openUrl(link.getUrl()), null));
+
+                last = link.getEnd();
+                linkIndex++;
+            } else {
+                // the shortcode is part of a link
+                emojiIndex++;
+            }
+        }
+        sb.append(message, last, message.length());
+        return sb.toString();
+    }
+
+    /**
+     * Applies a players message to each "{message}" in a format, and finds where each span
+     * of the message is displayed once the result is parsed.
+     *
+     * @param format the format text
+     * @param message the message
+     * @param spans the spans within the message
+     * @param displayed the list to add the spans within the displayed text to, in order
+     * @return the format with the message applied
+     */
+    private static String insertMessage(String format, String message, List<Span> spans, List<Span> displayed) {
+        StringBuilder sb = new StringBuilder(format.length() + message.length());
+        List<Span> placed = new ArrayList<>(spans.size());
+        int last = 0;
+        int index;
+        while ((index = format.indexOf(MESSAGE_PLACEHOLDER, last)) >= 0) {
+            sb.append(format, last, index);
+            int offset = sb.length();
+            sb.append(message);
+            for (Span span : spans) {
+                placed.add(new Span(offset + span.start, offset + span.end, span.clickEvent, span.hoverEvent));
+            }
+            last = index + MESSAGE_PLACEHOLDER.length();
+        }
+        sb.append(format, last, format.length());
+        String text = sb.toString();
+
+        int[] offsets = new int[placed.size() * 2];
+        for (int i = 0; i < placed.size(); i++) {
+            offsets[i * 2] = placed.get(i).start;
+            offsets[i * 2 + 1] = placed.get(i).end;
+        }
+        LegacyText.toDisplayedOffsets(text, offsets);
+
+        for (int i = 0; i < placed.size(); i++) {
+            Span span = placed.get(i);
+            // spans made up only of color codes aren't displayed at all
+            if (offsets[i * 2 + 1] > offsets[i * 2]) {
+                displayed.add(new Span(offsets[i * 2], offsets[i * 2 + 1], span.clickEvent, span.hoverEvent));
+            }
+        }
+        return text;
+    }
+
+    /**
+     * Splits the text of a component (and its children) where the spans start and end, giving
+     * the text within each span its events.
+     *
+     * <p>Components are visited in the order their text is displayed, so a span which covers
+     * more than one component (e.g. due to a color code within it) is still handled.</p>
+     *
+     * @param component the component
+     * @param state the spans, and the position within them
+     * @return the component with the spans applied
+     */
+    private static Component applySpans(Component component, SpanState state) {
+        Component ret = component;
+        if (component instanceof TextComponent) {
+            ret = splitText((TextComponent) component, state);
+        }
+
+        if (component.children().isEmpty()) {
+            return ret;
+        }
+
+        List<Component> children = new ArrayList<>(component.children().size());
+        for (Component child : component.children()) {
+            children.add(applySpans(child, state));
+        }
+
+        if (ret == component) {
+            return component.children(children);
+        }
+
+        // the text was split into parts, which come before the original children
+        List<Component> parts = new ArrayList<>(ret.children());
+        parts.addAll(children);
+        return ret.children(parts);
+    }
+
+    private static Component splitText(TextComponent text, SpanState state) {
+        String content = text.content();
+        int start = state.position;
+        int end = start + content.length();
+        state.position = end;
+
+        if (state.index >= state.spans.size() || state.spans.get(state.index).start >= end) {
+            return text;
+        }
+
+        // replace the component with an empty one of the same style, containing each part of its
+        // text. parts outside of spans inherit the original style.
+        TextComponent.Builder builder = TextComponent.builder("").style(text.style());
+        int position = start;
+        while (position < end) {
+            Span span = state.index < state.spans.size() ? state.spans.get(state.index) : null;
+            if (span == null || span.start >= end) {
+                builder.append(TextComponent.of(content.substring(position - start)));
+                break;
+            }
+
+            if (position < span.start) {
+                builder.append(TextComponent.of(content.substring(position - start, span.start - start)));
+                position = span.start;
+            }
+
+            int partEnd = Math.min(end, span.end);
+            TextComponent part = TextComponent.of(content.substring(position - start, partEnd - start));
+            if (span.clickEvent != null) {
+                part = part.clickEvent(span.clickEvent);
+            }
+            if (span.hoverEvent != null) {
+                part = part.hoverEvent(span.hoverEvent);
+            }
+            builder.append(part);
+
+            position = partEnd;
+            if (partEnd == span.end) {
+                state.index++;
+            }
+        }
+
+        return builder.build();
+    }
+
+    private static void findViewerDefinitions(String text, List<String> definitions) {
+        if (text == null || !text.contains("{viewer_")) {
+            return;
+        }
+
+        Matcher matcher = VIEWER_PLACEHOLDER_PATTERN.matcher(text);
+        while (matcher.find()) {
+            String definition = matcher.group(1);
+            if (!definitions.contains(definition)) {
+                definitions.add(definition);
+            }
+        }
+    }
+
+    private String replacePlaceholders(ProxiedPlayer player, ProxiedPlayer target, String offlineTargetName, String text) {
+        if ((target != null || offlineTargetName != null) && text != null && text.contains("{target_")) {
+            Matcher matcher = TARGET_PLACEHOLDER_PATTERN.matcher(text);
+            StringBuffer sb = new StringBuffer();
+            while (matcher.find()) {
+                String replacement;
+                if (target != null) {
+                    String definition = "{" + matcher.group(1) + "}";
+                    replacement = plugin.replacePlaceholders(target, definition);
+                    replacement = replacement.equals(definition) ? matcher.group() : replacement;
+                } else {
+                    replacement = matcher.group(1).equals("name") ? offlineTargetName : plugin.getConfig().getPlaceholderFallback();
+                }
+                matcher.appendReplacement(sb, Matcher.quoteReplacement(replacement));
+            }
+            matcher.appendTail(sb);
+            text = sb.toString();
+        }
+        return plugin.replacePlaceholders(player, text);
+    }
+
+    /**
+     * A {@link ChatFormat} with its placeholders applied, waiting for a message.
+     */
+    @Getter
+    public static final class PreparedFormat {
+        private final String formatText;
+        private final String hoverText;
+        private final ClickEvent.Action clickType;
+        private final String clickValue;
+        private final boolean links;
+        private final boolean emoji;
+        private final HoverEvent hoverEvent;
+        private final ClickEvent clickEvent;
+
+        /** The definitions of any viewer placeholders still present, without the "viewer_" prefix */
+        private final List<String> viewerDefinitions;
+
+        public PreparedFormat(String formatText, String hoverText, ClickEvent.Action clickType, String clickValue, boolean links, boolean emoji, List<String> viewerDefinitions) {
+            this.formatText = formatText;
+            this.hoverText = hoverText;
+            this.clickType = clickType;
+            this.clickValue = clickValue;
+            this.links = links;
+            this.emoji = emoji;
+            this.viewerDefinitions = viewerDefinitions;
+
+            // the events are only used once viewer placeholders have been applied
+            this.hoverEvent = hoverText == null || !viewerDefinitions.isEmpty() ? null : HoverEvent.showText(LegacyText.parse(hoverText));
+            this.clickEvent = clickType == null ? null : ClickEvent.of(clickType, clickValue);
+        }
+
+        public boolean isViewerDependent() {
+            return !viewerDefinitions.isEmpty();
+        }
+    }
+
+    /**
+     * A range of text within a message, and the events to apply to it.
+     */
+    private static final class Span {
+        private final int start;
+        private final int end;
+        private final ClickEvent clickEvent;
+        private final HoverEvent hoverEvent;
+
+        Span(int start, int end, ClickEvent clickEvent, HoverEvent hoverEvent) {
+            this.start = start;
+            this.end = end;
+            this.clickEvent = clickEvent;
+            this.hoverEvent = hoverEvent;
+        }
+    }
+
+    /**
+     * The position of {@link #applySpans(Component, SpanState)} within the spans of a message.
+     */
+    private static final class SpanState {
+        private final List<Span> spans;
+
+        /** The next span which hasn't been fully applied */
+        private int index = 0;
+
+        /** The number of characters displayed before the component being visited */
+        private int position = 0;
+
+        SpanState(List<Span> spans) {
+            this.spans = spans;
+        }
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.analytics;
+
+/**
+ * A count-min sketch, for estimating how often items occur in a stream in fixed memory.
+ *
+ * <p>Estimates are never lower than the true count, and exceed it by at most
+ * {@code e / width} of the total count with probability {@code 1 - e^-depth}. Counts are
+ * updated conservatively, which reduces the over-estimate further.</p>
+ */
+public final class CountMinSketch {
+    private final int depth;
+    private final int mask;
+    private final long[] table;
+
+    /**
+     * Creates a new sketch.
+     *
+     * @param depth the number of rows
+     * @param width the number of counters per row, rounded up to a power of two
+     */
+    public CountMinSketch(int depth, int width) {
+        int w = Integer.highestOneBit(Math.max(2, width - 1)) << 1;
+        this.depth = depth;
+        this.mask = w - 1;
+        this.table = new long[depth * w];
+    }
+
+    /**
+     * Adds an item to the sketch.
+     *
+     * @param item the item
+     * @return the estimated count of the item, including this occurrence
+     */
+    public long add(CharSequence item) {
+        long hash = Hashing.hash(item);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+
+        // conservative update: only raise the counters which are at the current minimum
+        long estimate = estimate(h1, h2) + 1;
+        for (int i = 0; i < this.depth; i++) {
+            int index = i * (this.mask + 1) + ((h1 + i * h2) & this.mask);
+            if (this.table[index] < estimate) {
+                this.table[index] = estimate;
+            }
+        }
+        return estimate;
+    }
+
+    /**
+     * Estimates the number of times an item has been added.
+     *
+     * @param item the item
+     * @return the estimated count
+     */
+    public long estimate(CharSequence item) {
+        long hash = Hashing.hash(item);
+        return estimate((int) hash, (int) (hash >>> 32));
+    }
+
+    private long estimate(int h1, int h2) {
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < this.depth; i++) {
+            min = Math.min(min, this.table[i * (this.mask + 1) + ((h1 + i * h2) & this.mask)]);
+        }
+        return min;
+    }
+}
@@ -0,0 +1,328 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.analytics;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Summarises gChat chat logs, including rotated and compressed archives.
+ *
+ * <p>Logs are read a line at a time, and all statistics are kept in fixed size sketches,
+ * so memory use doesn't depend on the size of the logs.</p>
+ *
+ * <p>Usage: {@code java -jar gChat.jar [options] <file or directory>...}</p>
+ */
+public final class LogAnalyzer {
+    private static final String USAGE = String.join("\n",
+            "Usage: java -jar gChat.jar [options] <file or directory>...",
+            "",
+            "Reads gChat chat logs (and .gz archives) and prints a summary.",
+            "Directories are searched for files with '.log' in their name.",
+            "",
+            "Options:",
+            "  --top <n>             the number of entries to show in each list (default 20)",
+            "  --capacity <n>        the number of entries tracked for each list (default 1000)",
+            "  --spam-threshold <n>  repeats of the same message before a player is a spam candidate (default 5)",
+            "  --player <name>       show the estimated message count for a player (can be repeated)"
+    );
+
+    private final int top;
+    private final int spamThreshold;
+
+    private long lines = 0;
+    private long messages = 0;
+    private final long[] hourOfDay = new long[24];
+
+    private final HyperLogLog senders = new HyperLogLog();
+    private final CountMinSketch senderCounts = new CountMinSketch(5, 1 << 16);
+    private final CountMinSketch repeatCounts = new CountMinSketch(5, 1 << 18);
+
+    private final SpaceSaving<String> topSenders;
+    private final SpaceSaving<String> topFormats;
+    private final SpaceSaving<String> topHours;
+    private final SpaceSaving<String> topWords;
+    private final SpaceSaving<String> spamCandidates;
+
+    public LogAnalyzer(int top, int capacity, int spamThreshold) {
+        this.top = top;
+        this.spamThreshold = spamThreshold;
+        this.topSenders = new SpaceSaving<>(capacity);
+        this.topFormats = new SpaceSaving<>(capacity);
+        this.topHours = new SpaceSaving<>(capacity);
+        this.topWords = new SpaceSaving<>(capacity);
+        this.spamCandidates = new SpaceSaving<>(capacity);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int top = 20;
+        int capacity = 1000;
+        int spamThreshold = 5;
+        List<String> players = new ArrayList<>();
+        List<File> files = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--top":
+                        top = Integer.parseInt(args[++i]);
+                        break;
+                    case "--capacity":
+                        capacity = Integer.parseInt(args[++i]);
+                        break;
+                    case "--spam-threshold":
+                        spamThreshold = Integer.parseInt(args[++i]);
+                        break;
+                    case "--player":
+                        players.add(args[++i]);
+                        break;
+                    case "--help":
+                    case "-h":
+                        System.out.println(USAGE);
+                        return;
+                    default:
+                        collectFiles(new File(args[i]), files);
+                        break;
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            System.err.println(USAGE);
+            System.exit(1);
+            return;
+        }
+
+        if (files.isEmpty()) {
+            System.err.println(USAGE);
+            System.exit(1);
+            return;
+        }
+
+        LogAnalyzer analyzer = new LogAnalyzer(top, Math.max(top, capacity), spamThreshold);
+        for (File file : files) {
+            analyzer.read(file);
+        }
+        analyzer.print(System.out, players);
+    }
+
+    private static void collectFiles(File file, List<File> files) {
+        if (!file.isDirectory()) {
+            files.add(file);
+            return;
+        }
+
+        File[] children = file.listFiles((dir, name) -> name.contains(".log"));
+        if (children != null) {
+            Arrays.sort(children);
+            files.addAll(Arrays.asList(children));
+        }
+    }
+
+    /**
+     * Reads a log file, decompressing it if its name ends with ".gz".
+     *
+     * @param file the file
+     * @throws IOException if an error occurs whilst reading
+     */
+    public void read(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        if (file.getName().endsWith(".gz")) {
+            in = new GZIPInputStream(in, 65536);
+        }
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 65536)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                accept(line);
+            }
+        }
+    }
+
+    /**
+     * Processes a single log line, in the format written by gChat's chat log formatter:
+     * "yyyy-MM-dd HH:mm:ss [format] sender: message".
+     *
+     * @param line the line
+     */
+    public void accept(String line) {
+        this.lines++;
+
+        // check the timestamp and format brackets are where we expect
+        if (line.length() < 24 || line.charAt(4) != '-' || line.charAt(10) != ' ' || line.charAt(13) != ':' || line.charAt(19) != ' ' || line.charAt(20) != '[') {
+            return;
+        }
+
+        int formatEnd = line.indexOf("] ", 21);
+        if (formatEnd < 0) {
+            return;
+        }
+        int senderEnd = line.indexOf(": ", formatEnd + 2);
+        if (senderEnd < 0) {
+            return;
+        }
+
+        int hour = (line.charAt(11) - '0') * 10 + (line.charAt(12) - '0');
+        if (hour < 0 || hour > 23) {
+            return;
+        }
+
+        String format = line.substring(21, formatEnd);
+        String sender = line.substring(formatEnd + 2, senderEnd);
+
+        // private messages are logged as "sender -> target"
+        int space = sender.indexOf(' ');
+        if (space >= 0) {
+            sender = sender.substring(0, space);
+        }
+        String message = line.substring(senderEnd + 2);
+
+        this.messages++;
+        this.hourOfDay[hour]++;
+        this.senders.add(sender);
+        this.senderCounts.add(sender.toLowerCase());
+        this.topSenders.offer(sender);
+        this.topFormats.offer(format);
+        this.topHours.offer(line.substring(0, 13));
+
+        String normalized = normalize(message);
+        countWords(normalized);
+
+        String repeatKey = sender + ": " + normalized;
+        if (this.repeatCounts.add(repeatKey) >= this.spamThreshold) {
+            this.spamCandidates.offer(repeatKey);
+        }
+    }
+
+    /**
+     * Lowercases a message, removes color codes and collapses whitespace.
+     *
+     * @param message the message
+     * @return the normalized message
+     */
+    private static String normalize(String message) {
+        StringBuilder sb = new StringBuilder(message.length());
+        boolean space = false;
+        for (int i = 0; i < message.length(); i++) {
+            char c = message.charAt(i);
+            if ((c == '&' || c == '§') && i + 1 < message.length() && isColorCode(message.charAt(i + 1))) {
+                i++;
+                continue;
+            }
+            if (Character.isWhitespace(c)) {
+                space = sb.length() != 0;
+                continue;
+            }
+            if (space) {
+                sb.append(' ');
+                space = false;
+            }
+            sb.append(Character.toLowerCase(c));
+        }
+        return sb.toString();
+    }
+
+    private static boolean isColorCode(char c) {
+        c = Character.toLowerCase(c);
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'k' && c <= 'o') || c == 'r';
+    }
+
+    private void countWords(String message) {
+        int start = -1;
+        for (int i = 0; i <= message.length(); i++) {
+            boolean wordChar = i < message.length() && (Character.isLetterOrDigit(message.charAt(i)) || message.charAt(i) == '\'');
+            if (wordChar) {
+                if (start < 0) {
+                    start = i;
+                }
+            } else if (start >= 0) {
+                if (i - start >= 3) {
+                    this.topWords.offer(message.substring(start, i));
+                }
+                start = -1;
+            }
+        }
+    }
+
+    /**
+     * Prints a summary of the logs read so far.
+     *
+     * @param out the stream to print to
+     * @param players players to show estimated message counts for
+     */
+    public void print(PrintStream out, List<String> players) {
+        out.println("Lines read: " + this.lines);
+        out.println("Chat messages: " + this.messages + " (" + (this.lines - this.messages) + " other lines skipped)");
+        out.println("Distinct senders (estimated): " + this.senders.estimate());
+
+        printTop(out, "Top senders", this.topSenders);
+        printTop(out, "Messages per format", this.topFormats);
+        printTop(out, "Busiest hours", this.topHours);
+
+        out.println();
+        out.println("Messages by hour of day:");
+        for (int hour = 0; hour < 24; hour++) {
+            out.println(String.format("  %02d:00  %d", hour, this.hourOfDay[hour]));
+        }
+
+        printTop(out, "Top words", this.topWords);
+
+        out.println();
+        out.println("Spam candidates (same message repeated at least " + this.spamThreshold + " times):");
+        List<SpaceSaving.Counter<String>> spam = this.spamCandidates.top(this.top);
+        if (spam.isEmpty()) {
+            out.println("  none");
+        }
+        for (SpaceSaving.Counter<String> counter : spam) {
+            out.println("  ~" + this.repeatCounts.estimate(counter.getItem()) + "x  " + counter.getItem());
+        }
+
+        if (!players.isEmpty()) {
+            out.println();
+            out.println("Player message counts (estimated):");
+            for (String player : players) {
+                out.println("  " + player + ": " + this.senderCounts.estimate(player.toLowerCase()));
+            }
+        }
+    }
+
+    private void printTop(PrintStream out, String title, SpaceSaving<String> counters) {
+        out.println();
+        out.println(title + ":");
+        for (SpaceSaving.Counter<String> counter : counters.top(this.top)) {
+            String count = counter.getError() == 0 ? Long.toString(counter.getCount()) : "~" + counter.getCount();
+            out.println("  " + count + "  " + counter.getItem());
+        }
+    }
+}
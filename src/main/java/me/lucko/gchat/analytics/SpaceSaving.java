@@ -0,0 +1,162 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.analytics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the most frequent items in a stream using the Space-Saving algorithm, in memory
+ * proportional to the capacity rather than the number of distinct items.
+ *
+ * <p>Any item occurring more than {@code total / capacity} times is guaranteed to be tracked.
+ * Counts may be over-estimated by up to {@link Counter#getError()}.</p>
+ *
+ * @param <T> the item type
+ */
+public final class SpaceSaving<T> {
+    private final int capacity;
+    private final Map<T, Counter<T>> counters;
+
+    /** A min-heap of the counters, ordered by count */
+    private final Counter<T>[] heap;
+    private int size = 0;
+
+    @SuppressWarnings("unchecked")
+    public SpaceSaving(int capacity) {
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+        this.heap = new Counter[capacity];
+    }
+
+    /**
+     * Records an occurrence of an item.
+     *
+     * @param item the item
+     */
+    public void offer(T item) {
+        Counter<T> counter = this.counters.get(item);
+        if (counter != null) {
+            counter.count++;
+            siftDown(counter.index);
+            return;
+        }
+
+        if (this.size < this.capacity) {
+            counter = new Counter<>(item, 1, 0);
+            counter.index = this.size;
+            this.heap[this.size++] = counter;
+            this.counters.put(item, counter);
+            siftUp(counter.index);
+            return;
+        }
+
+        // replace the least frequent item, inheriting its count as the error
+        counter = this.heap[0];
+        this.counters.remove(counter.item);
+        counter.item = item;
+        counter.error = counter.count;
+        counter.count++;
+        this.counters.put(item, counter);
+        siftDown(0);
+    }
+
+    /**
+     * Gets the most frequent items, most frequent first.
+     *
+     * @param limit the maximum number of items to return
+     * @return the items
+     */
+    public List<Counter<T>> top(int limit) {
+        List<Counter<T>> ret = new ArrayList<>(this.counters.values());
+        ret.sort((o1, o2) -> Long.compare(o2.count, o1.count));
+        return ret.size() > limit ? ret.subList(0, limit) : ret;
+    }
+
+    private void siftUp(int i) {
+        Counter<T> counter = this.heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (this.heap[parent].count <= counter.count) {
+                break;
+            }
+            place(this.heap[parent], i);
+            i = parent;
+        }
+        place(counter, i);
+    }
+
+    private void siftDown(int i) {
+        Counter<T> counter = this.heap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= this.size) {
+                break;
+            }
+            if (child + 1 < this.size && this.heap[child + 1].count < this.heap[child].count) {
+                child++;
+            }
+            if (counter.count <= this.heap[child].count) {
+                break;
+            }
+            place(this.heap[child], i);
+            i = child;
+        }
+        place(counter, i);
+    }
+
+    private void place(Counter<T> counter, int i) {
+        this.heap[i] = counter;
+        counter.index = i;
+    }
+
+    public static final class Counter<T> {
+        private T item;
+        private long count;
+        private long error;
+        private int index;
+
+        Counter(T item, long count, long error) {
+            this.item = item;
+            this.count = count;
+            this.error = error;
+        }
+
+        public T getItem() {
+            return this.item;
+        }
+
+        public long getCount() {
+            return this.count;
+        }
+
+        public long getError() {
+            return this.error;
+        }
+    }
+}
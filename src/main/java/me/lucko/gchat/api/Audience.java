@@ -0,0 +1,94 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.api;
+
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Selects the players a broadcast is sent to.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public final class Audience {
+    private static final Audience ALL = new Audience(Type.ALL, null);
+
+    /**
+     * Selects every online player.
+     *
+     * @return the audience
+     */
+    public static Audience all() {
+        return ALL;
+    }
+
+    /**
+     * Selects the players connected to a server.
+     *
+     * @param server the name of the server
+     * @return the audience
+     */
+    public static Audience server(@NonNull String server) {
+        return new Audience(Type.SERVER, server);
+    }
+
+    /**
+     * Selects the players with a permission.
+     *
+     * @param permission the permission
+     * @return the audience
+     */
+    public static Audience permission(@NonNull String permission) {
+        return new Audience(Type.PERMISSION, permission);
+    }
+
+    /**
+     * Selects the players connected to any server in a channel, defined in the "server-groups"
+     * section of the config.
+     *
+     * @param channel the name of the channel
+     * @return the audience
+     */
+    public static Audience channel(@NonNull String channel) {
+        return new Audience(Type.CHANNEL, channel);
+    }
+
+    private final Type type;
+
+    /** The server, permission or channel selected, or null for {@link Type#ALL} */
+    private final String value;
+
+    public enum Type {
+        ALL, SERVER, PERMISSION, CHANNEL
+    }
+
+}
@@ -50,29 +50,49 @@ public class ChatFormat {
     private final String hoverText;
     private final ClickEvent.Action clickType;
     private final String clickValue;
+    private final ChatLane lane;
+
+    /** How long messages may be held to be merged with others, in milliseconds */
+    private final int coalesceWindow;
+
+    /** If links in messages should be made clickable, for players with the "gchat.links" permission */
+    private final boolean links;
 
     public ChatFormat(String id, Configuration c) {
+        this(id, c, null);
+    }
+
+    /**
+     * Creates a format which inherits any options it doesn't set from a parent format.
+     *
+     * @param id the id of the format
+     * @param c the config section
+     * @param parent the format to inherit from, or null
+     */
+    public ChatFormat(String id, Configuration c, ChatFormat parent) {
         this.id = id;
-        this.priority = c.getInt("priority", 0);
-        this.checkPermission = c.getBoolean("check-permission", true);
-        this.formatText = getStringNonNull(c, "format");
+        this.priority = c.getInt("priority", parent == null ? 0 : parent.getPriority());
+        this.checkPermission = c.getBoolean("check-permission", parent == null || parent.isCheckPermission());
+        this.formatText = parent == null ? getStringNonNull(c, "format") : c.getString("format", parent.getFormatText());
 
-        String hoverText = null;
-        ClickEvent.Action clickType = null;
-        String clickValue = null;
+        String hoverText = parent == null ? null : parent.getHoverText();
+        ClickEvent.Action clickType = parent == null ? null : parent.getClickType();
+        String clickValue = parent == null ? null : parent.getClickValue();
 
         Configuration extra = c.getSection("format-extra");
         if (extra != null) {
-            String hover = extra.getString("hover");
-            if (hover != null && !hover.isEmpty()) {
-                hoverText = hover;
+            if (extra.contains("hover") || parent == null) {
+                String hover = extra.getString("hover");
+                hoverText = hover != null && !hover.isEmpty() ? hover : null;
             }
 
             Configuration click = extra.getSection("click");
-            if (click != null) {
+            if (click != null && (click.contains("type") || parent == null)) {
                 String type = click.getString("type", "none").toLowerCase();
                 String value = click.getString("value");
 
+                clickType = null;
+                clickValue = null;
                 if (!type.equals("none") && value != null) {
                     if (!type.equals("suggest_command") && !type.equals("run_command") && !type.equals("open_url")) {
                         throw new IllegalArgumentException("Invalid click type: " + type);
@@ -87,6 +107,16 @@ public class ChatFormat {
         this.hoverText = hoverText;
         this.clickType = clickType;
         this.clickValue = clickValue;
+
+        String lane = c.getString("lane", parent == null ? "normal" : parent.getLane().name());
+        try {
+            this.lane = ChatLane.valueOf(lane.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid lane: " + lane);
+        }
+
+        this.coalesceWindow = Math.max(0, Math.min(1000, c.getInt("coalesce-window", parent == null ? 0 : parent.getCoalesceWindow())));
+        this.links = c.getBoolean("links", parent == null || parent.isLinks());
     }
 
     public boolean canUse(ProxiedPlayer player) {
@@ -25,11 +25,14 @@
 
 package me.lucko.gchat.api;
 
+import net.kyori.text.Component;
 import net.md_5.bungee.api.connection.ProxiedPlayer;
 
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * API for gChat
@@ -59,6 +62,29 @@ public interface GChatApi {
      */
     Set<Placeholder> getPlaceholders();
 
+    /**
+     * Registers a viewer placeholder with gChat
+     *
+     * @param placeholder the placeholder
+     * @return true if the placeholder wasn't already registered
+     */
+    boolean registerViewerPlaceholder(ViewerPlaceholder placeholder);
+
+    /**
+     * Unregisters a viewer placeholder with gChat
+     *
+     * @param placeholder the placeholder
+     * @return true if the placeholder was previously registered
+     */
+    boolean unregisterViewerPlaceholder(ViewerPlaceholder placeholder);
+
+    /**
+     * Gets an immutable set of the viewer placeholders registered
+     *
+     * @return a set of viewer placeholders
+     */
+    Set<ViewerPlaceholder> getViewerPlaceholders();
+
     /**
      * Gets an immutable list of formats registered
      *
@@ -69,6 +95,17 @@ public interface GChatApi {
      */
     List<ChatFormat> getFormats();
 
+    /**
+     * Gets an immutable list of the formats which apply on a given server, after any
+     * per-server or per-group overrides have been applied.
+     *
+     * <p>The list is sorted in the same way as {@link #getFormats()}.</p>
+     *
+     * @param server the name of the server
+     * @return a list of formats
+     */
+    List<ChatFormat> getFormats(String server);
+
     /**
      * Performs a placeholder replacement on the given message
      *
@@ -78,6 +115,19 @@ public interface GChatApi {
      */
     String replacePlaceholders(ProxiedPlayer player, String text);
 
+    /**
+     * Resolves a single viewer placeholder.
+     *
+     * <p>If no {@link ViewerPlaceholder} can satisfy the definition, it is resolved as a normal
+     * placeholder in the context of the viewer, so "{viewer_name}" gives the viewers name.</p>
+     *
+     * @param player the player sending the message
+     * @param viewer the player viewing the message, or null for the console
+     * @param definition the placeholder definition, without the outer "{ }" brackets and the "viewer_" prefix.
+     * @return the replacement, never null
+     */
+    String replaceViewerPlaceholder(ProxiedPlayer player, ProxiedPlayer viewer, String definition);
+
     /**
      * Gets the most applicable chat format for a given player
      *
@@ -86,6 +136,53 @@ public interface GChatApi {
      */
     Optional<ChatFormat> getFormat(ProxiedPlayer player);
 
+    /**
+     * Sends a message from a player to an audience, using a chat format.
+     *
+     * <p>The message goes through the same pipeline as normal chat: it is rendered once for
+     * each variant, a {@link me.lucko.gchat.api.events.GChatMessageFormedEvent} is called, it is
+     * logged, and recipients who are ignoring the player don't receive it. Unlike normal chat, the
+     * message isn't filtered and any color codes in it are kept.</p>
+     *
+     * @param player the player to render the format for
+     * @param formatId the id of the format, from those which apply on the players server
+     * @param message the message
+     * @param audience the players to send the message to
+     * @return true if the format was found, and the message was sent
+     */
+    boolean sendFormatted(ProxiedPlayer player, String formatId, String message, Audience audience);
+
+    /**
+     * Broadcasts a component to an audience.
+     *
+     * <p>The component is serialized once and sent in the same way as chat messages. A
+     * {@link me.lucko.gchat.api.events.GChatBroadcastEvent} is called before it is sent,
+     * and the broadcast is logged with the format "broadcast".</p>
+     *
+     * @param message the message
+     * @param audience the players to send the message to
+     */
+    void broadcast(Component message, Audience audience);
+
+    /**
+     * Gets the stored preferences of an online player.
+     *
+     * <p>Preferences are loaded in the background when a player logs in, so may not be
+     * available immediately. This method never reads from disk.</p>
+     *
+     * @param uuid the players unique id
+     * @return the players preferences, if loaded
+     */
+    Optional<PlayerPreferences> getPreferences(UUID uuid);
+
+    /**
+     * Loads the stored preferences of a player, who doesn't need to be online.
+     *
+     * @param uuid the players unique id
+     * @return a future encapsulating the players preferences
+     */
+    CompletableFuture<PlayerPreferences> loadPreferences(UUID uuid);
+
     /**
      * Reloads the plugin from the config file
      *
@@ -0,0 +1,90 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.api;
+
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * A players stored chat preferences, persisted by gChat across restarts.
+ *
+ * <p>Reads are served from memory. Changes are applied in memory immediately, and written
+ * to disk in the background.</p>
+ */
+public interface PlayerPreferences {
+
+    /**
+     * Gets the unique id of the player these preferences belong to
+     *
+     * @return the players unique id
+     */
+    UUID getUniqueId();
+
+    /**
+     * Gets the keys with values set
+     *
+     * @return the keys
+     */
+    Set<String> getKeys();
+
+    /**
+     * Gets the raw value of a key
+     *
+     * @param key the key
+     * @return the value, or null if not set
+     */
+    byte[] getBytes(String key);
+
+    /**
+     * Sets the raw value of a key
+     *
+     * @param key the key
+     * @param value the value, or null to remove it
+     */
+    void setBytes(String key, byte[] value);
+
+    String getString(String key, String def);
+
+    void setString(String key, String value);
+
+    boolean getBoolean(String key, boolean def);
+
+    void setBoolean(String key, boolean value);
+
+    long getLong(String key, long def);
+
+    void setLong(String key, long value);
+
+    /**
+     * Removes the value of a key
+     *
+     * @param key the key
+     */
+    default void remove(String key) {
+        setBytes(key, null);
+    }
+
+}
@@ -0,0 +1,49 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.api;
+
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+
+/**
+ * Represents a placeholder replacement which depends on the player viewing the message.
+ *
+ * <p>Viewer placeholders are written in formats with a "viewer_" prefix, e.g. "{viewer_relation}".
+ * Recipients which resolve to the same values share a single rendered message, so replacements
+ * should only vary as much as necessary.</p>
+ */
+public interface ViewerPlaceholder {
+
+    /**
+     * Gets a replacement for a given placeholder.
+     *
+     * @param player the player sending the message
+     * @param viewer the player viewing the message, or null if the message is being rendered for the console
+     * @param definition the placeholder definition, without the outer "{ }" brackets and the "viewer_" prefix.
+     * @return a replacement, or null if the definition cannot be satisfied by this {@link ViewerPlaceholder}
+     */
+    String getReplacement(ProxiedPlayer player, ProxiedPlayer viewer, String definition);
+
+}
@@ -0,0 +1,77 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.api.events;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+import net.md_5.bungee.api.plugin.Cancellable;
+import net.md_5.bungee.api.plugin.Event;
+
+import java.util.UUID;
+
+/**
+ * Called when a player is about to send a private message to another player.
+ *
+ * <p>Also called for messages to players who aren't online, which are held in the mailbox
+ * until they next join. The recipient is null for these, but its unique id and name are
+ * always present.</p>
+ */
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode(callSuper = false)
+@ToString
+public class GChatPrivateMessageEvent extends Event implements Cancellable {
+
+    private final ProxiedPlayer sender;
+
+    /** The player receiving the message, or null if they aren't online */
+    private final ProxiedPlayer recipient;
+
+    private final UUID recipientUniqueId;
+    private final String recipientName;
+    private final String rawMessage;
+
+    @Setter
+    private boolean cancelled;
+
+    public GChatPrivateMessageEvent(ProxiedPlayer sender, ProxiedPlayer recipient, String rawMessage, boolean cancelled) {
+        this(sender, recipient, recipient.getUniqueId(), recipient.getName(), rawMessage, cancelled);
+    }
+
+    /**
+     * Gets if the recipient isn't online, so the message will be held in their mailbox.
+     *
+     * @return if the recipient is offline
+     */
+    public boolean isOffline() {
+        return this.recipient == null;
+    }
+}
@@ -26,17 +26,33 @@
 package me.lucko.gchat.config;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.ToString;
 import me.lucko.gchat.api.ChatFormat;
+import me.lucko.gchat.emoji.EmojiReplacer;
+import me.lucko.gchat.filter.ChatFilter;
+import me.lucko.gchat.filter.FilterRule;
+import me.lucko.gchat.link.DomainTrie;
+import me.lucko.gchat.link.LinkScanner;
+import me.lucko.gchat.util.Durations;
+import me.lucko.gchat.util.LegacyText;
 import net.kyori.text.Component;
-import net.kyori.text.serializer.legacy.LegacyComponentSerializer;
 import net.md_5.bungee.config.Configuration;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 
 @Getter
 @ToString
@@ -61,8 +77,83 @@ public class GChatConfig {
     private final boolean logChat;
     private final boolean logChatGlobal;
 
+    private final boolean logRotateDaily;
+    private final long logMaxFileSize;
+    private final boolean logCompress;
+    private final long logMaxAge;
+    private final long logMaxTotalSize;
+
+    private final long storageFlushInterval;
+    private final long storageCompactThreshold;
+    private final boolean warmRestart;
+    private final long warmRestartMaxAge;
+    /** A hash of the settings the runtime snapshot depends on, so it isn't restored after they change */
+    private final long snapshotFingerprint;
+
+    /** Named groups of servers, keyed by the lowercase group name */
+    private final Map<String, List<String>> serverGroups;
+    private final Map<String, String> serverDisplayNames;
+
+    private final long placeholderSlowThreshold;
+    private final int placeholderFailureThreshold;
+    private final long placeholderCooldown;
+    private final String placeholderFallback;
+
+    private final String viewerRelationSelf;
+    private final String viewerRelationSameServer;
+    private final String viewerRelationOtherServer;
+
+    private final String mutedMessage;
+
+    private final boolean fanOut;
+    private final int fanOutThreshold;
+    private final int fanOutThreads;
+    private final int fanOutQueueCapacity;
+
+    private final boolean overload;
+    private final int overloadCapacity;
+    private final int overloadWorkers;
+    private final int overloadMaxCoalesce;
+    private final Component overloadShedMessage;
+
     private final List<ChatFormat> formats;
 
+    /** The formats resolved for each server with overrides, keyed by the lowercase server name and sorted by priority */
+    @Getter(AccessLevel.NONE)
+    private final Map<String, ChatFormat[]> serverFormats;
+    @Getter(AccessLevel.NONE)
+    private final ChatFormat[] defaultFormats;
+
+    private final boolean privateMessages;
+    private final ChatFormat privateMessageSenderFormat;
+    private final ChatFormat privateMessageReceiverFormat;
+    private final ChatFormat privateMessageSocialSpyFormat;
+
+    private final boolean mailbox;
+    private final int mailboxMaxMessages;
+    private final long mailboxExpiry;
+    private final String mailboxQueuedMessage;
+    private final String mailboxFullMessage;
+    private final String mailboxHeader;
+    private final String mailboxFormat;
+
+    private final boolean mentions;
+    private final boolean mentionsRequireAt;
+    private final int mentionsMinLength;
+    private final String mentionsHighlight;
+    private final String mentionsSound;
+    private final String mentionsActionBar;
+
+    /** The scanner used to find links in messages, or null if links are disabled */
+    private final LinkScanner linkScanner;
+
+    /** The replacer used to expand shortcodes in messages, or null if they are disabled */
+    private final EmojiReplacer emojiReplacer;
+
+    private final ChatFilter filter;
+    private final Component filterBlockMessage;
+    private final String filterAlertMessage;
+
     public GChatConfig(Configuration c) {
         this.passthrough = c.getBoolean("passthrough", true);
 
@@ -70,6 +161,70 @@ public class GChatConfig {
         this.logChat = c.getBoolean("log-chat", true);
         this.logChatGlobal = c.getBoolean("log-chat-global", true);
 
+        Configuration logRotation = c.getSection("log-rotation");
+        this.logRotateDaily = logRotation == null || logRotation.getBoolean("daily", true);
+        this.logMaxFileSize = Math.max(0, logRotation == null ? 64 : logRotation.getLong("max-file-size", 64)) * 1024 * 1024;
+        this.logCompress = logRotation == null || logRotation.getBoolean("compress", true);
+        this.logMaxAge = TimeUnit.DAYS.toMillis(Math.max(0, logRotation == null ? 30 : logRotation.getLong("max-age", 30)));
+        this.logMaxTotalSize = Math.max(0, logRotation == null ? 1024 : logRotation.getLong("max-total-size", 1024)) * 1024 * 1024;
+
+        Configuration storage = c.getSection("storage");
+        this.storageFlushInterval = Math.max(100, storage == null ? 2000 : storage.getLong("flush-interval", 2000));
+        this.storageCompactThreshold = storage == null ? 1048576 : storage.getLong("compact-threshold", 1048576);
+
+        Configuration warmRestartSection = storage == null ? null : storage.getSection("warm-restart");
+        this.warmRestart = warmRestartSection == null || warmRestartSection.getBoolean("enabled", true);
+        String warmRestartMaxAge = warmRestartSection == null ? "10m" : warmRestartSection.getString("max-age", "10m");
+        this.warmRestartMaxAge = Durations.parse(warmRestartMaxAge);
+        if (this.warmRestartMaxAge <= 0) {
+            throw new IllegalArgumentException("Invalid duration at 'storage.warm-restart.max-age': " + warmRestartMaxAge);
+        }
+
+        ImmutableMap.Builder<String, List<String>> serverGroups = ImmutableMap.builder();
+        Configuration serverGroupsSection = c.getSection("server-groups");
+        if (serverGroupsSection != null) {
+            for (String group : serverGroupsSection.getKeys()) {
+                serverGroups.put(group.toLowerCase(Locale.ROOT), ImmutableList.copyOf(serverGroupsSection.getStringList(group)));
+            }
+        }
+        this.serverGroups = serverGroups.build();
+
+        ImmutableMap.Builder<String, String> serverDisplayNames = ImmutableMap.builder();
+        Configuration serverDisplayNamesSection = c.getSection("server-display-names");
+        if (serverDisplayNamesSection != null) {
+            for (String server : serverDisplayNamesSection.getKeys()) {
+                serverDisplayNames.put(server, serverDisplayNamesSection.getString(server));
+            }
+        }
+        this.serverDisplayNames = serverDisplayNames.build();
+
+        Configuration placeholderMonitor = c.getSection("placeholder-monitor");
+        this.placeholderSlowThreshold = placeholderMonitor == null ? 10 : placeholderMonitor.getLong("slow-threshold", 10);
+        this.placeholderFailureThreshold = Math.max(1, placeholderMonitor == null ? 5 : placeholderMonitor.getInt("failure-threshold", 5));
+        this.placeholderCooldown = placeholderMonitor == null ? 30000 : placeholderMonitor.getLong("cooldown", 30000);
+        this.placeholderFallback = placeholderMonitor == null ? "" : placeholderMonitor.getString("fallback", "");
+
+        Configuration viewerRelation = c.getSection("viewer-relation");
+        this.viewerRelationSelf = viewerRelation == null ? "" : viewerRelation.getString("self", "");
+        this.viewerRelationSameServer = viewerRelation == null ? "" : viewerRelation.getString("same-server", "");
+        this.viewerRelationOtherServer = viewerRelation == null ? "" : viewerRelation.getString("other-server", "");
+
+        this.mutedMessage = emptyToNull(c.getString("muted-message", "&cYou can't chat whilst muted. (expires {expiry})"));
+
+        Configuration fanOutSection = c.getSection("fan-out");
+        this.fanOut = fanOutSection != null && fanOutSection.getBoolean("enabled", false);
+        this.fanOutThreshold = Math.max(1, fanOutSection == null ? 500 : fanOutSection.getInt("threshold", 500));
+        this.fanOutThreads = Math.max(1, fanOutSection == null ? 4 : fanOutSection.getInt("threads", 4));
+        this.fanOutQueueCapacity = Math.max(1, fanOutSection == null ? 256 : fanOutSection.getInt("queue-capacity", 256));
+
+        Configuration overloadSection = c.getSection("overload");
+        this.overload = overloadSection != null && overloadSection.getBoolean("enabled", false);
+        this.overloadCapacity = Math.max(1, overloadSection == null ? 500 : overloadSection.getInt("capacity", 500));
+        this.overloadWorkers = Math.max(1, overloadSection == null ? 2 : overloadSection.getInt("workers", 2));
+        this.overloadMaxCoalesce = Math.max(1, overloadSection == null ? 5 : overloadSection.getInt("max-coalesce", 5));
+        String shedMessage = overloadSection == null ? "" : overloadSection.getString("shed-message", "");
+        this.overloadShedMessage = shedMessage.isEmpty() ? null : LegacyText.parse(shedMessage);
+
         Configuration requirePermission = c.getSection("require-permission");
         if (requirePermission == null) {
             throw new IllegalArgumentException("Missing section: require-permission");
@@ -78,7 +233,7 @@ public class GChatConfig {
         this.requireSendPermission = requirePermission.getBoolean("send", false);
 
         String failMsg = getStringNonNull(requirePermission, "send-fail");
-        this.requireSendPermissionFailMessage = failMsg.isEmpty() ? null : LegacyComponentSerializer.legacy().deserialize(failMsg, '&');
+        this.requireSendPermissionFailMessage = failMsg.isEmpty() ? null : LegacyText.parse(failMsg);
 
         this.requireReceivePermission = requirePermission.getBoolean("receive", false);
         this.requirePermissionPassthrough = requirePermission.getBoolean("passthrough", true);
@@ -98,13 +253,249 @@ public class GChatConfig {
             formats.put(id.toLowerCase(), new ChatFormat(id.toLowerCase(), formatSection));
         }
 
-        List<ChatFormat> formatsList = new ArrayList<>(formats.values());
-        formatsList.sort((o1, o2) -> {
+        this.formats = ImmutableList.copyOf(sortFormats(formats.values()));
+        this.defaultFormats = this.formats.toArray(new ChatFormat[0]);
+
+        // resolve the overrides for each server up front, so lookups at chat time are a single map get
+        Map<String, ChatFormat[]> serverFormats = new HashMap<>();
+        Configuration serverFormatsSection = c.getSection("server-formats");
+        if (serverFormatsSection != null) {
+            Set<String> servers = new LinkedHashSet<>();
+            for (String key : serverFormatsSection.getKeys()) {
+                List<String> groupServers = this.serverGroups.get(key.toLowerCase(Locale.ROOT));
+                if (groupServers != null) {
+                    for (String server : groupServers) {
+                        servers.add(serverKey(server));
+                    }
+                } else {
+                    servers.add(serverKey(key));
+                }
+            }
+
+            for (String server : servers) {
+                Map<String, ChatFormat> resolved = new HashMap<>(formats);
+
+                // group overrides apply first, in the order they're defined
+                for (String key : serverFormatsSection.getKeys()) {
+                    List<String> groupServers = this.serverGroups.get(key.toLowerCase(Locale.ROOT));
+                    if (groupServers != null && groupServers.stream().anyMatch(name -> serverKey(name).equals(server))) {
+                        applyFormatOverrides(serverFormatsSection.getSection(key), resolved);
+                    }
+                }
+
+                // followed by the server's own overrides, which may be written in any case
+                for (String key : serverFormatsSection.getKeys()) {
+                    if (serverKey(key).equals(server) && !this.serverGroups.containsKey(server)) {
+                        applyFormatOverrides(serverFormatsSection.getSection(key), resolved);
+                    }
+                }
+
+                serverFormats.put(server, sortFormats(resolved.values()).toArray(new ChatFormat[0]));
+            }
+        }
+        this.serverFormats = ImmutableMap.copyOf(serverFormats);
+
+        Configuration privateMessagesSection = c.getSection("private-messages");
+        this.privateMessages = privateMessagesSection != null && privateMessagesSection.getBoolean("enabled", false);
+        if (this.privateMessages) {
+            Configuration privateFormats = privateMessagesSection.getSection("formats");
+            if (privateFormats == null) {
+                throw new IllegalArgumentException("Missing section: private-messages.formats");
+            }
+
+            this.privateMessageSenderFormat = getPrivateMessageFormat(privateFormats, "sender");
+            this.privateMessageReceiverFormat = getPrivateMessageFormat(privateFormats, "receiver");
+            this.privateMessageSocialSpyFormat = getPrivateMessageFormat(privateFormats, "social-spy");
+        } else {
+            this.privateMessageSenderFormat = null;
+            this.privateMessageReceiverFormat = null;
+            this.privateMessageSocialSpyFormat = null;
+        }
+
+        Configuration mailboxSection = privateMessagesSection == null ? null : privateMessagesSection.getSection("mailbox");
+        this.mailbox = this.privateMessages && mailboxSection != null && mailboxSection.getBoolean("enabled", false);
+        this.mailboxMaxMessages = Math.max(1, mailboxSection == null ? 20 : mailboxSection.getInt("max-messages", 20));
+        String mailboxExpiry = mailboxSection == null ? "7d" : mailboxSection.getString("expiry", "7d");
+        this.mailboxExpiry = Durations.parse(mailboxExpiry);
+        if (this.mailboxExpiry <= 0) {
+            throw new IllegalArgumentException("Invalid duration at 'private-messages.mailbox.expiry': " + mailboxExpiry);
+        }
+        this.mailboxQueuedMessage = emptyToNull(mailboxSection == null ? null : mailboxSection.getString("queued-message", null));
+        this.mailboxFullMessage = emptyToNull(mailboxSection == null ? null : mailboxSection.getString("full-message", null));
+        this.mailboxHeader = emptyToNull(mailboxSection == null ? null : mailboxSection.getString("header", null));
+        this.mailboxFormat = mailboxSection == null ? "&d{sender}&7: &f{message}" : mailboxSection.getString("format", "&d{sender}&7: &f{message}");
+
+        Configuration mentionsSection = c.getSection("mentions");
+        this.mentions = mentionsSection != null && mentionsSection.getBoolean("enabled", false);
+        this.mentionsRequireAt = mentionsSection != null && mentionsSection.getBoolean("require-at", false);
+        this.mentionsMinLength = mentionsSection == null ? 3 : mentionsSection.getInt("min-length", 3);
+        this.mentionsHighlight = mentionsSection == null ? "&e{mention}" : mentionsSection.getString("highlight", "&e{mention}");
+        this.mentionsSound = emptyToNull(mentionsSection == null ? null : mentionsSection.getString("sound", null));
+        this.mentionsActionBar = emptyToNull(mentionsSection == null ? null : mentionsSection.getString("action-bar", null));
+
+        Configuration linksSection = c.getSection("links");
+        if (linksSection != null && linksSection.getBoolean("enabled", false)) {
+            this.linkScanner = new LinkScanner(
+                    linksSection.getBoolean("schemeless", false),
+                    DomainTrie.of(linksSection.getStringList("allow")),
+                    DomainTrie.of(linksSection.getStringList("deny"))
+            );
+        } else {
+            this.linkScanner = null;
+        }
+
+        Configuration emojiSection = c.getSection("emoji");
+        if (emojiSection != null && emojiSection.getBoolean("enabled", false)) {
+            Map<String, String> shortcodes = new HashMap<>();
+            Configuration shortcodesSection = emojiSection.getSection("shortcodes");
+            if (shortcodesSection != null) {
+                for (String name : shortcodesSection.getKeys()) {
+                    shortcodes.put(name, getStringNonNull(shortcodesSection, name));
+                }
+            }
+            this.emojiReplacer = new EmojiReplacer(shortcodes, emojiSection.getBoolean("hover", true));
+        } else {
+            this.emojiReplacer = null;
+        }
+
+        Configuration filterSection = c.getSection("filter");
+        if (filterSection != null && filterSection.getBoolean("enabled", false)) {
+            List<FilterRule> rules = new ArrayList<>();
+            Configuration listsSection = filterSection.getSection("lists");
+            if (listsSection != null) {
+                for (String id : listsSection.getKeys()) {
+                    Configuration listSection = listsSection.getSection(id);
+                    if (listSection != null) {
+                        rules.add(new FilterRule(id.toLowerCase(), listSection));
+                    }
+                }
+            }
+
+            String censorCharacter = filterSection.getString("censor-character", "*");
+            this.filter = new ChatFilter(rules, censorCharacter.isEmpty() ? '*' : censorCharacter.charAt(0));
+
+            String blockMessage = filterSection.getString("block-message", "");
+            this.filterBlockMessage = blockMessage.isEmpty() ? null : LegacyText.parse(blockMessage);
+            this.filterAlertMessage = emptyToNull(filterSection.getString("alert-message", null));
+        } else {
+            this.filter = ChatFilter.EMPTY;
+            this.filterBlockMessage = null;
+            this.filterAlertMessage = null;
+        }
+
+        this.snapshotFingerprint = computeSnapshotFingerprint();
+    }
+
+    /**
+     * Hashes the text of every format, which decides the placeholder definitions the runtime
+     * snapshot holds values for, along with the placeholder fallback.
+     *
+     * @return the fingerprint
+     */
+    private long computeSnapshotFingerprint() {
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        putFormats(hasher, this.defaultFormats);
+        for (Map.Entry<String, ChatFormat[]> server : new TreeMap<>(this.serverFormats).entrySet()) {
+            hasher.putUnencodedChars(server.getKey()).putByte((byte) 0);
+            putFormats(hasher, server.getValue());
+        }
+        putFormats(hasher, new ChatFormat[]{this.privateMessageSenderFormat, this.privateMessageReceiverFormat, this.privateMessageSocialSpyFormat});
+        putString(hasher, this.placeholderFallback);
+        return hasher.hash().asLong();
+    }
+
+    private static void putFormats(Hasher hasher, ChatFormat[] formats) {
+        hasher.putInt(formats.length);
+        for (ChatFormat format : formats) {
+            if (format == null) {
+                hasher.putBoolean(false);
+                continue;
+            }
+            hasher.putBoolean(true);
+            putString(hasher, format.getId());
+            putString(hasher, format.getFormatText());
+            putString(hasher, format.getHoverText());
+            putString(hasher, format.getClickValue());
+        }
+    }
+
+    private static void putString(Hasher hasher, String s) {
+        if (s == null) {
+            hasher.putInt(-1);
+        } else {
+            hasher.putInt(s.length()).putUnencodedChars(s);
+        }
+    }
+
+    /**
+     * Gets the formats which apply on the given server, sorted by priority.
+     *
+     * @param server the server name, or null
+     * @return the formats
+     */
+    public ChatFormat[] getFormats(String server) {
+        ChatFormat[] formats = server == null ? null : this.serverFormats.get(serverKey(server));
+        return formats == null ? this.defaultFormats : formats;
+    }
+
+    /**
+     * Gets the key server names are stored under, so names are matched regardless of case.
+     *
+     * @param server the server name
+     * @return the key
+     */
+    private static String serverKey(String server) {
+        return server.toLowerCase(Locale.ROOT);
+    }
+
+    private static void applyFormatOverrides(Configuration section, Map<String, ChatFormat> formats) {
+        if (section == null) {
+            return;
+        }
+
+        if (!section.getBoolean("inherit", true)) {
+            formats.clear();
+        }
+
+        Configuration formatsSection = section.getSection("formats");
+        if (formatsSection == null) {
+            return;
+        }
+
+        for (String id : formatsSection.getKeys()) {
+            Configuration formatSection = formatsSection.getSection(id);
+            if (formatSection == null) {
+                continue;
+            }
+
+            String key = id.toLowerCase();
+            if (formatSection.getBoolean("disabled", false)) {
+                formats.remove(key);
+            } else {
+                formats.put(key, new ChatFormat(key, formatSection, formats.get(key)));
+            }
+        }
+    }
+
+    private static List<ChatFormat> sortFormats(Collection<ChatFormat> formats) {
+        List<ChatFormat> list = new ArrayList<>(formats);
+        list.sort((o1, o2) -> {
             int ret = Integer.compare(o1.getPriority(), o2.getPriority());
             return ret > 0 ? -1 : 1;
         });
+        return list;
+    }
 
-        this.formats = ImmutableList.copyOf(formatsList);
+    private static String emptyToNull(String s) {
+        return s == null || s.isEmpty() ? null : s;
+    }
+
+    private static ChatFormat getPrivateMessageFormat(Configuration section, String id) {
+        Configuration formatSection = section.getSection(id);
+        if (formatSection == null) {
+            throw new IllegalArgumentException("Missing section: private-messages.formats." + id);
+        }
+        return new ChatFormat("private-" + id, formatSection);
     }
 
 }
@@ -0,0 +1,115 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.emoji;
+
+import me.lucko.gchat.util.AhoCorasick;
+import net.kyori.text.TextComponent;
+import net.kyori.text.event.HoverEvent;
+import net.kyori.text.format.TextColor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Finds shortcodes (e.g. ":heart:") within chat messages.
+ *
+ * <p>Every shortcode is compiled into a single automaton when the config is loaded, so a
+ * message is matched in one pass no matter how many shortcodes are defined. Shortcodes
+ * are matched case insensitively.</p>
+ */
+public final class EmojiReplacer {
+    private final AhoCorasick<Emoji> automaton;
+
+    /**
+     * Creates a new replacer.
+     *
+     * @param shortcodes the replacement for each shortcode, keyed by name without the colons
+     * @param hover if the shortcode should be shown when hovering over its replacement
+     */
+    public EmojiReplacer(Map<String, String> shortcodes, boolean hover) {
+        Map<String, Emoji> patterns = new HashMap<>();
+        for (Map.Entry<String, String> entry : shortcodes.entrySet()) {
+            String name = entry.getKey().toLowerCase(Locale.ROOT);
+            if (name.isEmpty() || name.indexOf(':') >= 0 || name.indexOf(' ') >= 0) {
+                throw new IllegalArgumentException("Invalid shortcode: " + entry.getKey());
+            }
+
+            String shortcode = ":" + name + ":";
+            HoverEvent hoverEvent = hover ? HoverEvent.showText(TextComponent.of(shortcode, TextColor.GRAY)) : null;
+            patterns.put(shortcode, new Emoji(shortcode, entry.getValue(), hoverEvent));
+        }
+        this.automaton = new AhoCorasick<>(patterns);
+    }
+
+    public boolean isEmpty() {
+        return this.automaton.isEmpty();
+    }
+
+    /**
+     * Finds the shortcodes in a message.
+     *
+     * <p>Matches never overlap. Where two shortcodes share a colon (e.g. ":heart:heart:"),
+     * the first is used.</p>
+     *
+     * @param message the message
+     * @return the matches, in order
+     */
+    public List<EmojiMatch> find(String message) {
+        if (this.automaton.isEmpty() || message.indexOf(':') < 0) {
+            return Collections.emptyList();
+        }
+
+        List<EmojiMatch> matches = Collections.emptyList();
+        int last = 0;
+        int state = AhoCorasick.ROOT;
+        for (int i = 0; i < message.length(); i++) {
+            state = this.automaton.next(state, Character.toLowerCase(message.charAt(i)));
+
+            // shortcodes can't contain colons, so at most one can end at each position
+            int output = this.automaton.firstOutput(state);
+            if (output < 0) {
+                continue;
+            }
+
+            int start = i + 1 - this.automaton.getLength(output);
+            if (start < last) {
+                continue;
+            }
+
+            if (matches.isEmpty()) {
+                matches = new ArrayList<>();
+            }
+            matches.add(new EmojiMatch(start, i + 1, this.automaton.getValue(output)));
+            last = i + 1;
+        }
+        return matches;
+    }
+
+}
@@ -0,0 +1,261 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.filter;
+
+import me.lucko.gchat.util.AhoCorasick;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A word filter, compiled from a set of {@link FilterRule}s into a single automaton.
+ *
+ * <p>Messages are normalised in the same pass as they are matched:</p>
+ * <ul>
+ *     <li>letters are compared case insensitively</li>
+ *     <li>common leetspeak substitutions are reversed, e.g. "h3ll0" matches "hello"</li>
+ *     <li>punctuation and symbols are skipped, e.g. "h.e.l.l.o" matches "hello"</li>
+ *     <li>repeated characters are collapsed, e.g. "heeeello" matches "hello"</li>
+ * </ul>
+ */
+public final class ChatFilter {
+    public static final ChatFilter EMPTY = new ChatFilter(Collections.emptyList(), '*');
+
+    private final AhoCorasick<List<Word>> automaton;
+    private final char censorCharacter;
+
+    public ChatFilter(List<FilterRule> rules, char censorCharacter) {
+        this.censorCharacter = censorCharacter;
+
+        // words are stored with repeated characters collapsed, alongside the run lengths
+        // needed to match them, so that "ass" doesn't match "as".
+        Map<String, List<Word>> patterns = new HashMap<>();
+        for (FilterRule rule : rules) {
+            for (String word : rule.getWords()) {
+                StringBuilder collapsed = new StringBuilder(word.length());
+                List<Integer> runs = new ArrayList<>(word.length());
+                for (int i = 0; i < word.length(); i++) {
+                    char c = normalize(word.charAt(i));
+                    if (c == 0) {
+                        continue;
+                    }
+
+                    int last = collapsed.length() - 1;
+                    if (last >= 0 && collapsed.charAt(last) == c) {
+                        runs.set(last, runs.get(last) + 1);
+                    } else {
+                        collapsed.append(c);
+                        runs.add(1);
+                    }
+                }
+
+                if (collapsed.length() == 0) {
+                    continue;
+                }
+
+                int[] minRuns = new int[runs.size()];
+                for (int i = 0; i < minRuns.length; i++) {
+                    minRuns[i] = runs.get(i);
+                }
+                patterns.computeIfAbsent(collapsed.toString(), x -> new ArrayList<>()).add(new Word(rule, minRuns));
+            }
+        }
+
+        this.automaton = new AhoCorasick<>(patterns);
+    }
+
+    /**
+     * Normalises a character for matching.
+     *
+     * @param c the character
+     * @return the normalised character, or 0 if the character should be skipped
+     */
+    static char normalize(char c) {
+        switch (c) {
+            case '0': return 'o';
+            case '1': case '!': case '|': return 'i';
+            case '3': return 'e';
+            case '4': case '@': return 'a';
+            case '5': case '$': return 's';
+            case '7': case '+': return 't';
+            case '8': return 'b';
+            default:
+                break;
+        }
+        if (Character.isLetterOrDigit(c)) {
+            return Character.toLowerCase(c);
+        }
+        if (Character.isWhitespace(c)) {
+            return ' ';
+        }
+        return 0;
+    }
+
+    public boolean isEmpty() {
+        return this.automaton.isEmpty();
+    }
+
+    /**
+     * Passes a message through the filter.
+     *
+     * @param message the message
+     * @return the result
+     */
+    public FilterResult filter(String message) {
+        if (this.automaton.isEmpty()) {
+            return new FilterResult(message, false, Collections.emptyList());
+        }
+
+        // for each normalised character: its start and end index in the original message, and how many times it was repeated
+        int length = message.length();
+        int[] starts = new int[length];
+        int[] ends = new int[length];
+        int[] runs = new int[length];
+        int n = 0;
+
+        Matches matches = new Matches(message);
+        int state = AhoCorasick.ROOT;
+        char prev = 0;
+        for (int i = 0; i < length; i++) {
+            char c = normalize(message.charAt(i));
+            if (c == 0) {
+                continue;
+            }
+
+            if (c == prev) {
+                runs[n - 1]++;
+                ends[n - 1] = i + 1;
+                continue;
+            }
+
+            // the run at the current state has ended, so it can now be checked for matches
+            matches.check(state, n, starts, ends, runs);
+
+            prev = c;
+            starts[n] = i;
+            ends[n] = i + 1;
+            runs[n] = 1;
+            n++;
+            state = this.automaton.next(state, c);
+        }
+        matches.check(state, n, starts, ends, runs);
+
+        return matches.toResult();
+    }
+
+    private final class Matches {
+        private final String message;
+        private char[] censored = null;
+        private boolean blocked = false;
+        private List<String> alerts = null;
+
+        Matches(String message) {
+            this.message = message;
+        }
+
+        void check(int state, int n, int[] starts, int[] ends, int[] runs) {
+            for (int s = ChatFilter.this.automaton.firstOutput(state); s >= 0; s = ChatFilter.this.automaton.nextOutput(s)) {
+                int first = n - ChatFilter.this.automaton.getLength(s);
+                int start = starts[first];
+                int end = ends[n - 1];
+
+                for (Word word : ChatFilter.this.automaton.getValue(s)) {
+                    if (word.matches(this.message, start, end, runs, first)) {
+                        apply(word.rule, start, end);
+                    }
+                }
+            }
+        }
+
+        private void apply(FilterRule rule, int start, int end) {
+            for (FilterAction action : rule.getActions()) {
+                switch (action) {
+                    case BLOCK:
+                        this.blocked = true;
+                        break;
+                    case CENSOR:
+                        if (this.censored == null) {
+                            this.censored = this.message.toCharArray();
+                        }
+                        for (int i = start; i < end; i++) {
+                            if (!Character.isWhitespace(this.censored[i])) {
+                                this.censored[i] = ChatFilter.this.censorCharacter;
+                            }
+                        }
+                        break;
+                    case ALERT:
+                        if (this.alerts == null) {
+                            this.alerts = new ArrayList<>();
+                        }
+                        this.alerts.add(this.message.substring(start, end));
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+
+        FilterResult toResult() {
+            return new FilterResult(
+                    this.censored == null ? this.message : new String(this.censored),
+                    this.blocked,
+                    this.alerts == null ? Collections.emptyList() : this.alerts
+            );
+        }
+    }
+
+    private static final class Word {
+        private final FilterRule rule;
+        private final int[] minRuns;
+
+        Word(FilterRule rule, int[] minRuns) {
+            this.rule = rule;
+            this.minRuns = minRuns;
+        }
+
+        boolean matches(String message, int start, int end, int[] runs, int first) {
+            for (int i = 0; i < this.minRuns.length; i++) {
+                if (runs[first + i] < this.minRuns[i]) {
+                    return false;
+                }
+            }
+
+            if (this.rule.isWholeWords()) {
+                if (start > 0 && Character.isLetterOrDigit(message.charAt(start - 1))) {
+                    return false;
+                }
+                if (end < message.length() && Character.isLetterOrDigit(message.charAt(end))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.filter;
+
+import lombok.RequiredArgsConstructor;
+import me.lucko.gchat.GChatPlugin;
+import me.lucko.gchat.config.GChatConfig;
+import me.lucko.gchat.util.LegacyText;
+import net.kyori.text.Component;
+import net.kyori.text.TextComponent;
+import net.kyori.text.adapter.bungeecord.TextAdapter;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Applies the configured {@link ChatFilter} to messages sent by players.
+ */
+@RequiredArgsConstructor
+public class FilterHandler {
+    private final GChatPlugin plugin;
+
+    /**
+     * Filters a message sent by a player, notifying the player and any staff as required.
+     *
+     * @param player the player sending the message
+     * @param message the message
+     * @return the message to send, or null if the message was blocked
+     */
+    public String filter(ProxiedPlayer player, String message) {
+        GChatConfig config = plugin.getConfig();
+        ChatFilter filter = config.getFilter();
+        if (filter.isEmpty() || player.hasPermission("gchat.filter.bypass")) {
+            return message;
+        }
+
+        FilterResult result = filter.filter(message);
+
+        if (!result.getAlerts().isEmpty() && config.getFilterAlertMessage() != null) {
+            // the message and matches are inserted after parsing, so the player can't use codes or placeholders in the alert
+            TextComponent alert = LegacyText.parse(plugin.replacePlaceholders(player, config.getFilterAlertMessage()));
+            alert = insertText(alert, String.join(", ", result.getAlerts()), message);
+            for (ProxiedPlayer p : plugin.getProxy().getPlayers()) {
+                if (p.hasPermission("gchat.filter.alert")) {
+                    TextAdapter.sendComponent(p, alert);
+                }
+            }
+            plugin.getLogger().info("[Filter] " + player.getName() + ": " + message);
+        }
+
+        if (result.isBlocked()) {
+            Component blockMessage = config.getFilterBlockMessage();
+            if (blockMessage != null) {
+                TextAdapter.sendComponent(player, blockMessage);
+            }
+            return null;
+        }
+
+        return result.getMessage();
+    }
+
+    private static TextComponent insertText(TextComponent alert, String matches, String message) {
+        List<Component> children = new ArrayList<>(alert.children().size());
+        for (Component child : alert.children()) {
+            if (child instanceof TextComponent) {
+                TextComponent text = (TextComponent) child;
+                String content = text.content();
+                if (content.contains("{matches}") || content.contains("{message}")) {
+                    child = text.content(replaceTokens(content, matches, message));
+                }
+            }
+            children.add(child);
+        }
+        return (TextComponent) alert.children(children);
+    }
+
+    // replaces both tokens in one pass, so neither replacement is searched for the other token
+    private static String replaceTokens(String content, String matches, String message) {
+        StringBuilder sb = new StringBuilder(content.length() + message.length());
+        int i = 0;
+        while (i < content.length()) {
+            if (content.startsWith("{matches}", i)) {
+                sb.append(matches);
+                i += "{matches}".length();
+            } else if (content.startsWith("{message}", i)) {
+                sb.append(message);
+                i += "{message}".length();
+            } else {
+                sb.append(content.charAt(i++));
+            }
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,71 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.filter;
+
+import com.google.common.collect.ImmutableList;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import net.md_5.bungee.config.Configuration;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A named list of words, and the actions to take when one of them is used.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class FilterRule {
+
+    private final String id;
+    private final Set<FilterAction> actions;
+    private final boolean wholeWords;
+    private final List<String> words;
+
+    public FilterRule(String id, Configuration c) {
+        this.id = id;
+
+        Set<FilterAction> actions = EnumSet.noneOf(FilterAction.class);
+        for (String action : c.getStringList("actions")) {
+            try {
+                actions.add(FilterAction.valueOf(action.toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid filter action for list '" + id + "': " + action);
+            }
+        }
+        if (actions.isEmpty()) {
+            throw new IllegalArgumentException("No actions defined for filter list '" + id + "'");
+        }
+
+        this.actions = actions;
+        this.wholeWords = c.getBoolean("whole-words", false);
+        this.words = ImmutableList.copyOf(c.getStringList("words"));
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.ignore;
+
+import me.lucko.gchat.GChatPlugin;
+import me.lucko.gchat.api.PlayerPreferences;
+import me.lucko.gchat.messaging.Mailbox;
+import net.kyori.text.TextComponent;
+import net.kyori.text.adapter.bungeecord.TextAdapter;
+import net.kyori.text.format.TextColor;
+import net.md_5.bungee.api.CommandSender;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+import net.md_5.bungee.api.plugin.Command;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+public class IgnoreCommand extends Command {
+    private final GChatPlugin plugin;
+
+    public IgnoreCommand(GChatPlugin plugin) {
+        super("ignore", "gchat.command.ignore", "unignore");
+        this.plugin = plugin;
+    }
+
+    @Override
+    public void execute(CommandSender sender, String[] args) {
+        if (!(sender instanceof ProxiedPlayer)) {
+            TextAdapter.sendComponent(sender, TextComponent.of("Only players can ignore other players.", TextColor.RED));
+            return;
+        }
+
+        ProxiedPlayer player = (ProxiedPlayer) sender;
+        IgnoreManager ignoreManager = plugin.getIgnoreManager();
+
+        if (args.length == 0) {
+            List<UUID> ignored = ignoreManager.getIgnored(player.getUniqueId());
+            if (ignored.isEmpty()) {
+                TextAdapter.sendComponent(sender, TextComponent.of("You are not ignoring anyone.", TextColor.GRAY));
+                return;
+            }
+
+            String names = ignored.stream()
+                    .map(this::getName)
+                    .collect(Collectors.joining(", "));
+
+            TextAdapter.sendComponent(sender, TextComponent.of("You are ignoring: ", TextColor.GRAY).append(TextComponent.of(names, TextColor.WHITE)));
+            return;
+        }
+
+        UUID targetUuid;
+        String targetName;
+        ProxiedPlayer target = plugin.getProxy().getPlayer(args[0]);
+        if (target != null) {
+            targetUuid = target.getUniqueId();
+            targetName = target.getName();
+        } else {
+            targetUuid = findOffline(player, args[0]);
+            if (targetUuid == null) {
+                TextAdapter.sendComponent(sender, TextComponent.of(args[0] + " is not online, and hasn't been seen recently.", TextColor.RED));
+                return;
+            }
+            targetName = getName(targetUuid);
+        }
+
+        if (targetUuid.equals(player.getUniqueId())) {
+            TextAdapter.sendComponent(sender, TextComponent.of("You can't ignore yourself.", TextColor.RED));
+            return;
+        }
+
+        // players who are offline are checked when they next send a message
+        if (target != null && target.hasPermission("gchat.ignore.exempt") && !ignoreManager.isIgnoring(player.getUniqueId(), targetUuid)) {
+            TextAdapter.sendComponent(sender, TextComponent.of("You can't ignore " + targetName + ".", TextColor.RED));
+            return;
+        }
+
+        PlayerPreferences preferences = plugin.getPreferenceStore().getLoaded(player.getUniqueId()).orElse(null);
+        if (preferences == null) {
+            TextAdapter.sendComponent(sender, TextComponent.of("Your data is still loading, please try again in a moment.", TextColor.RED));
+            return;
+        }
+
+        if (ignoreManager.toggleIgnore(preferences, targetUuid)) {
+            TextAdapter.sendComponent(sender, TextComponent.of("You are now ignoring " + targetName + ".", TextColor.GREEN));
+        } else {
+            TextAdapter.sendComponent(sender, TextComponent.of("You are no longer ignoring " + targetName + ".", TextColor.GREEN));
+        }
+    }
+
+    /**
+     * Finds a player who isn't online by the name or unique id shown in the ignore list, or
+     * by the name they were last seen with.
+     *
+     * @param player the player running the command
+     * @param arg the name or unique id
+     * @return the unique id, or null if no player was found
+     */
+    private UUID findOffline(ProxiedPlayer player, String arg) {
+        for (UUID uuid : plugin.getIgnoreManager().getIgnored(player.getUniqueId())) {
+            if (uuid.toString().equalsIgnoreCase(arg) || getName(uuid).equalsIgnoreCase(arg)) {
+                return uuid;
+            }
+        }
+
+        Mailbox mailbox = plugin.getMailbox();
+        return mailbox == null ? null : mailbox.getUniqueId(arg);
+    }
+
+    /**
+     * Gets the name of a player, from the proxy if they are online, or else from the names
+     * the mailbox has seen recently. Falls back to the unique id.
+     *
+     * @param uuid the unique id of the player
+     * @return the name
+     */
+    private String getName(UUID uuid) {
+        ProxiedPlayer p = plugin.getProxy().getPlayer(uuid);
+        if (p != null) {
+            return p.getName();
+        }
+
+        Mailbox mailbox = plugin.getMailbox();
+        String name = mailbox == null ? null : mailbox.getName(uuid);
+        return name == null ? uuid.toString() : name;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.ignore;
+
+import me.lucko.gchat.GChatPlugin;
+import me.lucko.gchat.api.PlayerPreferences;
+import me.lucko.gchat.util.UuidSet;
+import net.md_5.bungee.api.event.PlayerDisconnectEvent;
+import net.md_5.bungee.api.plugin.Listener;
+import net.md_5.bungee.event.EventHandler;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Manages the players each player has chosen to ignore.
+ *
+ * <p>Each players ignore list is held as an immutable {@link UuidSet}, which is replaced
+ * (rather than modified) when the list changes. This means lookups made whilst sending a
+ * message never need to lock.</p>
+ *
+ * <p>Ignore lists are persisted in the players {@link PlayerPreferences}, and only kept in
+ * memory whilst the player is online.</p>
+ */
+public class IgnoreManager implements Listener {
+    private static final String PREFERENCE_KEY = "ignored";
+
+    private final GChatPlugin plugin;
+    private final Map<UUID, UuidSet> ignores = new ConcurrentHashMap<>();
+
+    public IgnoreManager(GChatPlugin plugin) {
+        this.plugin = plugin;
+        plugin.getPreferenceStore().addLoadListener(this::onPreferencesLoad);
+    }
+
+    /**
+     * Gets if the given player is ignoring the other.
+     *
+     * @param player the player
+     * @param other the other player
+     * @return true if player is ignoring other
+     */
+    public boolean isIgnoring(UUID player, UUID other) {
+        UuidSet set = ignores.get(player);
+        return set != null && set.contains(other);
+    }
+
+    /**
+     * Gets the players the given player is ignoring.
+     *
+     * @param player the player
+     * @return the ignored players
+     */
+    public List<UUID> getIgnored(UUID player) {
+        UuidSet set = ignores.get(player);
+        return set == null ? Collections.emptyList() : set.toList();
+    }
+
+    /**
+     * Toggles if the player is ignoring the other.
+     *
+     * @param preferences the players preferences
+     * @param other the player to (un)ignore
+     * @return true if the player is now ignoring the other
+     */
+    public boolean toggleIgnore(PlayerPreferences preferences, UUID other) {
+        boolean[] ignoring = new boolean[1];
+        UuidSet set = ignores.compute(preferences.getUniqueId(), (k, existing) -> {
+            UuidSet newSet = existing == null ? new UuidSet() : existing.copy();
+            if (newSet.add(other)) {
+                ignoring[0] = true;
+            } else {
+                newSet.remove(other);
+            }
+            return newSet.isEmpty() ? null : newSet;
+        });
+
+        preferences.setBytes(PREFERENCE_KEY, set == null ? null : encode(set));
+        return ignoring[0];
+    }
+
+    private void onPreferencesLoad(PlayerPreferences preferences) {
+        byte[] data = preferences.getBytes(PREFERENCE_KEY);
+        if (data != null && data.length != 0) {
+            ignores.put(preferences.getUniqueId(), decode(data));
+        }
+    }
+
+    @EventHandler
+    public void onDisconnect(PlayerDisconnectEvent e) {
+        ignores.remove(e.getPlayer().getUniqueId());
+    }
+
+    private static byte[] encode(UuidSet set) {
+        List<UUID> uuids = set.toList();
+        ByteBuffer buf = ByteBuffer.allocate(uuids.size() * 16);
+        for (UUID uuid : uuids) {
+            buf.putLong(uuid.getMostSignificantBits());
+            buf.putLong(uuid.getLeastSignificantBits());
+        }
+        return buf.array();
+    }
+
+    private static UuidSet decode(byte[] data) {
+        ByteBuffer buf = ByteBuffer.wrap(data);
+        UuidSet set = new UuidSet(data.length / 16);
+        while (buf.remaining() >= 16) {
+            set.add(new UUID(buf.getLong(), buf.getLong()));
+        }
+        return set;
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.link;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A set of domains, stored as a trie of their labels in reverse order.
+ *
+ * <p>A domain in the set also matches all of its subdomains, so "example.com" matches
+ * "www.example.com". Lookups walk the labels of the domain from the right, and stop at
+ * the first entry found or the first label which isn't present.</p>
+ */
+public final class DomainTrie {
+
+    public static DomainTrie of(List<String> domains) {
+        DomainTrie trie = new DomainTrie();
+        for (String domain : domains) {
+            trie.add(domain);
+        }
+        return trie;
+    }
+
+    private final Node root = new Node();
+    private boolean empty = true;
+
+    /**
+     * Adds a domain to the set. A leading "*." is ignored.
+     *
+     * @param domain the domain
+     */
+    public void add(String domain) {
+        domain = domain.trim().toLowerCase(Locale.ROOT);
+        if (domain.startsWith("*.")) {
+            domain = domain.substring(2);
+        }
+        if (domain.isEmpty()) {
+            return;
+        }
+
+        Node node = this.root;
+        int end = domain.length();
+        while (true) {
+            int dot = domain.lastIndexOf('.', end - 1);
+            node = node.children.computeIfAbsent(domain.substring(dot + 1, end), s -> new Node());
+            if (dot < 0) {
+                break;
+            }
+            end = dot;
+        }
+
+        node.terminal = true;
+        this.empty = false;
+    }
+
+    /**
+     * Gets if the given domain, or any domain it is a subdomain of, is in the set.
+     *
+     * @param domain the lowercase domain
+     * @return true if the domain matches
+     */
+    public boolean matches(String domain) {
+        Node node = this.root;
+        int end = domain.length();
+        while (true) {
+            int dot = domain.lastIndexOf('.', end - 1);
+            node = node.children.get(domain.substring(dot + 1, end));
+            if (node == null) {
+                return false;
+            }
+            if (node.terminal) {
+                return true;
+            }
+            if (dot < 0) {
+                return false;
+            }
+            end = dot;
+        }
+    }
+
+    public boolean isEmpty() {
+        return this.empty;
+    }
+
+    private static final class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        private boolean terminal = false;
+    }
+
+}
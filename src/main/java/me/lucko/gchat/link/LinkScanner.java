@@ -0,0 +1,232 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.link;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Finds links within chat messages.
+ *
+ * <p>Messages are scanned in a single pass, attempting a match only at the start of each word.
+ * A link is an optional "http://" or "https://" scheme, a domain of two or more labels ending
+ * in an alphabetic top level domain, an optional port, and an optional path which runs until
+ * the next space or color code.</p>
+ *
+ * <p>Domains in the deny list are never linked. If the allow list isn't empty, only domains
+ * within it are linked.</p>
+ */
+public final class LinkScanner {
+    private final boolean schemeless;
+    private final DomainTrie allow;
+    private final DomainTrie deny;
+
+    public LinkScanner(boolean schemeless, DomainTrie allow, DomainTrie deny) {
+        this.schemeless = schemeless;
+        this.allow = allow;
+        this.deny = deny;
+    }
+
+    /**
+     * Finds the links in a message which are permitted by the allow and deny lists.
+     *
+     * @param message the message
+     * @return the links, in order
+     */
+    public List<Link> scan(String message) {
+        List<Link> links = Collections.emptyList();
+        int len = message.length();
+        int i = 0;
+        while (i < len) {
+            if (!isWordStart(message, i)) {
+                i++;
+                continue;
+            }
+
+            Link link = match(message, i);
+            if (link == null) {
+                i++;
+                continue;
+            }
+
+            if (isAllowed(link.getDomain())) {
+                if (links.isEmpty()) {
+                    links = new ArrayList<>();
+                }
+                links.add(link);
+            }
+            i = link.getEnd();
+        }
+        return links;
+    }
+
+    /**
+     * Gets if links to the given domain are permitted.
+     *
+     * @param domain the lowercase domain
+     * @return true if permitted
+     */
+    public boolean isAllowed(String domain) {
+        if (this.deny.matches(domain)) {
+            return false;
+        }
+        return this.allow.isEmpty() || this.allow.matches(domain);
+    }
+
+    private Link match(String s, int start) {
+        int len = s.length();
+        int i = start;
+
+        boolean scheme = true;
+        if (s.regionMatches(true, i, "https://", 0, 8)) {
+            i += 8;
+        } else if (s.regionMatches(true, i, "http://", 0, 7)) {
+            i += 7;
+        } else if (this.schemeless) {
+            scheme = false;
+        } else {
+            return null;
+        }
+
+        // the domain: labels of letters, digits and hyphens, separated by dots
+        int domainStart = i;
+        int labels = 0;
+        int tldStart;
+        while (true) {
+            int labelStart = i;
+            while (i < len && isLabelChar(s.charAt(i))) {
+                i++;
+            }
+
+            int labelLength = i - labelStart;
+            if (labelLength == 0 || labelLength > 63 || s.charAt(labelStart) == '-' || s.charAt(i - 1) == '-') {
+                return null;
+            }
+
+            labels++;
+            tldStart = labelStart;
+
+            if (i + 1 < len && s.charAt(i) == '.' && isLabelChar(s.charAt(i + 1))) {
+                i++;
+                continue;
+            }
+            break;
+        }
+
+        int domainEnd = i;
+        if (labels < 2 || !isTopLevelDomain(s, tldStart, domainEnd)) {
+            return null;
+        }
+
+        // an optional port
+        if (i + 1 < len && s.charAt(i) == ':' && isDigit(s.charAt(i + 1))) {
+            int portStart = ++i;
+            while (i < len && isDigit(s.charAt(i))) {
+                i++;
+            }
+            if (i - portStart > 5) {
+                return null;
+            }
+        }
+
+        // an optional path, query or fragment
+        if (i < len && (s.charAt(i) == '/' || s.charAt(i) == '?' || s.charAt(i) == '#')) {
+            while (i < len && !isPathEnd(s, i)) {
+                i++;
+            }
+
+            // don't include punctuation which ends the sentence the link is in
+            while (i > domainEnd && isTrailingPunctuation(s.charAt(i - 1))) {
+                i--;
+            }
+        } else if (i < len && isLabelChar(s.charAt(i))) {
+            return null;
+        }
+
+        String text = s.substring(start, i);
+        return new Link(start, i, s.substring(domainStart, domainEnd).toLowerCase(Locale.ROOT), scheme ? text : "https://" + text);
+    }
+
+    private static boolean isWordStart(String s, int i) {
+        if (!isLabelChar(s.charAt(i))) {
+            return false;
+        }
+        if (i == 0) {
+            return true;
+        }
+
+        char prev = s.charAt(i - 1);
+        if (Character.isWhitespace(prev) || prev == '(' || prev == '[' || prev == '<' || prev == '"' || prev == '\'') {
+            return true;
+        }
+
+        // directly after a color code
+        return i >= 2 && isColorCode(s, i - 2);
+    }
+
+    private static boolean isPathEnd(String s, int i) {
+        char c = s.charAt(i);
+        return Character.isWhitespace(c) || isColorCode(s, i);
+    }
+
+    private static boolean isColorCode(String s, int i) {
+        char c = s.charAt(i);
+        if ((c != '&' && c != '§') || i + 1 >= s.length()) {
+            return false;
+        }
+
+        char code = Character.toLowerCase(s.charAt(i + 1));
+        return (code >= '0' && code <= '9') || (code >= 'a' && code <= 'f') || (code >= 'k' && code <= 'o') || code == 'r';
+    }
+
+    private static boolean isTopLevelDomain(String s, int start, int end) {
+        if (end - start < 2) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isLabelChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || isDigit(c) || c == '-';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isTrailingPunctuation(char c) {
+        return c == '.' || c == ',' || c == ';' || c == ':' || c == '!' || c == '?' || c == ')' || c == '\'' || c == '"';
+    }
+
+}
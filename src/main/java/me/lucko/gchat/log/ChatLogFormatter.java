@@ -0,0 +1,63 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.log;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.logging.Formatter;
+import java.util.logging.LogRecord;
+
+/**
+ * Formats the chat log file, one message per line.
+ *
+ * <p>Chat messages are written as "yyyy-MM-dd HH:mm:ss [format] sender: message", or
+ * "yyyy-MM-dd HH:mm:ss [format] sender -> target: message" for private messages. The
+ * message is always last, so the line can be split on the first ": " after the format.</p>
+ */
+public class ChatLogFormatter extends Formatter {
+    public static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    @Override
+    public String format(LogRecord record) {
+        StringBuilder sb = new StringBuilder(128);
+        DATE_FORMAT.formatTo(Instant.ofEpochMilli(record.getMillis()), sb);
+        sb.append(' ');
+
+        if (record instanceof ChatLogRecord) {
+            ChatLogRecord chat = (ChatLogRecord) record;
+            sb.append('[').append(chat.getFormat()).append("] ").append(chat.getSender());
+            if (chat.getTarget() != null) {
+                sb.append(" -> ").append(chat.getTarget());
+            }
+            sb.append(": ").append(chat.getRawMessage());
+        } else {
+            sb.append(formatMessage(record));
+        }
+
+        return sb.append('\n').toString();
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.log;
+
+import lombok.Getter;
+
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * A chat message being logged.
+ *
+ * <p>The record message is the message as players saw it, and is what appears in the console.
+ * The other fields are written to the chat log file by {@link ChatLogFormatter}.</p>
+ */
+@Getter
+public class ChatLogRecord extends LogRecord {
+    private final String format;
+    private final String sender;
+    private final String target;
+    private final String rawMessage;
+
+    public ChatLogRecord(String message, String format, String sender, String target, String rawMessage) {
+        super(Level.INFO, message);
+        this.format = format;
+        this.sender = sender;
+        this.target = target;
+        this.rawMessage = rawMessage;
+    }
+}
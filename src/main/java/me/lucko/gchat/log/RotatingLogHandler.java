@@ -0,0 +1,329 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.log;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A log handler which writes to a file on a background thread, and rolls the file over when
+ * it gets too large or a new day starts.
+ *
+ * <p>Logging a record only formats it and adds it to a queue, so it never waits for the disk.
+ * If the queue fills up, records are dropped and a note of how many is written once it has
+ * space again.</p>
+ *
+ * <p>Rolled over files are renamed to "name-yyyy-MM-dd.n.ext", and then compressed and pruned
+ * on a second thread, so compressing a large file doesn't hold up writing new records.</p>
+ */
+public class RotatingLogHandler extends Handler {
+    private static final int QUEUE_CAPACITY = 16384;
+    private static final String STOP = new String("stop");
+
+    private final Path file;
+    private final String baseName;
+    private final String extension;
+    private final Pattern archivePattern;
+
+    private final boolean daily;
+    private final long maxFileSize;
+    private final boolean compress;
+    private final long maxAge;
+    private final long maxTotalSize;
+
+    private final BlockingQueue<String> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writer;
+    private final ExecutorService archiver;
+    private volatile boolean closed = false;
+
+    // only accessed by the writer thread
+    private OutputStream out;
+    private long size;
+    private LocalDate date;
+
+    /**
+     * Creates a new handler.
+     *
+     * @param file the file to log to
+     * @param daily if the file should be rolled over when the date changes
+     * @param maxFileSize the size to roll the file over at, in bytes, or 0 for no limit
+     * @param compress if rolled over files should be compressed
+     * @param maxAge how long to keep rolled over files for, in milliseconds, or 0 for no limit
+     * @param maxTotalSize the maximum total size of the rolled over files, in bytes, or 0 for no limit
+     */
+    public RotatingLogHandler(Path file, boolean daily, long maxFileSize, boolean compress, long maxAge, long maxTotalSize) {
+        this.file = file.toAbsolutePath();
+        this.daily = daily;
+        this.maxFileSize = maxFileSize;
+        this.compress = compress;
+        this.maxAge = maxAge;
+        this.maxTotalSize = maxTotalSize;
+
+        String name = this.file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        this.baseName = dot <= 0 ? name : name.substring(0, dot);
+        this.extension = dot <= 0 ? "" : name.substring(dot);
+        this.archivePattern = Pattern.compile(Pattern.quote(this.baseName) + "-\\d{4}-\\d{2}-\\d{2}\\.\\d+" + Pattern.quote(this.extension) + "(\\.gz)?");
+
+        this.archiver = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "gchat-log-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // tidy up any files left from before a restart
+        this.archiver.execute(this::maintain);
+
+        this.writer = new Thread(this::run, "gchat-log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (this.closed || !isLoggable(record)) {
+            return;
+        }
+
+        String line;
+        try {
+            line = getFormatter().format(record);
+        } catch (Exception e) {
+            reportError(null, e, ErrorManager.FORMAT_FAILURE);
+            return;
+        }
+
+        if (!this.queue.offer(line)) {
+            this.dropped.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void flush() {
+        // the writer flushes whenever the queue is empty
+    }
+
+    @Override
+    public void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+
+        try {
+            this.queue.put(STOP);
+            this.writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        this.archiver.shutdown();
+    }
+
+    private void run() {
+        try {
+            open();
+
+            boolean stop = false;
+            while (!stop) {
+                String line = this.queue.take();
+
+                // write everything that's ready, then flush once
+                while (line != null) {
+                    if (line == STOP) {
+                        stop = true;
+                        break;
+                    }
+                    write(line);
+                    line = this.queue.poll();
+                }
+
+                long dropped = this.dropped.getAndSet(0);
+                if (dropped > 0) {
+                    write(ChatLogFormatter.DATE_FORMAT.format(Instant.now()) + " [gChat] " + dropped + " messages were not logged, as the log queue was full\n");
+                }
+
+                this.out.flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            reportError("Unable to write to " + this.file, e, ErrorManager.WRITE_FAILURE);
+        } finally {
+            if (this.out != null) {
+                try {
+                    this.out.close();
+                } catch (IOException e) {
+                    reportError(null, e, ErrorManager.CLOSE_FAILURE);
+                }
+            }
+        }
+    }
+
+    private void open() throws IOException {
+        Files.createDirectories(this.file.getParent());
+        this.out = new BufferedOutputStream(Files.newOutputStream(this.file, StandardOpenOption.CREATE, StandardOpenOption.APPEND), 8192);
+        this.size = Files.size(this.file);
+
+        // if there's already a file, use the date it was last written to, so it's rolled over if that was yesterday
+        this.date = this.size == 0 ? LocalDate.now() : Files.getLastModifiedTime(this.file).toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+
+    private void write(String line) throws IOException {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+
+        LocalDate today = LocalDate.now();
+        if (this.size > 0 && ((this.daily && !today.equals(this.date)) || (this.maxFileSize > 0 && this.size + bytes.length > this.maxFileSize))) {
+            roll();
+        }
+
+        this.out.write(bytes);
+        this.size += bytes.length;
+    }
+
+    private void roll() throws IOException {
+        this.out.close();
+
+        Path archive;
+        int n = 1;
+        do {
+            archive = this.file.resolveSibling(this.baseName + "-" + this.date + "." + n++ + this.extension);
+        } while (Files.exists(archive) || Files.exists(archive.resolveSibling(archive.getFileName() + ".gz")));
+
+        Files.move(this.file, archive);
+        this.archiver.execute(this::maintain);
+
+        open();
+    }
+
+    /**
+     * Compresses any rolled over files which haven't been yet, then deletes old files until
+     * the limits are met.
+     */
+    private void maintain() {
+        try {
+            List<Path> archives = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.file.getParent())) {
+                for (Path path : stream) {
+                    if (this.archivePattern.matcher(path.getFileName().toString()).matches()) {
+                        archives.add(path);
+                    }
+                }
+            }
+
+            if (this.compress) {
+                for (int i = 0; i < archives.size(); i++) {
+                    Path path = archives.get(i);
+                    if (!path.getFileName().toString().endsWith(".gz")) {
+                        archives.set(i, gzip(path));
+                    }
+                }
+            }
+
+            // oldest first
+            List<ArchivedFile> files = new ArrayList<>(archives.size());
+            for (Path path : archives) {
+                files.add(new ArchivedFile(path, Files.getLastModifiedTime(path).toMillis(), Files.size(path)));
+            }
+            files.sort(Comparator.comparingLong(f -> f.modified));
+
+            long total = 0;
+            for (ArchivedFile f : files) {
+                total += f.size;
+            }
+
+            long now = System.currentTimeMillis();
+            for (ArchivedFile f : files) {
+                boolean expired = this.maxAge > 0 && now - f.modified > this.maxAge;
+                boolean overSize = this.maxTotalSize > 0 && total > this.maxTotalSize;
+                if (!expired && !overSize) {
+                    break;
+                }
+
+                Files.deleteIfExists(f.path);
+                total -= f.size;
+            }
+        } catch (IOException e) {
+            reportError("Unable to maintain old log files", e, ErrorManager.GENERIC_FAILURE);
+        }
+    }
+
+    private static Path gzip(Path path) throws IOException {
+        Path compressed = path.resolveSibling(path.getFileName() + ".gz");
+        Path temp = path.resolveSibling(path.getFileName() + ".gz.tmp");
+        try (InputStream in = Files.newInputStream(path); OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp), 65536)) {
+            byte[] buf = new byte[65536];
+            int read;
+            while ((read = in.read(buf)) != -1) {
+                out.write(buf, 0, read);
+            }
+        }
+
+        // keep the original modification time, so files are still pruned by when they were written
+        Files.setLastModifiedTime(temp, Files.getLastModifiedTime(path));
+        Files.move(temp, compressed);
+        Files.delete(path);
+        return compressed;
+    }
+
+    private static final class ArchivedFile {
+        private final Path path;
+        private final long modified;
+        private final long size;
+
+        ArchivedFile(Path path, long modified, long size) {
+            this.path = path;
+            this.modified = modified;
+            this.size = size;
+        }
+    }
+
+}
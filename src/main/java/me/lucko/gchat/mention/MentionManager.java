@@ -0,0 +1,141 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.mention;
+
+import me.lucko.gchat.GChatPlugin;
+import me.lucko.gchat.config.GChatConfig;
+import me.lucko.gchat.util.LegacyText;
+import net.kyori.text.adapter.bungeecord.TextAdapter;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+import net.md_5.bungee.api.connection.Server;
+import net.md_5.bungee.api.event.PlayerDisconnectEvent;
+import net.md_5.bungee.api.event.PostLoginEvent;
+import net.md_5.bungee.api.plugin.Listener;
+import net.md_5.bungee.event.EventHandler;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+/**
+ * Detects mentions of online players in chat messages.
+ *
+ * <p>The {@link NameMatcher} is rebuilt off the chat thread whenever players join or leave,
+ * and swapped in atomically once complete. Joins and quits in quick succession are batched
+ * into a single rebuild.</p>
+ */
+public class MentionManager implements Listener {
+    public static final String PING_CHANNEL = "gchat:ping";
+    private static final Pattern STRIP_COLOR_PATTERN = Pattern.compile("(?i)[§&][0-9A-FK-OR]");
+
+    private final GChatPlugin plugin;
+    private final AtomicBoolean rebuildPending = new AtomicBoolean(false);
+    private volatile NameMatcher matcher = NameMatcher.EMPTY;
+
+    public MentionManager(GChatPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Finds the online players mentioned in a message.
+     *
+     * @param message the message
+     * @return the mentions
+     */
+    public List<Mention> findMentions(String message) {
+        GChatConfig config = plugin.getConfig();
+        if (!config.isMentions()) {
+            return Collections.emptyList();
+        }
+        return matcher.find(message, config.isMentionsRequireAt(), config.getMentionsMinLength());
+    }
+
+    /**
+     * Notifies a player that they have been mentioned.
+     *
+     * @param sender the player who mentioned them
+     * @param mentioned the mentioned player
+     */
+    public void notifyMentioned(ProxiedPlayer sender, ProxiedPlayer mentioned) {
+        GChatConfig config = plugin.getConfig();
+
+        String sound = config.getMentionsSound();
+        Server server = mentioned.getServer();
+        if (sound != null && server != null) {
+            server.sendData(PING_CHANNEL, sound.getBytes(StandardCharsets.UTF_8));
+        }
+
+        String actionBar = config.getMentionsActionBar();
+        if (actionBar != null) {
+            actionBar = plugin.replacePlaceholders(sender, actionBar);
+            TextAdapter.sendActionBar(mentioned, LegacyText.parse(actionBar));
+        }
+    }
+
+    public void scheduleRebuild() {
+        if (rebuildPending.compareAndSet(false, true)) {
+            plugin.getProxy().getScheduler().schedule(plugin, () -> {
+                rebuildPending.set(false);
+                rebuild();
+            }, 1, TimeUnit.SECONDS);
+        }
+    }
+
+    private void rebuild() {
+        Map<String, UUID> names = new HashMap<>();
+        for (ProxiedPlayer player : plugin.getProxy().getPlayers()) {
+            if (!player.isConnected()) {
+                continue;
+            }
+
+            String displayName = STRIP_COLOR_PATTERN.matcher(player.getDisplayName()).replaceAll("").trim();
+            if (!displayName.isEmpty()) {
+                names.put(displayName.toLowerCase(), player.getUniqueId());
+            }
+
+            // usernames take precedence over display names
+            names.put(player.getName().toLowerCase(), player.getUniqueId());
+        }
+        this.matcher = new NameMatcher(names);
+    }
+
+    @EventHandler
+    public void onLogin(PostLoginEvent e) {
+        scheduleRebuild();
+    }
+
+    @EventHandler
+    public void onDisconnect(PlayerDisconnectEvent e) {
+        scheduleRebuild();
+    }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.mention;
+
+import me.lucko.gchat.util.AhoCorasick;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * An immutable Aho-Corasick automaton which finds player names in a message in a single pass.
+ *
+ * <p>Names are matched case insensitively, and only where they form a whole word.</p>
+ */
+public final class NameMatcher {
+    public static final NameMatcher EMPTY = new NameMatcher(Collections.emptyMap());
+
+    private final AhoCorasick<UUID> automaton;
+
+    /**
+     * Builds a matcher for the given names.
+     *
+     * @param names a map of the names to match (in any case) to the players they identify
+     */
+    public NameMatcher(Map<String, UUID> names) {
+        Map<String, UUID> lowerCase = new HashMap<>(names.size());
+        for (Map.Entry<String, UUID> entry : names.entrySet()) {
+            lowerCase.put(entry.getKey().toLowerCase(), entry.getValue());
+        }
+        this.automaton = new AhoCorasick<>(lowerCase);
+    }
+
+    private static boolean isNameChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    /**
+     * Finds the names mentioned in the given message.
+     *
+     * <p>Overlapping matches are resolved in favour of the one starting first, then the longest.</p>
+     *
+     * @param message the message
+     * @param requireAt if names must be prefixed with '@' to be matched
+     * @param minLength the minimum length of names matched without an '@'
+     * @return the mentions, in the order they appear
+     */
+    public List<Mention> find(String message, boolean requireAt, int minLength) {
+        if (this.automaton.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<Mention> found = null;
+        int state = AhoCorasick.ROOT;
+        for (int i = 0; i < message.length(); i++) {
+            state = this.automaton.next(state, Character.toLowerCase(message.charAt(i)));
+
+            for (int s = this.automaton.firstOutput(state); s >= 0; s = this.automaton.nextOutput(s)) {
+                int length = this.automaton.getLength(s);
+                int end = i + 1;
+                int start = end - length;
+
+                // only match whole words
+                if (end < message.length() && isNameChar(message.charAt(end))) {
+                    continue;
+                }
+                if (start > 0 && isNameChar(message.charAt(start - 1))) {
+                    continue;
+                }
+
+                boolean at = start > 0 && message.charAt(start - 1) == '@';
+                if (!at && (requireAt || length < minLength)) {
+                    continue;
+                }
+
+                if (found == null) {
+                    found = new ArrayList<>();
+                }
+                found.add(new Mention(at ? start - 1 : start, end, this.automaton.getValue(s)));
+            }
+        }
+
+        if (found == null) {
+            return Collections.emptyList();
+        }
+
+        // resolve overlapping matches
+        found.sort((o1, o2) -> o1.getStart() != o2.getStart() ? Integer.compare(o1.getStart(), o2.getStart()) : Integer.compare(o2.getEnd(), o1.getEnd()));
+        List<Mention> mentions = new ArrayList<>(found.size());
+        int lastEnd = -1;
+        for (Mention mention : found) {
+            if (mention.getStart() >= lastEnd) {
+                mentions.add(mention);
+                lastEnd = mention.getEnd();
+            }
+        }
+        return mentions;
+    }
+
+}
@@ -0,0 +1,580 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.messaging;
+
+import com.google.common.io.CountingInputStream;
+import me.lucko.gchat.GChatPlugin;
+import me.lucko.gchat.api.PlayerPreferences;
+import me.lucko.gchat.api.events.GChatPrivateMessageEvent;
+import me.lucko.gchat.config.GChatConfig;
+import me.lucko.gchat.log.ChatLogRecord;
+import me.lucko.gchat.mute.Mute;
+import me.lucko.gchat.util.Durations;
+import me.lucko.gchat.util.LegacyText;
+import net.kyori.text.TextComponent;
+import net.kyori.text.adapter.bungeecord.TextAdapter;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+import net.md_5.bungee.api.event.PostLoginEvent;
+import net.md_5.bungee.api.plugin.Listener;
+import net.md_5.bungee.api.scheduler.ScheduledTask;
+import net.md_5.bungee.event.EventHandler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds private messages sent to offline players, and delivers them when the player next joins.
+ *
+ * <p>Messages are appended to a single file by a background task, so sending one only adds it
+ * to a queue. The file also records the name of each player who joins, so messages can be
+ * addressed to players by name whilst they're offline.</p>
+ *
+ * <p>Only the location of each players messages, and the names of players seen within the
+ * expiry time, are kept in memory. Messages are read from disk when the player joins, and
+ * the file is compacted once enough of it has been delivered or expired.</p>
+ */
+public class Mailbox implements Listener {
+    private static final int MAGIC = 0x67434d42;
+    private static final int VERSION = 1;
+    private static final int HEADER_LENGTH = 8;
+
+    private static final byte OP_MAIL = 1;
+    private static final byte OP_CLEAR = 2;
+    private static final byte OP_NAME = 3;
+
+    private final GChatPlugin plugin;
+    private final File file;
+
+    /** Guards all access to the file and the index */
+    private final Object ioLock = new Object();
+    private final Map<UUID, long[]> index = new HashMap<>();
+    private RandomAccessFile data;
+    private long compactedLength = HEADER_LENGTH;
+
+    /** The number of messages waiting for each player, including those not yet written */
+    private final Map<UUID, Integer> counts = new ConcurrentHashMap<>();
+
+    /** The players seen within the expiry time, keyed by lowercase name */
+    private final Map<String, KnownPlayer> names = new ConcurrentHashMap<>();
+
+    private final Queue<byte[]> pending = new ConcurrentLinkedQueue<>();
+    private ScheduledTask flushTask;
+
+    public Mailbox(GChatPlugin plugin) {
+        this.plugin = plugin;
+        this.file = new File(new File(plugin.getDataFolder(), "data"), "mailbox.dat");
+        plugin.getPreferenceStore().addLoadListener(this::deliver);
+    }
+
+    /**
+     * Opens the mailbox, and starts the background write task.
+     *
+     * @throws IOException if the mailbox could not be read
+     */
+    public void open() throws IOException {
+        synchronized (this.ioLock) {
+            this.file.getParentFile().mkdirs();
+            this.data = openFile(this.file);
+
+            long length = readIndex();
+            if (length < this.data.length()) {
+                // a partial record was left at the end of the file, most likely by a crash
+                this.plugin.getLogger().warning("Discarding " + (this.data.length() - length) + " bytes of incomplete records from " + this.file);
+                this.data.setLength(length);
+            }
+            this.compactedLength = length;
+
+            for (Map.Entry<UUID, long[]> entry : this.index.entrySet()) {
+                this.counts.put(entry.getKey(), entry.getValue().length);
+            }
+        }
+
+        long interval = this.plugin.getConfig().getStorageFlushInterval();
+        this.flushTask = this.plugin.getProxy().getScheduler().schedule(this.plugin, this::flushAndCompact, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes any pending messages, and closes the mailbox.
+     */
+    public void close() {
+        if (this.flushTask != null) {
+            this.flushTask.cancel();
+        }
+
+        synchronized (this.ioLock) {
+            try {
+                flush();
+                this.data.close();
+            } catch (IOException e) {
+                this.plugin.getLogger().severe("Unable to save mailbox");
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Sends a private message to a player who isn't online.
+     *
+     * @param sender the sender
+     * @param recipientName the name of the recipient
+     * @param message the message
+     * @return false if no player with the given name has been seen recently
+     */
+    public boolean send(ProxiedPlayer sender, String recipientName, String message) {
+        KnownPlayer recipient = this.names.get(recipientName.toLowerCase());
+        if (recipient == null) {
+            return false;
+        }
+
+        Mute mute = this.plugin.getMuteManager().getMute(sender);
+        if (mute != null) {
+            this.plugin.getMuteManager().sendMutedMessage(sender, mute);
+            return true;
+        }
+
+        GChatPrivateMessageEvent event = new GChatPrivateMessageEvent(sender, null, recipient.uuid, recipient.name, message, false);
+        this.plugin.getProxy().getPluginManager().callEvent(event);
+        if (event.isCancelled()) {
+            return true;
+        }
+
+        GChatConfig config = this.plugin.getConfig();
+        if (this.counts.getOrDefault(recipient.uuid, 0) >= config.getMailboxMaxMessages()) {
+            sendConfigMessage(sender, config.getMailboxFullMessage(), recipient.name);
+            return true;
+        }
+
+        String playerMessage = this.plugin.getFilterHandler().filter(sender, this.plugin.getRenderer().formatPlayerMessage(sender, message));
+        if (playerMessage == null) {
+            return true;
+        }
+
+        // count the message before it can be flushed, so a delivery never subtracts a message it wasn't counted for
+        this.counts.merge(recipient.uuid, 1, Integer::sum);
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + playerMessage.length());
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(OP_MAIL);
+            writeUuid(out, recipient.uuid);
+            out.writeLong(System.currentTimeMillis());
+            writeUuid(out, sender.getUniqueId());
+            out.writeUTF(sender.getName());
+            out.writeUTF(playerMessage);
+            this.pending.add(bytes.toByteArray());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        sendConfigMessage(sender, config.getMailboxQueuedMessage(), recipient.name);
+
+        TextComponent spyMessage = this.plugin.getRenderer().renderOffline(config.getPrivateMessageSocialSpyFormat(), sender, recipient.name, playerMessage);
+        this.plugin.getPrivateMessageManager().notifySocialSpies(sender, recipient.uuid, spyMessage);
+
+        this.plugin.getChatLogger().log(new ChatLogRecord(sender.getName() + " -> " + recipient.name + " (offline): " + playerMessage, "mail", sender.getName(), recipient.name, playerMessage));
+        return true;
+    }
+
+    /**
+     * Gets the unique id of a player seen recently, by name.
+     *
+     * @param name the name, in any case
+     * @return the unique id, or null if no player with the name has been seen
+     */
+    public UUID getUniqueId(String name) {
+        KnownPlayer player = this.names.get(name.toLowerCase());
+        return player == null ? null : player.uuid;
+    }
+
+    /**
+     * Gets the name of a player seen recently.
+     *
+     * @param uuid the unique id of the player
+     * @return the name, or null if the player hasn't been seen
+     */
+    public String getName(UUID uuid) {
+        for (KnownPlayer player : this.names.values()) {
+            if (player.uuid.equals(uuid)) {
+                return player.name;
+            }
+        }
+        return null;
+    }
+
+    @EventHandler
+    public void onLogin(PostLoginEvent e) {
+        ProxiedPlayer player = e.getPlayer();
+        long now = System.currentTimeMillis();
+        this.names.put(player.getName().toLowerCase(), new KnownPlayer(player.getUniqueId(), player.getName(), now));
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(32 + player.getName().length());
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(OP_NAME);
+            writeUuid(out, player.getUniqueId());
+            out.writeLong(now);
+            out.writeUTF(player.getName());
+            this.pending.add(bytes.toByteArray());
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Delivers any messages waiting for a player, once their preferences (and so their ignore
+     * list) have been loaded. Called from a background thread.
+     *
+     * @param preferences the players preferences
+     */
+    private void deliver(PlayerPreferences preferences) {
+        UUID uuid = preferences.getUniqueId();
+        if (!this.counts.containsKey(uuid)) {
+            return;
+        }
+
+        ProxiedPlayer player = this.plugin.getProxy().getPlayer(uuid);
+        if (player == null) {
+            return;
+        }
+
+        List<Mail> mail;
+        synchronized (this.ioLock) {
+            try {
+                flush();
+                mail = readMail(uuid);
+
+                // mark the messages as delivered
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(17);
+                DataOutputStream out = new DataOutputStream(bytes);
+                out.writeByte(OP_CLEAR);
+                writeUuid(out, uuid);
+                this.data.seek(this.data.length());
+                this.data.write(bytes.toByteArray());
+                this.index.remove(uuid);
+
+                // messages may have been sent since the flush, so adjust the count rather than removing it
+                int read = mail.size();
+                this.counts.computeIfPresent(uuid, (k, count) -> count > read ? count - read : null);
+            } catch (IOException e) {
+                this.plugin.getLogger().severe("Unable to read mailbox for " + uuid);
+                e.printStackTrace();
+                return;
+            }
+        }
+
+        GChatConfig config = this.plugin.getConfig();
+        long now = System.currentTimeMillis();
+        List<Mail> delivered = new ArrayList<>(mail.size());
+        for (Mail m : mail) {
+            if (now - m.time < config.getMailboxExpiry() && !this.plugin.getIgnoreManager().isIgnoring(uuid, m.sender)) {
+                delivered.add(m);
+            }
+        }
+        if (delivered.isEmpty()) {
+            return;
+        }
+
+        // send every message together, as one component
+        TextComponent.Builder builder = TextComponent.builder("");
+        if (config.getMailboxHeader() != null) {
+            builder.append(LegacyText.parse(config.getMailboxHeader().replace("{count}", Integer.toString(delivered.size()))));
+        }
+        for (int i = 0; i < delivered.size(); i++) {
+            Mail m = delivered.get(i);
+            if (i != 0 || config.getMailboxHeader() != null) {
+                builder.append(TextComponent.newline());
+            }
+
+            String line = config.getMailboxFormat()
+                    .replace("{sender}", m.senderName)
+                    .replace("{time}", Durations.format(now - m.time))
+                    .replace("{message}", m.message);
+            builder.append(LegacyText.parse(line));
+        }
+        TextAdapter.sendComponent(player, builder.build());
+    }
+
+    private void sendConfigMessage(ProxiedPlayer player, String message, String name) {
+        if (message != null) {
+            TextAdapter.sendComponent(player, LegacyText.parse(message.replace("{name}", name)));
+        }
+    }
+
+    private void flushAndCompact() {
+        synchronized (this.ioLock) {
+            try {
+                flush();
+
+                // compact once the file is twice the size it was after the last compaction
+                long length = this.data.length();
+                if (length > this.plugin.getConfig().getStorageCompactThreshold() && length > this.compactedLength * 2) {
+                    compact();
+                }
+            } catch (IOException e) {
+                this.plugin.getLogger().severe("Unable to save mailbox");
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // must hold ioLock
+    private void flush() throws IOException {
+        if (this.pending.isEmpty()) {
+            return;
+        }
+
+        long position = this.data.length();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        byte[] record;
+        while ((record = this.pending.poll()) != null) {
+            if (record[0] == OP_MAIL) {
+                addPointer(this.index, readUuid(record, 1), position + bytes.size());
+            }
+            bytes.write(record);
+        }
+
+        this.data.seek(position);
+        this.data.write(bytes.toByteArray());
+    }
+
+    // must hold ioLock
+    private List<Mail> readMail(UUID uuid) throws IOException {
+        long[] pointers = this.index.get(uuid);
+        if (pointers == null) {
+            return new ArrayList<>();
+        }
+
+        List<Mail> mail = new ArrayList<>(pointers.length);
+        for (long pointer : pointers) {
+            this.data.seek(pointer + 17);
+            long time = this.data.readLong();
+            UUID sender = new UUID(this.data.readLong(), this.data.readLong());
+            mail.add(new Mail(time, sender, this.data.readUTF(), this.data.readUTF()));
+        }
+        return mail;
+    }
+
+    // must hold ioLock, and have just flushed
+    private void compact() throws IOException {
+        File tmp = new File(this.file.getParentFile(), this.file.getName() + ".tmp");
+        Map<UUID, long[]> newIndex = new HashMap<>();
+        Map<UUID, Integer> expired = new HashMap<>();
+        long now = System.currentTimeMillis();
+        long expiry = this.plugin.getConfig().getMailboxExpiry();
+
+        long length;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp.toPath())))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            for (UUID uuid : this.index.keySet()) {
+                for (Mail m : readMail(uuid)) {
+                    if (now - m.time >= expiry) {
+                        expired.merge(uuid, 1, Integer::sum);
+                        continue;
+                    }
+
+                    addPointer(newIndex, uuid, out.size());
+                    out.writeByte(OP_MAIL);
+                    writeUuid(out, uuid);
+                    out.writeLong(m.time);
+                    writeUuid(out, m.sender);
+                    out.writeUTF(m.senderName);
+                    out.writeUTF(m.message);
+                }
+            }
+
+            for (KnownPlayer player : this.names.values()) {
+                if (now - player.lastSeen >= expiry) {
+                    this.names.remove(player.name.toLowerCase(), player);
+                    continue;
+                }
+
+                out.writeByte(OP_NAME);
+                writeUuid(out, player.uuid);
+                out.writeLong(player.lastSeen);
+                out.writeUTF(player.name);
+            }
+            length = out.size();
+        }
+
+        this.data.close();
+        Files.move(tmp.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        this.data = openFile(this.file);
+        this.compactedLength = length;
+
+        this.index.clear();
+        this.index.putAll(newIndex);
+
+        // messages may have been sent since the flush, so adjust the counts rather than replacing them
+        for (Map.Entry<UUID, Integer> entry : expired.entrySet()) {
+            this.counts.computeIfPresent(entry.getKey(), (k, count) -> count > entry.getValue() ? count - entry.getValue() : null);
+        }
+    }
+
+    private static RandomAccessFile openFile(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        if (raf.length() < HEADER_LENGTH) {
+            raf.setLength(0);
+            raf.writeInt(MAGIC);
+            raf.writeInt(VERSION);
+        } else {
+            raf.seek(0);
+            if (raf.readInt() != MAGIC) {
+                raf.close();
+                throw new IOException("Not a gChat mailbox file: " + file);
+            }
+            int version = raf.readInt();
+            if (version != VERSION) {
+                raf.close();
+                throw new IOException("Unsupported mailbox file version " + version + ": " + file);
+            }
+        }
+        return raf;
+    }
+
+    /**
+     * Reads the location of all messages, and the names of recently seen players.
+     *
+     * @return the length of the valid records in the file
+     */
+    private long readIndex() throws IOException {
+        this.data.seek(0);
+        CountingInputStream counting = new CountingInputStream(new BufferedInputStream(Channels.newInputStream(this.data.getChannel())));
+        DataInputStream in = new DataInputStream(counting);
+        in.skipBytes(HEADER_LENGTH);
+
+        long now = System.currentTimeMillis();
+        long expiry = this.plugin.getConfig().getMailboxExpiry();
+
+        long valid = HEADER_LENGTH;
+        while (true) {
+            try {
+                byte op = in.readByte();
+                UUID uuid = new UUID(in.readLong(), in.readLong());
+                switch (op) {
+                    case OP_MAIL:
+                        in.readLong();
+                        in.readLong();
+                        in.readLong();
+                        in.readUTF();
+                        in.readUTF();
+                        addPointer(this.index, uuid, valid);
+                        break;
+                    case OP_CLEAR:
+                        this.index.remove(uuid);
+                        break;
+                    case OP_NAME:
+                        long lastSeen = in.readLong();
+                        String name = in.readUTF();
+                        if (now - lastSeen < expiry) {
+                            this.names.put(name.toLowerCase(), new KnownPlayer(uuid, name, lastSeen));
+                        }
+                        break;
+                    default:
+                        // not a record we know, so treat the rest of the file as damaged
+                        return valid;
+                }
+                valid = counting.getCount();
+            } catch (EOFException e) {
+                return valid;
+            }
+        }
+    }
+
+    private static void addPointer(Map<UUID, long[]> index, UUID uuid, long pointer) {
+        long[] pointers = index.get(uuid);
+        if (pointers == null) {
+            pointers = new long[]{pointer};
+        } else {
+            pointers = Arrays.copyOf(pointers, pointers.length + 1);
+            pointers[pointers.length - 1] = pointer;
+        }
+        index.put(uuid, pointers);
+    }
+
+    private static void writeUuid(DataOutputStream out, UUID uuid) throws IOException {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    private static UUID readUuid(byte[] bytes, int offset) {
+        long msb = 0;
+        long lsb = 0;
+        for (int i = 0; i < 8; i++) {
+            msb = (msb << 8) | (bytes[offset + i] & 0xff);
+            lsb = (lsb << 8) | (bytes[offset + 8 + i] & 0xff);
+        }
+        return new UUID(msb, lsb);
+    }
+
+    private static final class Mail {
+        private final long time;
+        private final UUID sender;
+        private final String senderName;
+        private final String message;
+
+        Mail(long time, UUID sender, String senderName, String message) {
+            this.time = time;
+            this.sender = sender;
+            this.senderName = senderName;
+            this.message = message;
+        }
+    }
+
+    private static final class KnownPlayer {
+        private final UUID uuid;
+        private final String name;
+        private final long lastSeen;
+
+        KnownPlayer(UUID uuid, String name, long lastSeen) {
+            this.uuid = uuid;
+            this.name = name;
+            this.lastSeen = lastSeen;
+        }
+    }
+
+}
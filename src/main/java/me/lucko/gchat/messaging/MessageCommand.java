@@ -0,0 +1,96 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.messaging;
+
+import me.lucko.gchat.GChatPlugin;
+import net.kyori.text.TextComponent;
+import net.kyori.text.adapter.bungeecord.TextAdapter;
+import net.kyori.text.format.TextColor;
+import net.md_5.bungee.api.CommandSender;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+import net.md_5.bungee.api.plugin.Command;
+import net.md_5.bungee.api.plugin.TabExecutor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class MessageCommand extends Command implements TabExecutor {
+    private final GChatPlugin plugin;
+
+    public MessageCommand(GChatPlugin plugin) {
+        super("msg", "gchat.command.msg", "tell", "whisper", "w", "m");
+        this.plugin = plugin;
+    }
+
+    @Override
+    public void execute(CommandSender sender, String[] args) {
+        if (!(sender instanceof ProxiedPlayer)) {
+            TextAdapter.sendComponent(sender, TextComponent.of("Only players can send private messages.", TextColor.RED));
+            return;
+        }
+
+        if (args.length < 2) {
+            TextAdapter.sendComponent(sender, TextComponent.of("Usage: /msg <player> <message>", TextColor.RED));
+            return;
+        }
+
+        String message = String.join(" ", Arrays.asList(args).subList(1, args.length));
+
+        ProxiedPlayer recipient = plugin.getProxy().getPlayer(args[0]);
+        if (recipient == null) {
+            // hold the message until they next join, if they've been seen recently
+            if (plugin.getMailbox() == null || !plugin.getMailbox().send((ProxiedPlayer) sender, args[0], message)) {
+                TextAdapter.sendComponent(sender, TextComponent.of(args[0] + " is not online.", TextColor.RED));
+            }
+            return;
+        }
+
+        if (recipient == sender) {
+            TextAdapter.sendComponent(sender, TextComponent.of("You can't send a message to yourself.", TextColor.RED));
+            return;
+        }
+
+        plugin.getPrivateMessageManager().sendMessage((ProxiedPlayer) sender, recipient, message);
+    }
+
+    @Override
+    public Iterable<String> onTabComplete(CommandSender sender, String[] args) {
+        if (args.length != 1) {
+            return Collections.emptyList();
+        }
+
+        String prefix = args[0].toLowerCase();
+        List<String> names = new ArrayList<>();
+        for (ProxiedPlayer player : plugin.getProxy().getPlayers()) {
+            if (player.getName().toLowerCase().startsWith(prefix)) {
+                names.add(player.getName());
+            }
+        }
+        return names;
+    }
+}
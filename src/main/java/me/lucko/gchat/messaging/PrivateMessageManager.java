@@ -0,0 +1,293 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.messaging;
+
+import me.lucko.gchat.GChatPlugin;
+import me.lucko.gchat.api.events.GChatPrivateMessageEvent;
+import me.lucko.gchat.config.GChatConfig;
+import me.lucko.gchat.log.ChatLogRecord;
+import me.lucko.gchat.mute.Mute;
+import net.kyori.text.TextComponent;
+import net.kyori.text.adapter.bungeecord.TextAdapter;
+import net.kyori.text.format.TextColor;
+import net.kyori.text.serializer.plain.PlainComponentSerializer;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+import net.md_5.bungee.api.event.PlayerDisconnectEvent;
+import net.md_5.bungee.api.event.PostLoginEvent;
+import net.md_5.bungee.api.plugin.Listener;
+import net.md_5.bungee.event.EventHandler;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Handles the sending of private messages between players, and tracks who each player
+ * last spoke to so replies can be routed without any lookups.
+ *
+ * <p>When warm restarts are enabled, reply targets are kept for a while after a player leaves,
+ * and saved in the runtime snapshot, so a player who rejoins (or is reconnected after a proxy
+ * restart) can still reply.</p>
+ */
+public class PrivateMessageManager implements Listener {
+    private static final String SOCIAL_SPY_KEY = "social-spy";
+
+    private final GChatPlugin plugin;
+
+    /** The last conversation partner of each player, used to route /reply */
+    private final Map<UUID, UUID> replyTargets = new ConcurrentHashMap<>();
+
+    /** The reply targets of players who have left, and when they left, oldest first */
+    private final Map<UUID, Departed> departed = new LinkedHashMap<>();
+
+    /** Players who currently have social spy enabled */
+    private final Set<UUID> socialSpies = ConcurrentHashMap.newKeySet();
+
+    public PrivateMessageManager(GChatPlugin plugin) {
+        this.plugin = plugin;
+        plugin.getPreferenceStore().addLoadListener(preferences -> {
+            if (preferences.getBoolean(SOCIAL_SPY_KEY, false)) {
+                socialSpies.add(preferences.getUniqueId());
+            }
+        });
+    }
+
+    /**
+     * Gets the player the given player should reply to, if they are still online.
+     *
+     * @param player the player
+     * @return the reply target, or null
+     */
+    public ProxiedPlayer getReplyTarget(ProxiedPlayer player) {
+        UUID target = replyTargets.get(player.getUniqueId());
+        return target == null ? null : plugin.getProxy().getPlayer(target);
+    }
+
+    /**
+     * Toggles social spy for the given player.
+     *
+     * @param player the player
+     * @return true if social spy is now enabled
+     */
+    public boolean toggleSocialSpy(ProxiedPlayer player) {
+        UUID uuid = player.getUniqueId();
+        boolean enabled = !socialSpies.remove(uuid);
+        if (enabled) {
+            socialSpies.add(uuid);
+        }
+
+        plugin.getPreferenceStore().getLoaded(uuid).ifPresent(preferences -> preferences.setBoolean(SOCIAL_SPY_KEY, enabled));
+        return enabled;
+    }
+
+    /**
+     * Sends a private message from one player to another.
+     *
+     * @param sender the sender
+     * @param recipient the recipient
+     * @param message the message
+     * @return true if the message was sent
+     */
+    public boolean sendMessage(ProxiedPlayer sender, ProxiedPlayer recipient, String message) {
+        Mute mute = plugin.getMuteManager().getMute(sender);
+        if (mute != null) {
+            plugin.getMuteManager().sendMutedMessage(sender, mute);
+            return false;
+        }
+
+        if (plugin.getIgnoreManager().isIgnoring(recipient.getUniqueId(), sender.getUniqueId()) && !sender.hasPermission("gchat.ignore.exempt")) {
+            TextAdapter.sendComponent(sender, TextComponent.of(recipient.getName() + " is not accepting messages from you.", TextColor.RED));
+            return false;
+        }
+
+        GChatPrivateMessageEvent event = new GChatPrivateMessageEvent(sender, recipient, message, false);
+        plugin.getProxy().getPluginManager().callEvent(event);
+        if (event.isCancelled()) {
+            return false;
+        }
+
+        GChatConfig config = plugin.getConfig();
+        String playerMessage = plugin.getFilterHandler().filter(sender, plugin.getRenderer().formatPlayerMessage(sender, message));
+        if (playerMessage == null) {
+            return false;
+        }
+
+        TextComponent senderMessage = plugin.getRenderer().render(config.getPrivateMessageSenderFormat(), sender, recipient, playerMessage);
+        TextComponent receiverMessage = plugin.getRenderer().render(config.getPrivateMessageReceiverFormat(), sender, recipient, playerMessage);
+        TextComponent spyMessage = plugin.getRenderer().render(config.getPrivateMessageSocialSpyFormat(), sender, recipient, playerMessage);
+
+        TextAdapter.sendComponent(sender, senderMessage);
+        TextAdapter.sendComponent(recipient, receiverMessage);
+
+        // both parties can now reply to each other
+        replyTargets.put(sender.getUniqueId(), recipient.getUniqueId());
+        replyTargets.put(recipient.getUniqueId(), sender.getUniqueId());
+
+        notifySocialSpies(sender, recipient.getUniqueId(), spyMessage);
+
+        // log the message
+        plugin.getChatLogger().log(new ChatLogRecord(PlainComponentSerializer.INSTANCE.serialize(spyMessage), "private", sender.getName(), recipient.getName(), playerMessage));
+        return true;
+    }
+
+    /**
+     * Sends a private message to the players with social spy enabled, other than the two
+     * parties of the message.
+     *
+     * @param sender the sender
+     * @param recipient the unique id of the recipient
+     * @param spyMessage the message, rendered with the social spy format
+     */
+    public void notifySocialSpies(ProxiedPlayer sender, UUID recipient, TextComponent spyMessage) {
+        for (UUID spyUuid : socialSpies) {
+            if (spyUuid.equals(sender.getUniqueId()) || spyUuid.equals(recipient)) {
+                continue;
+            }
+
+            ProxiedPlayer spy = plugin.getProxy().getPlayer(spyUuid);
+            if (spy != null && spy.hasPermission("gchat.command.socialspy")) {
+                TextAdapter.sendComponent(spy, spyMessage);
+            }
+        }
+    }
+
+    @EventHandler
+    public void onLogin(PostLoginEvent e) {
+        UUID uuid = e.getPlayer().getUniqueId();
+        Departed departed;
+        synchronized (this.departed) {
+            departed = this.departed.remove(uuid);
+        }
+        if (departed != null && System.currentTimeMillis() - departed.time <= plugin.getConfig().getWarmRestartMaxAge()) {
+            replyTargets.putIfAbsent(uuid, departed.target);
+        }
+    }
+
+    @EventHandler
+    public void onDisconnect(PlayerDisconnectEvent e) {
+        UUID uuid = e.getPlayer().getUniqueId();
+        UUID target = replyTargets.remove(uuid);
+        socialSpies.remove(uuid);
+
+        if (target != null && plugin.getConfig().isWarmRestart()) {
+            long now = System.currentTimeMillis();
+            synchronized (departed) {
+                departed.remove(uuid);
+                departed.put(uuid, new Departed(target, now));
+                pruneDeparted(now);
+            }
+        }
+    }
+
+    private void pruneDeparted(long now) {
+        long maxAge = plugin.getConfig().getWarmRestartMaxAge();
+        Iterator<Departed> it = departed.values().iterator();
+        while (it.hasNext() && now - it.next().time > maxAge) {
+            it.remove();
+        }
+    }
+
+    /**
+     * Writes the reply targets of online and recently departed players to the runtime snapshot.
+     *
+     * @param out the snapshot section
+     * @throws IOException if the section could not be written
+     */
+    public void writeSnapshot(DataOutputStream out) throws IOException {
+        long now = System.currentTimeMillis();
+        Map<UUID, Departed> entries;
+        synchronized (departed) {
+            pruneDeparted(now);
+            entries = new LinkedHashMap<>(departed);
+        }
+        for (Map.Entry<UUID, UUID> entry : replyTargets.entrySet()) {
+            entries.put(entry.getKey(), new Departed(entry.getValue(), now));
+        }
+
+        out.writeInt(entries.size());
+        for (Map.Entry<UUID, Departed> entry : entries.entrySet()) {
+            writeUuid(out, entry.getKey());
+            writeUuid(out, entry.getValue().target);
+            out.writeLong(entry.getValue().time);
+        }
+    }
+
+    /**
+     * Restores reply targets from the runtime snapshot. Targets of players who are online are
+     * restored straight away, and the rest when the player next logs in.
+     *
+     * @param in the snapshot section
+     * @throws IOException if the section could not be read
+     */
+    public void readSnapshot(DataInputStream in) throws IOException {
+        long now = System.currentTimeMillis();
+        long maxAge = plugin.getConfig().getWarmRestartMaxAge();
+
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            UUID uuid = readUuid(in);
+            UUID target = readUuid(in);
+            long time = in.readLong();
+            if (now - time > maxAge) {
+                continue;
+            }
+
+            if (plugin.getProxy().getPlayer(uuid) != null) {
+                replyTargets.putIfAbsent(uuid, target);
+            } else {
+                synchronized (departed) {
+                    departed.putIfAbsent(uuid, new Departed(target, time));
+                }
+            }
+        }
+    }
+
+    private static void writeUuid(DataOutputStream out, UUID uuid) throws IOException {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    private static UUID readUuid(DataInputStream in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    private static final class Departed {
+        private final UUID target;
+        private final long time;
+
+        Departed(UUID target, long time) {
+            this.target = target;
+            this.time = time;
+        }
+    }
+
+}
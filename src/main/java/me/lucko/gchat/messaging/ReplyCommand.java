@@ -0,0 +1,65 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.messaging;
+
+import me.lucko.gchat.GChatPlugin;
+import net.kyori.text.TextComponent;
+import net.kyori.text.adapter.bungeecord.TextAdapter;
+import net.kyori.text.format.TextColor;
+import net.md_5.bungee.api.CommandSender;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+import net.md_5.bungee.api.plugin.Command;
+
+public class ReplyCommand extends Command {
+    private final GChatPlugin plugin;
+
+    public ReplyCommand(GChatPlugin plugin) {
+        super("reply", "gchat.command.reply", "r");
+        this.plugin = plugin;
+    }
+
+    @Override
+    public void execute(CommandSender sender, String[] args) {
+        if (!(sender instanceof ProxiedPlayer)) {
+            TextAdapter.sendComponent(sender, TextComponent.of("Only players can send private messages.", TextColor.RED));
+            return;
+        }
+
+        if (args.length == 0) {
+            TextAdapter.sendComponent(sender, TextComponent.of("Usage: /reply <message>", TextColor.RED));
+            return;
+        }
+
+        ProxiedPlayer player = (ProxiedPlayer) sender;
+        ProxiedPlayer recipient = plugin.getPrivateMessageManager().getReplyTarget(player);
+        if (recipient == null) {
+            TextAdapter.sendComponent(sender, TextComponent.of("You have nobody to reply to.", TextColor.RED));
+            return;
+        }
+
+        plugin.getPrivateMessageManager().sendMessage(player, recipient, String.join(" ", args));
+    }
+}
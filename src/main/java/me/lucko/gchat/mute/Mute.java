@@ -0,0 +1,66 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.mute;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * A mute of a player, a server or the whole network.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public final class Mute {
+    public static final long PERMANENT = Long.MAX_VALUE;
+
+    public enum Scope {
+        PLAYER, SERVER, NETWORK
+    }
+
+    private final Scope scope;
+
+    /** The muted players unique id, the muted servers name in lower case, or "*" for the network */
+    private final String key;
+
+    /** A name to show for the muted player or server */
+    private final String name;
+
+    /** When the mute expires, in epoch milliseconds, or {@link #PERMANENT} */
+    private final long expiry;
+
+    /** The name of who applied the mute */
+    private final String actor;
+
+    public boolean isActive(long now) {
+        return this.expiry > now;
+    }
+
+    public boolean isPermanent() {
+        return this.expiry == PERMANENT;
+    }
+}
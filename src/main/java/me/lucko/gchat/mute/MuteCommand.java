@@ -0,0 +1,147 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.mute;
+
+import me.lucko.gchat.GChatPlugin;
+import me.lucko.gchat.util.Durations;
+import net.kyori.text.TextComponent;
+import net.kyori.text.adapter.bungeecord.TextAdapter;
+import net.kyori.text.format.TextColor;
+import net.md_5.bungee.api.CommandSender;
+import net.md_5.bungee.api.config.ServerInfo;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+import net.md_5.bungee.api.plugin.Command;
+import net.md_5.bungee.api.plugin.TabExecutor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class MuteCommand extends Command implements TabExecutor {
+    private final GChatPlugin plugin;
+
+    public MuteCommand(GChatPlugin plugin) {
+        super("mute", "gchat.command.mute");
+        this.plugin = plugin;
+    }
+
+    @Override
+    public void execute(CommandSender sender, String[] args) {
+        MuteManager muteManager = plugin.getMuteManager();
+
+        if (args.length == 0) {
+            List<Mute> mutes = muteManager.getMutes();
+            if (mutes.isEmpty()) {
+                TextAdapter.sendComponent(sender, TextComponent.of("Usage: /mute <player|*|server:<name>> [duration]", TextColor.RED));
+                return;
+            }
+
+            TextAdapter.sendComponent(sender, TextComponent.of("Active mutes:", TextColor.GREEN));
+            for (Mute mute : mutes) {
+                TextAdapter.sendComponent(sender, TextComponent.of("- " + mute.getName() + " (" + describe(mute.getExpiry()) + ", by " + mute.getActor() + ")", TextColor.GRAY));
+            }
+            return;
+        }
+
+        long expiry = Mute.PERMANENT;
+        if (args.length > 1) {
+            long duration = Durations.parse(args[1]);
+            if (duration <= 0) {
+                TextAdapter.sendComponent(sender, TextComponent.of("Invalid duration: " + args[1] + " (e.g. 30s, 10m, 1h30m, 2d)", TextColor.RED));
+                return;
+            }
+            expiry = System.currentTimeMillis() + duration;
+        }
+
+        String target = args[0];
+        if (target.equals("*")) {
+            muteManager.muteNetwork(expiry, sender.getName());
+            TextAdapter.sendComponent(sender, TextComponent.of("Muted the network " + describe(expiry) + ".", TextColor.GREEN));
+            return;
+        }
+
+        if (target.toLowerCase().startsWith("server:")) {
+            ServerInfo server = plugin.getProxy().getServerInfo(target.substring("server:".length()));
+            if (server == null) {
+                TextAdapter.sendComponent(sender, TextComponent.of("Unknown server: " + target.substring("server:".length()), TextColor.RED));
+                return;
+            }
+
+            muteManager.muteServer(server.getName(), expiry, sender.getName());
+            TextAdapter.sendComponent(sender, TextComponent.of("Muted " + server.getName() + " " + describe(expiry) + ".", TextColor.GREEN));
+            return;
+        }
+
+        ProxiedPlayer player = plugin.getProxy().getPlayer(target);
+        if (player == null) {
+            TextAdapter.sendComponent(sender, TextComponent.of(target + " is not online.", TextColor.RED));
+            return;
+        }
+
+        if (player.hasPermission("gchat.mute.exempt")) {
+            TextAdapter.sendComponent(sender, TextComponent.of(player.getName() + " can't be muted.", TextColor.RED));
+            return;
+        }
+
+        muteManager.mutePlayer(player.getUniqueId(), player.getName(), expiry, sender.getName());
+        TextAdapter.sendComponent(sender, TextComponent.of("Muted " + player.getName() + " " + describe(expiry) + ".", TextColor.GREEN));
+        TextAdapter.sendComponent(player, TextComponent.of("You have been muted " + describe(expiry) + ".", TextColor.RED));
+    }
+
+    static String describe(long expiry) {
+        if (expiry == Mute.PERMANENT) {
+            return "permanently";
+        }
+        return "for " + Durations.format(expiry - System.currentTimeMillis());
+    }
+
+    @Override
+    public Iterable<String> onTabComplete(CommandSender sender, String[] args) {
+        if (args.length != 1) {
+            return Collections.emptyList();
+        }
+        return complete(plugin, args[0]);
+    }
+
+    static List<String> complete(GChatPlugin plugin, String arg) {
+        String prefix = arg.toLowerCase();
+        List<String> ret = new ArrayList<>();
+        if ("*".startsWith(prefix)) {
+            ret.add("*");
+        }
+        for (String server : plugin.getProxy().getServers().keySet()) {
+            if (("server:" + server).toLowerCase().startsWith(prefix)) {
+                ret.add("server:" + server);
+            }
+        }
+        for (ProxiedPlayer player : plugin.getProxy().getPlayers()) {
+            if (player.getName().toLowerCase().startsWith(prefix)) {
+                ret.add(player.getName());
+            }
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,351 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.mute;
+
+import me.lucko.gchat.GChatPlugin;
+import me.lucko.gchat.util.Durations;
+import me.lucko.gchat.util.LegacyText;
+import me.lucko.gchat.util.TimingWheel;
+import net.kyori.text.TextComponent;
+import net.kyori.text.adapter.bungeecord.TextAdapter;
+import net.kyori.text.format.TextColor;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+import net.md_5.bungee.api.connection.Server;
+import net.md_5.bungee.api.scheduler.ScheduledTask;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tracks muted players, servers and the network.
+ *
+ * <p>Checking whether a player is muted is a single map lookup, plus two field reads for
+ * server and network mutes, which makes muting every player on a server (or the network)
+ * during a raid as cheap to enforce as muting one. Expiries are tracked on a
+ * {@link TimingWheel}, advanced once a second.</p>
+ *
+ * <p>Active mutes are saved to a small file whenever they change.</p>
+ */
+public class MuteManager {
+    private static final int MAGIC = 0x67434d55;
+    private static final int VERSION = 1;
+    private static final long TICK_MILLIS = 1000;
+    private static final int WHEEL_SLOTS = 512;
+
+    private final GChatPlugin plugin;
+    private final File file;
+
+    private final Map<UUID, Mute> players = new ConcurrentHashMap<>();
+    private final Map<String, Mute> servers = new ConcurrentHashMap<>();
+    private volatile Mute network = null;
+
+    private final TimingWheel<Mute> wheel = new TimingWheel<>(TICK_MILLIS, WHEEL_SLOTS, System.currentTimeMillis());
+    private ScheduledTask tickTask;
+
+    private final Object ioLock = new Object();
+    private final AtomicBoolean saveQueued = new AtomicBoolean(false);
+
+    public MuteManager(GChatPlugin plugin) {
+        this.plugin = plugin;
+        this.file = new File(new File(plugin.getDataFolder(), "data"), "mutes.dat");
+    }
+
+    /**
+     * Loads any saved mutes, and starts advancing the timing wheel.
+     */
+    public void open() {
+        try {
+            load();
+        } catch (IOException e) {
+            this.plugin.getLogger().severe("Unable to load mutes from " + this.file);
+            e.printStackTrace();
+        }
+
+        this.tickTask = this.plugin.getProxy().getScheduler().schedule(this.plugin, () -> this.wheel.advance(System.currentTimeMillis(), this::expire), TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the timing wheel, and saves the active mutes.
+     */
+    public void close() {
+        if (this.tickTask != null) {
+            this.tickTask.cancel();
+        }
+        save();
+    }
+
+    /**
+     * Gets the mute which currently applies to a player, if any.
+     *
+     * @param player the player
+     * @return the mute, or null
+     */
+    public Mute getMute(ProxiedPlayer player) {
+        long now = System.currentTimeMillis();
+
+        Mute mute = this.players.get(player.getUniqueId());
+        if (mute != null && mute.isActive(now)) {
+            return mute;
+        }
+
+        // server and network mutes don't apply to exempt players
+        mute = this.network;
+        if (mute == null || !mute.isActive(now)) {
+            mute = null;
+            if (!this.servers.isEmpty()) {
+                Server server = player.getServer();
+                mute = server == null ? null : this.servers.get(serverKey(server.getInfo().getName()));
+            }
+        }
+        if (mute != null && mute.isActive(now) && !player.hasPermission("gchat.mute.exempt")) {
+            return mute;
+        }
+        return null;
+    }
+
+    /**
+     * Tells a player their message wasn't sent because they are muted.
+     *
+     * @param player the player
+     * @param mute the mute which applies to them
+     */
+    public void sendMutedMessage(ProxiedPlayer player, Mute mute) {
+        String message = this.plugin.getConfig().getMutedMessage();
+        if (message == null) {
+            return;
+        }
+
+        String expiry = mute.isPermanent() ? "never" : "in " + Durations.format(mute.getExpiry() - System.currentTimeMillis());
+        TextAdapter.sendComponent(player, LegacyText.parse(message.replace("{expiry}", expiry)));
+    }
+
+    public void mutePlayer(UUID uuid, String name, long expiry, String actor) {
+        Mute mute = new Mute(Mute.Scope.PLAYER, uuid.toString(), name, expiry, actor);
+        this.players.put(uuid, mute);
+        schedule(mute);
+    }
+
+    public void muteServer(String server, long expiry, String actor) {
+        Mute mute = new Mute(Mute.Scope.SERVER, serverKey(server), server, expiry, actor);
+        this.servers.put(mute.getKey(), mute);
+        schedule(mute);
+    }
+
+    public synchronized void muteNetwork(long expiry, String actor) {
+        Mute mute = new Mute(Mute.Scope.NETWORK, "*", "the network", expiry, actor);
+        this.network = mute;
+        schedule(mute);
+    }
+
+    public boolean unmutePlayer(UUID uuid) {
+        return unmuted(this.players.remove(uuid));
+    }
+
+    public boolean unmuteServer(String server) {
+        return unmuted(this.servers.remove(serverKey(server)));
+    }
+
+    public synchronized boolean unmuteNetwork() {
+        Mute mute = this.network;
+        this.network = null;
+        return unmuted(mute);
+    }
+
+    /**
+     * Gets the active mutes.
+     *
+     * @return the mutes
+     */
+    public List<Mute> getMutes() {
+        long now = System.currentTimeMillis();
+        List<Mute> ret = new ArrayList<>();
+        Mute network = this.network;
+        if (network != null && network.isActive(now)) {
+            ret.add(network);
+        }
+        for (Mute mute : this.servers.values()) {
+            if (mute.isActive(now)) {
+                ret.add(mute);
+            }
+        }
+        for (Mute mute : this.players.values()) {
+            if (mute.isActive(now)) {
+                ret.add(mute);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Gets the key server mutes are stored under, so server names match regardless of case.
+     *
+     * @param server the server name
+     * @return the key
+     */
+    private static String serverKey(String server) {
+        return server.toLowerCase(Locale.ROOT);
+    }
+
+    private void schedule(Mute mute) {
+        if (!mute.isPermanent()) {
+            this.wheel.schedule(mute, mute.getExpiry());
+        }
+        queueSave();
+    }
+
+    private boolean unmuted(Mute mute) {
+        if (mute == null) {
+            return false;
+        }
+
+        // the timeout stays in the wheel, but won't match the current mute when it fires
+        queueSave();
+        return mute.isActive(System.currentTimeMillis());
+    }
+
+    private void expire(Mute mute) {
+        boolean removed;
+        switch (mute.getScope()) {
+            case PLAYER:
+                removed = this.players.remove(UUID.fromString(mute.getKey()), mute);
+                break;
+            case SERVER:
+                removed = this.servers.remove(mute.getKey(), mute);
+                break;
+            default:
+                synchronized (this) {
+                    removed = this.network == mute;
+                    if (removed) {
+                        this.network = null;
+                    }
+                }
+                break;
+        }
+
+        if (!removed) {
+            return;
+        }
+        queueSave();
+
+        if (mute.getScope() == Mute.Scope.PLAYER) {
+            ProxiedPlayer player = this.plugin.getProxy().getPlayer(UUID.fromString(mute.getKey()));
+            if (player != null) {
+                TextAdapter.sendComponent(player, TextComponent.of("You are no longer muted.", TextColor.GREEN));
+            }
+        }
+    }
+
+    private void queueSave() {
+        if (this.saveQueued.compareAndSet(false, true)) {
+            this.plugin.getProxy().getScheduler().runAsync(this.plugin, () -> {
+                this.saveQueued.set(false);
+                save();
+            });
+        }
+    }
+
+    private void save() {
+        synchronized (this.ioLock) {
+            // taken inside the lock, so an older snapshot can't overwrite a newer one
+            List<Mute> mutes = getMutes();
+            try {
+                this.file.getParentFile().mkdirs();
+                File tmp = new File(this.file.getParentFile(), this.file.getName() + ".tmp");
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    out.writeInt(mutes.size());
+                    for (Mute mute : mutes) {
+                        out.writeByte(mute.getScope().ordinal());
+                        out.writeUTF(mute.getKey());
+                        out.writeUTF(mute.getName());
+                        out.writeLong(mute.getExpiry());
+                        out.writeUTF(mute.getActor());
+                    }
+                }
+                Files.move(tmp.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                this.plugin.getLogger().severe("Unable to save mutes to " + this.file);
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void load() throws IOException {
+        if (!this.file.exists()) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        synchronized (this.ioLock) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.file)))) {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    throw new IOException("Unknown file format");
+                }
+
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    Mute.Scope scope = Mute.Scope.values()[in.readUnsignedByte()];
+                    Mute mute = new Mute(scope, in.readUTF(), in.readUTF(), in.readLong(), in.readUTF());
+                    if (!mute.isActive(now)) {
+                        continue;
+                    }
+
+                    switch (scope) {
+                        case PLAYER:
+                            this.players.put(UUID.fromString(mute.getKey()), mute);
+                            break;
+                        case SERVER:
+                            this.servers.put(mute.getKey(), mute);
+                            break;
+                        default:
+                            this.network = mute;
+                            break;
+                    }
+                    if (!mute.isPermanent()) {
+                        this.wheel.schedule(mute, mute.getExpiry());
+                    }
+                }
+            }
+        }
+    }
+}
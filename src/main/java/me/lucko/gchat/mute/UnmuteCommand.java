@@ -0,0 +1,107 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.mute;
+
+import me.lucko.gchat.GChatPlugin;
+import net.kyori.text.TextComponent;
+import net.kyori.text.adapter.bungeecord.TextAdapter;
+import net.kyori.text.format.TextColor;
+import net.md_5.bungee.api.CommandSender;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+import net.md_5.bungee.api.plugin.Command;
+import net.md_5.bungee.api.plugin.TabExecutor;
+
+import java.util.Collections;
+import java.util.UUID;
+
+public class UnmuteCommand extends Command implements TabExecutor {
+    private final GChatPlugin plugin;
+
+    public UnmuteCommand(GChatPlugin plugin) {
+        super("unmute", "gchat.command.unmute");
+        this.plugin = plugin;
+    }
+
+    @Override
+    public void execute(CommandSender sender, String[] args) {
+        if (args.length != 1) {
+            TextAdapter.sendComponent(sender, TextComponent.of("Usage: /unmute <player|*|server:<name>>", TextColor.RED));
+            return;
+        }
+
+        MuteManager muteManager = plugin.getMuteManager();
+        String target = args[0];
+
+        if (target.equals("*")) {
+            if (muteManager.unmuteNetwork()) {
+                TextAdapter.sendComponent(sender, TextComponent.of("Unmuted the network.", TextColor.GREEN));
+            } else {
+                TextAdapter.sendComponent(sender, TextComponent.of("The network is not muted.", TextColor.RED));
+            }
+            return;
+        }
+
+        if (target.toLowerCase().startsWith("server:")) {
+            String server = target.substring("server:".length());
+            if (muteManager.unmuteServer(server)) {
+                TextAdapter.sendComponent(sender, TextComponent.of("Unmuted " + server + ".", TextColor.GREEN));
+            } else {
+                TextAdapter.sendComponent(sender, TextComponent.of(server + " is not muted.", TextColor.RED));
+            }
+            return;
+        }
+
+        ProxiedPlayer player = plugin.getProxy().getPlayer(target);
+        if (player == null) {
+            // the player may have logged out whilst muted
+            for (Mute mute : muteManager.getMutes()) {
+                if (mute.getScope() == Mute.Scope.PLAYER && mute.getName().equalsIgnoreCase(target)) {
+                    muteManager.unmutePlayer(UUID.fromString(mute.getKey()));
+                    TextAdapter.sendComponent(sender, TextComponent.of("Unmuted " + mute.getName() + ".", TextColor.GREEN));
+                    return;
+                }
+            }
+
+            TextAdapter.sendComponent(sender, TextComponent.of(target + " is not muted.", TextColor.RED));
+            return;
+        }
+
+        if (muteManager.unmutePlayer(player.getUniqueId())) {
+            TextAdapter.sendComponent(sender, TextComponent.of("Unmuted " + player.getName() + ".", TextColor.GREEN));
+            TextAdapter.sendComponent(player, TextComponent.of("You are no longer muted.", TextColor.GREEN));
+        } else {
+            TextAdapter.sendComponent(sender, TextComponent.of(player.getName() + " is not muted.", TextColor.RED));
+        }
+    }
+
+    @Override
+    public Iterable<String> onTabComplete(CommandSender sender, String[] args) {
+        if (args.length != 1) {
+            return Collections.emptyList();
+        }
+        return MuteCommand.complete(plugin, args[0]);
+    }
+}
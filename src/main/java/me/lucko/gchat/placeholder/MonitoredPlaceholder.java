@@ -0,0 +1,390 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.placeholder;
+
+import lombok.Getter;
+import me.lucko.gchat.GChatPlugin;
+import me.lucko.gchat.api.Placeholder;
+import me.lucko.gchat.config.GChatConfig;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Wraps a {@link Placeholder} to record its latency and errors, and to stop calling it
+ * when it keeps failing.
+ *
+ * <p>A call fails if it throws, or takes longer than the configured slow threshold. After
+ * enough consecutive failures the circuit "opens", and the placeholder is bypassed until
+ * the cooldown has passed. While open, the last value returned for the same player and
+ * definition is used instead, or the configured fallback if there isn't one. After the
+ * cooldown, a single call is let through to test whether the placeholder has recovered.</p>
+ */
+public class MonitoredPlaceholder {
+    private static final int MAX_DEFINITIONS = 256;
+    private static final int MAX_CACHED_DEFINITIONS = 64;
+    private static final int MAX_VALUES_PER_DEFINITION = 1024;
+    private static final int MAX_SNAPSHOT_VALUE_LENGTH = 8192;
+
+    /** The key values are stored under when there is no player */
+    private static final UUID CONSOLE = new UUID(0, 0);
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final GChatPlugin plugin;
+
+    @Getter
+    private final Placeholder placeholder;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder slowCalls = new LongAdder();
+    private final LongAdder totalTime = new LongAdder();
+    private final AtomicLong maxTime = new AtomicLong();
+    private final AtomicInteger trips = new AtomicInteger();
+
+    // breaker state
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicBoolean trialInProgress = new AtomicBoolean();
+    private final Object breakerLock = new Object();
+    private volatile boolean open;
+    /** The {@link System#nanoTime()} the circuit opened at, only meaningful while it is open */
+    private volatile long openedAt;
+
+    /**
+     * The last value returned for each definition and player, used while the circuit is open.
+     *
+     * <p>Values are only written when they change, so the common case is a lock free read.</p>
+     */
+    private final Map<String, Map<UUID, String>> lastValues = new ConcurrentHashMap<>();
+
+    /** The definitions this placeholder has provided a replacement for */
+    private final Set<String> definitions = ConcurrentHashMap.newKeySet();
+
+    public MonitoredPlaceholder(GChatPlugin plugin, Placeholder placeholder) {
+        this.plugin = plugin;
+        this.placeholder = placeholder;
+    }
+
+    /**
+     * Gets a replacement from the placeholder, unless the circuit is open.
+     *
+     * @param player the associated player
+     * @param definition the placeholder definition
+     * @return a replacement, or null if the definition cannot be satisfied
+     */
+    public String getReplacement(ProxiedPlayer player, String definition) {
+        GChatConfig config = this.plugin.getConfig();
+
+        long start = System.nanoTime();
+        if (!allowCall(start, TimeUnit.MILLISECONDS.toNanos(config.getPlaceholderCooldown()))) {
+            return getLastValue(player, definition);
+        }
+
+        String replacement;
+        boolean failed = false;
+        try {
+            replacement = this.placeholder.getReplacement(player, definition);
+        } catch (Throwable t) {
+            this.errors.increment();
+            replacement = null;
+            failed = true;
+        }
+
+        long elapsed = System.nanoTime() - start;
+        this.calls.increment();
+        this.totalTime.add(elapsed);
+        this.maxTime.accumulateAndGet(elapsed, Math::max);
+        if (elapsed > TimeUnit.MILLISECONDS.toNanos(config.getPlaceholderSlowThreshold())) {
+            this.slowCalls.increment();
+            failed = true;
+        }
+
+        if (failed) {
+            onFailure(start, config.getPlaceholderFailureThreshold());
+        } else {
+            onSuccess(start);
+        }
+
+        if (replacement != null) {
+            if (!this.definitions.contains(definition) && this.definitions.size() < MAX_DEFINITIONS) {
+                this.definitions.add(definition);
+            }
+            recordValue(uniqueId(player), definition, replacement);
+            return replacement;
+        }
+
+        // if the placeholder threw, try to serve a previous value
+        return failed ? getLastValue(player, definition) : null;
+    }
+
+    private boolean allowCall(long now, long cooldown) {
+        if (!this.open) {
+            return true;
+        }
+        if (now - this.openedAt < cooldown) {
+            return false;
+        }
+
+        // the cooldown has passed, let a single call through to test the placeholder
+        return this.trialInProgress.compareAndSet(false, true);
+    }
+
+    // nano times can be negative and wrap, so they're only ever compared by subtracting
+    private void onSuccess(long start) {
+        this.consecutiveFailures.set(0);
+        if (!this.open) {
+            return;
+        }
+
+        synchronized (this.breakerLock) {
+            // a call which started before the circuit opened says nothing about the placeholder now
+            if (!this.open || start - this.openedAt < 0) {
+                return;
+            }
+            this.open = false;
+            this.trialInProgress.set(false);
+        }
+        this.plugin.getLogger().info("Placeholder " + getName() + " has recovered.");
+    }
+
+    private void onFailure(long start, int threshold) {
+        synchronized (this.breakerLock) {
+            if (this.open) {
+                if (start - this.openedAt >= 0) {
+                    // the trial call failed, so stay open for another cooldown
+                    this.openedAt = System.nanoTime();
+                    this.trialInProgress.set(false);
+                }
+                return;
+            }
+
+            if (this.consecutiveFailures.incrementAndGet() < threshold) {
+                return;
+            }
+            this.openedAt = System.nanoTime();
+            this.open = true;
+            this.trips.incrementAndGet();
+        }
+        this.plugin.getLogger().warning("Placeholder " + getName() + " is failing or too slow, and will be bypassed for " +
+                this.plugin.getConfig().getPlaceholderCooldown() + "ms.");
+    }
+
+    private String getLastValue(ProxiedPlayer player, String definition) {
+        if (!this.definitions.contains(definition)) {
+            return null;
+        }
+
+        Map<UUID, String> values = this.lastValues.get(definition);
+        String value = values == null ? null : values.get(uniqueId(player));
+        return value != null ? value : this.plugin.getConfig().getPlaceholderFallback();
+    }
+
+    private void recordValue(UUID uuid, String definition, String value) {
+        Map<UUID, String> values = this.lastValues.get(definition);
+        if (values == null) {
+            if (this.lastValues.size() >= MAX_CACHED_DEFINITIONS) {
+                return;
+            }
+            values = this.lastValues.computeIfAbsent(definition, d -> new ConcurrentHashMap<>());
+        }
+
+        String previous = values.get(uuid);
+        if (value.equals(previous)) {
+            return;
+        }
+        if (previous == null && values.size() >= MAX_VALUES_PER_DEFINITION) {
+            // make room by dropping any other value, most likely one of a player who has left
+            Iterator<UUID> it = values.keySet().iterator();
+            if (it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+        values.put(uuid, value);
+    }
+
+    private static UUID uniqueId(ProxiedPlayer player) {
+        return player == null ? CONSOLE : player.getUniqueId();
+    }
+
+    /**
+     * Writes the breaker state and last values to the runtime snapshot.
+     *
+     * @param out the snapshot section
+     * @throws IOException if the section could not be written
+     */
+    public void writeSnapshot(DataOutputStream out) throws IOException {
+        // the time the circuit opened is written as a wall clock time, as nano times aren't comparable between runs
+        boolean open;
+        long openedAt;
+        synchronized (this.breakerLock) {
+            open = this.open;
+            openedAt = this.openedAt;
+        }
+        out.writeInt(this.consecutiveFailures.get());
+        out.writeBoolean(open);
+        out.writeLong(open ? System.currentTimeMillis() - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - openedAt) : 0);
+
+        List<String> definitions = new ArrayList<>(this.definitions);
+        out.writeInt(definitions.size());
+        for (String definition : definitions) {
+            out.writeUTF(definition);
+        }
+
+        out.writeInt(this.lastValues.size());
+        for (Map.Entry<String, Map<UUID, String>> entry : this.lastValues.entrySet()) {
+            List<Map.Entry<UUID, String>> values = new ArrayList<>(entry.getValue().size());
+            for (Map.Entry<UUID, String> value : entry.getValue().entrySet()) {
+                if (value.getValue().length() <= MAX_SNAPSHOT_VALUE_LENGTH) {
+                    values.add(new AbstractMap.SimpleImmutableEntry<>(value));
+                }
+            }
+
+            out.writeUTF(entry.getKey());
+            out.writeInt(values.size());
+            for (Map.Entry<UUID, String> value : values) {
+                out.writeLong(value.getKey().getMostSignificantBits());
+                out.writeLong(value.getKey().getLeastSignificantBits());
+                out.writeUTF(value.getValue());
+            }
+        }
+    }
+
+    /**
+     * Restores the breaker state and last values from the runtime snapshot.
+     *
+     * <p>An open circuit stays open for the rest of its cooldown, as configured now. A closed
+     * circuit keeps its count of consecutive failures, but is never opened by the restore.</p>
+     *
+     * @param in the snapshot section
+     * @throws IOException if the section could not be read
+     */
+    public void readSnapshot(DataInputStream in) throws IOException {
+        GChatConfig config = this.plugin.getConfig();
+
+        int failures = in.readInt();
+        boolean open = in.readBoolean();
+        long openedAt = in.readLong();
+        if (open) {
+            // no more than the cooldown, as that is all that matters
+            long elapsed = Math.min(Math.max(0, System.currentTimeMillis() - openedAt), config.getPlaceholderCooldown());
+            synchronized (this.breakerLock) {
+                this.openedAt = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(elapsed);
+                this.open = true;
+            }
+            if (elapsed < config.getPlaceholderCooldown()) {
+                this.plugin.getLogger().warning("Placeholder " + getName() + " was failing before the restart, and will be bypassed for " +
+                        (config.getPlaceholderCooldown() - elapsed) + "ms.");
+            }
+        } else {
+            this.consecutiveFailures.set(Math.min(failures, config.getPlaceholderFailureThreshold() - 1));
+        }
+
+        int definitions = in.readInt();
+        for (int i = 0; i < definitions; i++) {
+            String definition = in.readUTF();
+            if (this.definitions.size() < MAX_DEFINITIONS) {
+                this.definitions.add(definition);
+            }
+        }
+
+        int cached = in.readInt();
+        for (int i = 0; i < cached; i++) {
+            String definition = in.readUTF();
+            int values = in.readInt();
+            for (int j = 0; j < values; j++) {
+                recordValue(new UUID(in.readLong(), in.readLong()), definition, in.readUTF());
+            }
+        }
+    }
+
+    public String getName() {
+        return this.placeholder.getClass().getName();
+    }
+
+    public State getState() {
+        if (!this.open) {
+            return State.CLOSED;
+        }
+        return this.trialInProgress.get() || System.nanoTime() - this.openedAt >= TimeUnit.MILLISECONDS.toNanos(this.plugin.getConfig().getPlaceholderCooldown())
+                ? State.HALF_OPEN
+                : State.OPEN;
+    }
+
+    public long getCalls() {
+        return this.calls.sum();
+    }
+
+    public long getErrors() {
+        return this.errors.sum();
+    }
+
+    public long getSlowCalls() {
+        return this.slowCalls.sum();
+    }
+
+    public int getTrips() {
+        return this.trips.get();
+    }
+
+    /**
+     * Gets the average time taken by the placeholder.
+     *
+     * @return the average time, in microseconds
+     */
+    public long getAverageTime() {
+        long calls = this.calls.sum();
+        return calls == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(this.totalTime.sum() / calls);
+    }
+
+    /**
+     * Gets the longest time taken by the placeholder.
+     *
+     * @return the maximum time, in microseconds
+     */
+    public long getMaxTime() {
+        return TimeUnit.NANOSECONDS.toMicros(this.maxTime.get());
+    }
+
+}
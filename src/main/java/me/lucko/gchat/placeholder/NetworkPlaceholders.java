@@ -0,0 +1,186 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.placeholder;
+
+import me.lucko.gchat.GChatPlugin;
+import me.lucko.gchat.api.Placeholder;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+import net.md_5.bungee.api.connection.Server;
+import net.md_5.bungee.api.event.PlayerDisconnectEvent;
+import net.md_5.bungee.api.event.PostLoginEvent;
+import net.md_5.bungee.api.event.ServerSwitchEvent;
+import net.md_5.bungee.api.plugin.Listener;
+import net.md_5.bungee.event.EventHandler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Provides placeholders for the number of players online across the network.
+ *
+ * <p>Counts are kept up to date as players join, leave and switch servers, so each
+ * replacement is a single lookup, regardless of the number of players online.</p>
+ *
+ * <ul>
+ *     <li>{network_online} - the number of players on the network</li>
+ *     <li>{server_online} - the number of players on the players server</li>
+ *     <li>{server_display} - the display name of the players server</li>
+ *     <li>{group_online_&lt;group&gt;} - the number of players on the servers in a group</li>
+ * </ul>
+ */
+public class NetworkPlaceholders implements Placeholder, Listener {
+    private final GChatPlugin plugin;
+
+    private final AtomicInteger networkOnline = new AtomicInteger();
+
+    /** The server each player is on, and the number of players on each server */
+    private final Map<UUID, String> playerServers = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> serverOnline = new ConcurrentHashMap<>();
+
+    /** The number of players in each group, and the groups counters indexed by server */
+    private volatile Map<String, AtomicInteger> groupOnline = Collections.emptyMap();
+    private volatile Map<String, List<AtomicInteger>> serverGroupCounters = Collections.emptyMap();
+
+    public NetworkPlaceholders(GChatPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public String getReplacement(ProxiedPlayer player, String definition) {
+        definition = definition.toLowerCase();
+
+        if (definition.startsWith("group_online_")) {
+            AtomicInteger count = this.groupOnline.get(definition.substring("group_online_".length()));
+            return count == null ? null : Integer.toString(count.get());
+        }
+
+        switch (definition) {
+            case "network_online":
+                return Integer.toString(this.networkOnline.get());
+            case "server_online": {
+                String server = getServer(player);
+                AtomicInteger count = server == null ? null : this.serverOnline.get(server);
+                return Integer.toString(count == null ? 0 : count.get());
+            }
+            case "server_display": {
+                String server = getServer(player);
+                if (server == null) {
+                    return "";
+                }
+                return this.plugin.getConfig().getServerDisplayNames().getOrDefault(server, server);
+            }
+            default:
+                return null;
+        }
+    }
+
+    private String getServer(ProxiedPlayer player) {
+        if (player == null) {
+            return null;
+        }
+        return this.playerServers.get(player.getUniqueId());
+    }
+
+    /**
+     * Recounts all players, and rebuilds the group counters from the current config.
+     */
+    public synchronized void rebuild() {
+        Map<String, List<String>> groups = this.plugin.getConfig().getServerGroups();
+        Map<String, AtomicInteger> groupOnline = new HashMap<>();
+        Map<String, List<AtomicInteger>> serverGroupCounters = new HashMap<>();
+        for (Map.Entry<String, List<String>> group : groups.entrySet()) {
+            AtomicInteger counter = new AtomicInteger();
+            groupOnline.put(group.getKey(), counter);
+            for (String server : group.getValue()) {
+                serverGroupCounters.computeIfAbsent(server, s -> new ArrayList<>()).add(counter);
+            }
+        }
+
+        this.playerServers.clear();
+        this.serverOnline.clear();
+        this.networkOnline.set(0);
+        this.groupOnline = groupOnline;
+        this.serverGroupCounters = serverGroupCounters;
+
+        for (ProxiedPlayer player : this.plugin.getProxy().getPlayers()) {
+            this.networkOnline.incrementAndGet();
+            Server server = player.getServer();
+            if (server != null) {
+                move(player.getUniqueId(), server.getInfo().getName());
+            }
+        }
+    }
+
+    private void move(UUID uuid, String to) {
+        String from = to == null ? this.playerServers.remove(uuid) : this.playerServers.put(uuid, to);
+        if (from != null) {
+            this.serverOnline.get(from).decrementAndGet();
+            for (AtomicInteger counter : this.serverGroupCounters.getOrDefault(from, Collections.emptyList())) {
+                counter.decrementAndGet();
+            }
+        }
+        if (to != null) {
+            this.serverOnline.computeIfAbsent(to, s -> new AtomicInteger()).incrementAndGet();
+            for (AtomicInteger counter : this.serverGroupCounters.getOrDefault(to, Collections.emptyList())) {
+                counter.incrementAndGet();
+            }
+        }
+    }
+
+    @EventHandler
+    public void onLogin(PostLoginEvent e) {
+        synchronized (this) {
+            this.networkOnline.incrementAndGet();
+        }
+    }
+
+    @EventHandler
+    public void onSwitch(ServerSwitchEvent e) {
+        Server server = e.getPlayer().getServer();
+        if (server == null) {
+            return;
+        }
+
+        synchronized (this) {
+            move(e.getPlayer().getUniqueId(), server.getInfo().getName());
+        }
+    }
+
+    @EventHandler
+    public void onDisconnect(PlayerDisconnectEvent e) {
+        synchronized (this) {
+            this.networkOnline.decrementAndGet();
+            move(e.getPlayer().getUniqueId(), null);
+        }
+    }
+
+}
@@ -0,0 +1,66 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.placeholder;
+
+import lombok.RequiredArgsConstructor;
+import me.lucko.gchat.GChatPlugin;
+import me.lucko.gchat.api.ViewerPlaceholder;
+import me.lucko.gchat.config.GChatConfig;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+import net.md_5.bungee.api.connection.Server;
+
+/**
+ * Provides "{viewer_relation}", which describes the sender relative to the viewer.
+ */
+@RequiredArgsConstructor
+public class ViewerRelationPlaceholder implements ViewerPlaceholder {
+    private final GChatPlugin plugin;
+
+    @Override
+    public String getReplacement(ProxiedPlayer player, ProxiedPlayer viewer, String definition) {
+        if (!definition.equalsIgnoreCase("relation")) {
+            return null;
+        }
+
+        GChatConfig config = plugin.getConfig();
+        String relation;
+        if (viewer == player) {
+            relation = config.getViewerRelationSelf();
+        } else if (viewer != null && isSameServer(player, viewer)) {
+            relation = config.getViewerRelationSameServer();
+        } else {
+            relation = config.getViewerRelationOtherServer();
+        }
+
+        return plugin.replacePlaceholders(player, relation);
+    }
+
+    private static boolean isSameServer(ProxiedPlayer player, ProxiedPlayer viewer) {
+        Server server = player.getServer();
+        Server viewerServer = viewer.getServer();
+        return server != null && viewerServer != null && server.getInfo().getName().equals(viewerServer.getInfo().getName());
+    }
+}
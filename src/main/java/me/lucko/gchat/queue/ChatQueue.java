@@ -0,0 +1,308 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.queue;
+
+import me.lucko.gchat.GChatListener;
+import me.lucko.gchat.GChatPlugin;
+import me.lucko.gchat.api.ChatFormat;
+import me.lucko.gchat.api.ChatLane;
+import net.kyori.text.Component;
+import net.kyori.text.adapter.bungeecord.TextAdapter;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Admission control for chat messages.
+ *
+ * <p>Messages are accepted into a bounded queue per {@link ChatLane}, and processed by a fixed
+ * number of worker threads, which always take from the highest priority lane first. Each
+ * worker has its own set of lanes, and each player is assigned to one worker, so a players
+ * messages are always handled one at a time, in the order they were sent.</p>
+ *
+ * <p>When a lane is full, a new message is merged into a message from the same player which
+ * is still waiting (so both are sent as one multi-line message), or otherwise dropped. Messages
+ * in the {@link ChatLane#HIGH high} lane are never dropped, and are queued past the capacity
+ * if they can't be merged.</p>
+ */
+public class ChatQueue {
+    private static final long WARNING_INTERVAL = TimeUnit.SECONDS.toNanos(10);
+    private static final long SHUTDOWN_TIMEOUT = TimeUnit.SECONDS.toMillis(5);
+
+    private final GChatPlugin plugin;
+    private final GChatListener listener;
+    private final int capacity;
+    private final int maxCoalesce;
+
+    private final Shard[] shards;
+    private volatile boolean running = true;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder shed = new LongAdder();
+    private final LongAdder totalLatency = new LongAdder();
+    private final AtomicLong maxLatency = new AtomicLong();
+    private final AtomicLong lastWarning = new AtomicLong(System.nanoTime() - WARNING_INTERVAL);
+
+    public ChatQueue(GChatPlugin plugin, GChatListener listener, int capacity, int workers, int maxCoalesce) {
+        this.plugin = plugin;
+        this.listener = listener;
+        this.capacity = capacity;
+        this.maxCoalesce = maxCoalesce;
+
+        this.shards = new Shard[workers];
+        for (int i = 0; i < workers; i++) {
+            Shard shard = new Shard();
+            shard.worker = new Thread(() -> work(shard), "gchat-chat-worker-" + i);
+            shard.worker.setDaemon(true);
+            this.shards[i] = shard;
+        }
+        for (Shard shard : this.shards) {
+            shard.worker.start();
+        }
+    }
+
+    /**
+     * Submits a message to be processed.
+     *
+     * @param player the player sending the message
+     * @param format the format to use
+     * @param message the message
+     */
+    public void submit(ProxiedPlayer player, ChatFormat format, String message) {
+        this.submitted.increment();
+
+        UUID uuid = player.getUniqueId();
+        Shard shard = this.shards[Math.floorMod(uuid.hashCode(), this.shards.length)];
+        synchronized (shard) {
+            if (this.running) {
+                // a message can't overtake one the player sent earlier, so it is queued behind
+                // any message from them still waiting in a lower priority lane
+                int laneIndex = format.getLane().ordinal();
+                for (int i = shard.lanes.length - 1; i > laneIndex; i--) {
+                    if (shard.lanes[i].pendingBySender.containsKey(uuid)) {
+                        laneIndex = i;
+                        break;
+                    }
+                }
+
+                Lane lane = shard.lanes[laneIndex];
+                ChatJob pending = lane.pendingBySender.get(uuid);
+                boolean full = lane.queue.size() >= this.capacity;
+                if (full && pending != null && pending.format == format && pending.messages.size() < this.maxCoalesce) {
+                    pending.messages.add(message);
+                    this.coalesced.increment();
+                    return;
+                }
+
+                if (!full || laneIndex == ChatLane.HIGH.ordinal()) {
+                    ChatJob job = new ChatJob(player, format, message);
+                    lane.queue.add(job);
+                    lane.pendingBySender.put(uuid, job);
+                    shard.available.release();
+                    return;
+                }
+            }
+        }
+
+        this.shed.increment();
+
+        long now = System.nanoTime();
+        long last = this.lastWarning.get();
+        if (now - last >= WARNING_INTERVAL && this.lastWarning.compareAndSet(last, now)) {
+            this.plugin.getLogger().warning("Chat queue is saturated, dropping messages. (" + this.shed.sum() + " dropped in total)");
+        }
+
+        Component shedMessage = this.plugin.getConfig().getOverloadShedMessage();
+        if (shedMessage != null) {
+            TextAdapter.sendComponent(player, shedMessage);
+        }
+    }
+
+    private void work(Shard shard) {
+        while (true) {
+            try {
+                shard.available.acquire();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            ChatJob job = shard.poll();
+            if (job == null) {
+                // woken by shutdown, and everything queued before it has been processed
+                if (!this.running) {
+                    return;
+                }
+                continue;
+            }
+
+            long latency = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - job.submitTime);
+            this.totalLatency.add(latency);
+            this.maxLatency.accumulateAndGet(latency, Math::max);
+
+            try {
+                this.listener.handle(job.player, job.format, job.messages);
+            } catch (Throwable t) {
+                this.plugin.getLogger().severe("Exception whilst handling chat message from " + job.player.getName());
+                t.printStackTrace();
+            }
+            this.processed.increment();
+        }
+    }
+
+    /**
+     * Stops accepting messages, and waits (for up to a few seconds) for the messages already
+     * queued to be processed before stopping the worker threads.
+     */
+    public void shutdown() {
+        for (Shard shard : this.shards) {
+            synchronized (shard) {
+                this.running = false;
+                shard.available.release();
+            }
+        }
+
+        long deadline = System.currentTimeMillis() + SHUTDOWN_TIMEOUT;
+        for (Shard shard : this.shards) {
+            try {
+                shard.worker.join(Math.max(1, deadline - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        int dropped = 0;
+        for (Shard shard : this.shards) {
+            shard.worker.interrupt();
+            synchronized (shard) {
+                for (Lane lane : shard.lanes) {
+                    for (ChatJob job : lane.queue) {
+                        dropped += job.messages.size();
+                    }
+                    lane.queue.clear();
+                    lane.pendingBySender.clear();
+                }
+            }
+        }
+        if (dropped != 0) {
+            this.plugin.getLogger().warning("Dropped " + dropped + " chat messages which were still queued when gChat was disabled.");
+        }
+    }
+
+    /**
+     * Gets the number of messages waiting in a lane.
+     *
+     * @param lane the lane
+     * @return the number of waiting messages
+     */
+    public int getQueued(ChatLane lane) {
+        int queued = 0;
+        for (Shard shard : this.shards) {
+            synchronized (shard) {
+                queued += shard.lanes[lane.ordinal()].queue.size();
+            }
+        }
+        return queued;
+    }
+
+    public long getSubmitted() {
+        return this.submitted.sum();
+    }
+
+    public long getProcessed() {
+        return this.processed.sum();
+    }
+
+    public long getCoalesced() {
+        return this.coalesced.sum();
+    }
+
+    public long getShed() {
+        return this.shed.sum();
+    }
+
+    /**
+     * Gets the average time messages have waited in the queue.
+     *
+     * @return the average wait, in microseconds
+     */
+    public long getAverageLatency() {
+        long processed = this.processed.sum();
+        return processed == 0 ? 0 : this.totalLatency.sum() / processed;
+    }
+
+    /**
+     * Gets the longest time a message has waited in the queue.
+     *
+     * @return the maximum wait, in microseconds
+     */
+    public long getMaxLatency() {
+        return this.maxLatency.get();
+    }
+
+    /**
+     * The lanes of one worker thread. Guarded by the shards monitor.
+     */
+    private static final class Shard {
+        private final Lane[] lanes = new Lane[ChatLane.values().length];
+        private final Semaphore available = new Semaphore(0);
+        private Thread worker;
+
+        Shard() {
+            for (int i = 0; i < this.lanes.length; i++) {
+                this.lanes[i] = new Lane();
+            }
+        }
+
+        synchronized ChatJob poll() {
+            for (Lane lane : this.lanes) {
+                ChatJob job = lane.queue.poll();
+                if (job != null) {
+                    lane.pendingBySender.remove(job.player.getUniqueId(), job);
+                    return job;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final class Lane {
+        private final ArrayDeque<ChatJob> queue = new ArrayDeque<>();
+
+        /** The last message queued by each player in this lane */
+        private final Map<UUID, ChatJob> pendingBySender = new HashMap<>();
+    }
+
+}
@@ -0,0 +1,250 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.queue;
+
+import me.lucko.gchat.GChatPlugin;
+import net.kyori.text.Component;
+import net.kyori.text.adapter.bungeecord.TextAdapter;
+import net.md_5.bungee.api.chat.BaseComponent;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Sends messages to large numbers of players in parallel.
+ *
+ * <p>Recipients are split into partitions by their unique id, and each partition is served by
+ * its own thread, so every player receives messages in the order they were sent, and a
+ * partition which falls behind doesn't hold up the others. Each partition has a bounded queue;
+ * when it is full, the message is dropped for that partition's recipients rather than making
+ * the sending thread wait, as it is usually a network thread. Recipients who have disconnected
+ * by the time their partition gets to a message are skipped.</p>
+ *
+ * <p>Audiences smaller than the threshold are sent on the calling thread, unless a parallel
+ * send is still in progress.</p>
+ */
+public class FanOut {
+    private static final long WARNING_INTERVAL = TimeUnit.SECONDS.toNanos(10);
+
+    private final GChatPlugin plugin;
+    private final int threshold;
+
+    private final ForkJoinPool filterPool;
+    private final Partition[] partitions;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicLong lastWarning = new AtomicLong(System.nanoTime() - WARNING_INTERVAL);
+
+    public FanOut(GChatPlugin plugin, int threshold, int threads, int queueCapacity) {
+        this.plugin = plugin;
+        this.threshold = threads <= 0 ? Integer.MAX_VALUE : threshold;
+
+        if (threads <= 0) {
+            this.filterPool = null;
+            this.partitions = new Partition[0];
+            return;
+        }
+
+        this.filterPool = new ForkJoinPool(threads);
+        this.partitions = new Partition[threads];
+        for (int i = 0; i < threads; i++) {
+            this.partitions[i] = new Partition(i, queueCapacity);
+        }
+    }
+
+    /**
+     * Filters the given players, in parallel if there are enough of them.
+     *
+     * <p>The filter may be called from several threads at once, so it must be thread safe, and
+     * shouldn't call events, as listeners don't expect to be called concurrently.</p>
+     *
+     * @param players the players
+     * @param filter the filter
+     * @return the players accepted by the filter, in their original order
+     */
+    public List<ProxiedPlayer> filter(Collection<ProxiedPlayer> players, Predicate<ProxiedPlayer> filter) {
+        if (players.size() < this.threshold) {
+            List<ProxiedPlayer> ret = new ArrayList<>();
+            for (ProxiedPlayer player : players) {
+                if (filter.test(player)) {
+                    ret.add(player);
+                }
+            }
+            return ret;
+        }
+
+        List<ProxiedPlayer> snapshot = new ArrayList<>(players);
+        return this.filterPool.submit(() -> snapshot.parallelStream().filter(filter).collect(Collectors.toList())).join();
+    }
+
+    /**
+     * Sends a message to the given recipients.
+     *
+     * @param recipients the recipients
+     * @param message the message
+     */
+    public void send(Iterable<? extends ProxiedPlayer> recipients, Component message) {
+        List<ProxiedPlayer> snapshot = new ArrayList<>();
+        for (ProxiedPlayer recipient : recipients) {
+            snapshot.add(recipient);
+        }
+
+        if (snapshot.size() < this.threshold && this.inFlight.get() == 0) {
+            TextAdapter.sendComponent(snapshot, message);
+            return;
+        }
+
+        // serialize once, and share the result between partitions
+        BaseComponent[] components = TextAdapter.toBungeeCord(message);
+
+        List<List<ProxiedPlayer>> chunks = new ArrayList<>(this.partitions.length);
+        for (int i = 0; i < this.partitions.length; i++) {
+            chunks.add(new ArrayList<>(snapshot.size() / this.partitions.length + 1));
+        }
+        for (ProxiedPlayer recipient : snapshot) {
+            chunks.get(Math.floorMod(recipient.getUniqueId().hashCode(), this.partitions.length)).add(recipient);
+        }
+
+        for (int i = 0; i < this.partitions.length; i++) {
+            List<ProxiedPlayer> chunk = chunks.get(i);
+            if (!chunk.isEmpty()) {
+                this.partitions[i].submit(new SendTask(chunk, components));
+            }
+        }
+    }
+
+    private void onDropped(int recipients) {
+        this.inFlight.decrementAndGet();
+        this.dropped.add(recipients);
+
+        long now = System.nanoTime();
+        long last = this.lastWarning.get();
+        if (now - last >= WARNING_INTERVAL && this.lastWarning.compareAndSet(last, now)) {
+            this.plugin.getLogger().warning("Fan-out threads are falling behind, dropping messages. (" + this.dropped.sum() + " deliveries dropped in total)");
+        }
+    }
+
+    /**
+     * Stops the partition threads, after sending any queued messages.
+     */
+    public void shutdown() {
+        for (Partition partition : this.partitions) {
+            partition.running = false;
+            partition.thread.interrupt();
+        }
+        for (Partition partition : this.partitions) {
+            try {
+                partition.thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (this.filterPool != null) {
+            this.filterPool.shutdown();
+        }
+    }
+
+    public int getInFlight() {
+        return this.inFlight.get();
+    }
+
+    public long getDropped() {
+        return this.dropped.sum();
+    }
+
+    private static final class SendTask {
+        private final List<ProxiedPlayer> recipients;
+        private final BaseComponent[] components;
+
+        SendTask(List<ProxiedPlayer> recipients, BaseComponent[] components) {
+            this.recipients = recipients;
+            this.components = components;
+        }
+    }
+
+    private final class Partition {
+        private final BlockingQueue<SendTask> queue;
+        private final Thread thread;
+        private volatile boolean running = true;
+
+        Partition(int id, int capacity) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.thread = new Thread(this::run, "gchat-fan-out-" + id);
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        void submit(SendTask task) {
+            FanOut.this.inFlight.incrementAndGet();
+            if (!this.queue.offer(task)) {
+                onDropped(task.recipients.size());
+            }
+        }
+
+        private void run() {
+            while (this.running || !this.queue.isEmpty()) {
+                SendTask task;
+                try {
+                    task = this.queue.take();
+                } catch (InterruptedException e) {
+                    if (!this.running) {
+                        task = this.queue.poll();
+                        if (task == null) {
+                            return;
+                        }
+                    } else {
+                        continue;
+                    }
+                }
+
+                for (ProxiedPlayer recipient : task.recipients) {
+                    if (!recipient.isConnected()) {
+                        continue;
+                    }
+                    try {
+                        recipient.sendMessage(task.components);
+                    } catch (Throwable t) {
+                        FanOut.this.plugin.getLogger().severe("Exception whilst sending chat message to " + recipient.getName());
+                        t.printStackTrace();
+                    }
+                }
+                FanOut.this.inFlight.decrementAndGet();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,181 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.queue;
+
+import me.lucko.gchat.GChatPlugin;
+import net.kyori.text.Component;
+import net.kyori.text.TextComponent;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merges chat messages sent in quick succession, so each recipient gets fewer, multi-line
+ * messages instead of one packet per message.
+ *
+ * <p>Messages are held in a batch for at most their window. When the batch is flushed, the
+ * messages for each recipient are joined with new lines, and recipients who received the
+ * same messages are sent the same component together.</p>
+ *
+ * <p>Messages with no window are sent immediately, unless a batch is pending, in which case
+ * the batch is flushed first so ordering is kept.</p>
+ */
+public class SendCoalescer {
+    private final GChatPlugin plugin;
+
+    private final Object lock = new Object();
+    private volatile Batch batch = null;
+
+    public SendCoalescer(GChatPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Sends a message, possibly merged with others.
+     *
+     * @param recipients the recipients
+     * @param message the message
+     * @param window the longest the message may be held for, in milliseconds
+     */
+    public void send(Iterable<? extends ProxiedPlayer> recipients, Component message, int window) {
+        // nothing to keep in order with, so send straight away
+        if (window <= 0 && this.batch == null) {
+            this.plugin.getFanOut().send(recipients, message);
+            return;
+        }
+
+        Batch flush = null;
+        synchronized (this.lock) {
+            if (this.batch == null) {
+                this.batch = new Batch();
+            }
+
+            Batch batch = this.batch;
+            batch.add(recipients, message);
+
+            if (window <= 0) {
+                this.batch = null;
+                flush = batch;
+            } else {
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(window);
+                if (batch.deadline == 0 || deadline < batch.deadline) {
+                    batch.deadline = deadline;
+                    this.plugin.getProxy().getScheduler().schedule(this.plugin, () -> flush(batch), window, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+
+        if (flush != null) {
+            flush.send(this.plugin.getFanOut());
+        }
+    }
+
+    /**
+     * Sends a message to a single recipient, possibly merged with others.
+     *
+     * @param recipient the recipient
+     * @param message the message
+     * @param window the longest the message may be held for, in milliseconds
+     */
+    public void send(ProxiedPlayer recipient, Component message, int window) {
+        send(Collections.singletonList(recipient), message, window);
+    }
+
+    /**
+     * Sends any pending messages immediately.
+     */
+    public void flush() {
+        Batch batch;
+        synchronized (this.lock) {
+            batch = this.batch;
+            this.batch = null;
+        }
+        if (batch != null) {
+            batch.send(this.plugin.getFanOut());
+        }
+    }
+
+    private void flush(Batch batch) {
+        synchronized (this.lock) {
+            if (this.batch != batch) {
+                return;
+            }
+            this.batch = null;
+        }
+        batch.send(this.plugin.getFanOut());
+    }
+
+    private static final class Batch {
+        private final List<Component> messages = new ArrayList<>();
+
+        /** The indexes of the messages for each recipient, in order */
+        private final Map<ProxiedPlayer, List<Integer>> recipients = new LinkedHashMap<>();
+
+        private long deadline = 0;
+
+        void add(Iterable<? extends ProxiedPlayer> recipients, Component message) {
+            Integer index = this.messages.size();
+            this.messages.add(message);
+            for (ProxiedPlayer recipient : recipients) {
+                this.recipients.computeIfAbsent(recipient, r -> new ArrayList<>(4)).add(index);
+            }
+        }
+
+        void send(FanOut fanOut) {
+            // group recipients who received the same messages
+            Map<List<Integer>, List<ProxiedPlayer>> audiences = new HashMap<>();
+            for (Map.Entry<ProxiedPlayer, List<Integer>> entry : this.recipients.entrySet()) {
+                audiences.computeIfAbsent(entry.getValue(), i -> new ArrayList<>()).add(entry.getKey());
+            }
+
+            for (Map.Entry<List<Integer>, List<ProxiedPlayer>> audience : audiences.entrySet()) {
+                fanOut.send(audience.getValue(), join(audience.getKey()));
+            }
+        }
+
+        private Component join(List<Integer> indexes) {
+            if (indexes.size() == 1) {
+                return this.messages.get(indexes.get(0));
+            }
+
+            TextComponent.Builder builder = TextComponent.builder("");
+            for (int i = 0; i < indexes.size(); i++) {
+                if (i != 0) {
+                    builder.append(TextComponent.newline());
+                }
+                builder.append(this.messages.get(indexes.get(i)));
+            }
+            return builder.build();
+        }
+    }
+
+}
@@ -0,0 +1,408 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.storage;
+
+import com.google.common.io.CountingInputStream;
+import me.lucko.gchat.GChatPlugin;
+import me.lucko.gchat.api.PlayerPreferences;
+import net.md_5.bungee.api.event.PlayerDisconnectEvent;
+import net.md_5.bungee.api.event.PostLoginEvent;
+import net.md_5.bungee.api.plugin.Listener;
+import net.md_5.bungee.api.scheduler.ScheduledTask;
+import net.md_5.bungee.event.EventHandler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * A small embedded store for {@link PlayerPreferences}.
+ *
+ * <p>Changes are appended to a log file by a background task. When the log grows past a
+ * threshold, the current state of every player is compacted into a snapshot file and the
+ * log is truncated.</p>
+ *
+ * <p>Only the location of each players records is kept in memory. A players preferences are
+ * read from disk when they log in, and dropped from memory when they disconnect.</p>
+ */
+public class PreferenceStore implements Listener {
+    private static final int MAGIC = 0x67434850;
+    private static final int VERSION = 1;
+    private static final int HEADER_LENGTH = 8;
+
+    private static final byte OP_REMOVE = 0;
+    private static final byte OP_SET = 1;
+
+    /** Flag set on record pointers which point into the snapshot, rather than the log */
+    private static final long SNAPSHOT_FLAG = 1L << 62;
+
+    private final GChatPlugin plugin;
+    private final File snapshotFile;
+    private final File logFile;
+
+    /** Guards all access to the files and the index */
+    private final Object ioLock = new Object();
+    private final Map<UUID, long[]> index = new HashMap<>();
+    private RandomAccessFile snapshot;
+    private RandomAccessFile log;
+
+    private final Map<UUID, StoredPreferences> loaded = new ConcurrentHashMap<>();
+    private final Queue<Mutation> pending = new ConcurrentLinkedQueue<>();
+    private final List<Consumer<PlayerPreferences>> loadListeners = new CopyOnWriteArrayList<>();
+    private ScheduledTask flushTask;
+
+    public PreferenceStore(GChatPlugin plugin) {
+        this.plugin = plugin;
+        File directory = new File(plugin.getDataFolder(), "data");
+        this.snapshotFile = new File(directory, "preferences.snapshot");
+        this.logFile = new File(directory, "preferences.log");
+    }
+
+    /**
+     * Opens the store, and starts the background write task.
+     *
+     * @throws IOException if the store could not be read
+     */
+    public void open() throws IOException {
+        synchronized (this.ioLock) {
+            this.snapshotFile.getParentFile().mkdirs();
+
+            this.snapshot = openFile(this.snapshotFile);
+            readIndex(this.snapshot, true);
+
+            this.log = openFile(this.logFile);
+            long logLength = readIndex(this.log, false);
+            if (logLength < this.log.length()) {
+                // a partial record was left at the end of the log, most likely by a crash
+                this.plugin.getLogger().warning("Discarding " + (this.log.length() - logLength) + " bytes of incomplete records from " + this.logFile);
+                this.log.setLength(logLength);
+            }
+        }
+
+        long interval = this.plugin.getConfig().getStorageFlushInterval();
+        this.flushTask = this.plugin.getProxy().getScheduler().schedule(this.plugin, this::flushAndCompact, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes any pending changes, and closes the store.
+     */
+    public void close() {
+        if (this.flushTask != null) {
+            this.flushTask.cancel();
+        }
+
+        synchronized (this.ioLock) {
+            try {
+                flush();
+                this.snapshot.close();
+                this.log.close();
+            } catch (IOException e) {
+                this.plugin.getLogger().severe("Unable to save preferences");
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Registers a callback to be run when an online players preferences have been loaded.
+     *
+     * @param listener the listener
+     */
+    public void addLoadListener(Consumer<PlayerPreferences> listener) {
+        this.loadListeners.add(listener);
+    }
+
+    /**
+     * Gets the preferences of an online player, if they have been loaded. Never touches the disk.
+     *
+     * @param uuid the players unique id
+     * @return the preferences, if loaded
+     */
+    public Optional<PlayerPreferences> getLoaded(UUID uuid) {
+        return Optional.ofNullable(this.loaded.get(uuid));
+    }
+
+    /**
+     * Loads the preferences of a player in the background.
+     *
+     * @param uuid the players unique id
+     * @return a future of the preferences
+     */
+    public CompletableFuture<PlayerPreferences> load(UUID uuid) {
+        StoredPreferences existing = this.loaded.get(uuid);
+        if (existing != null) {
+            return CompletableFuture.completedFuture(existing);
+        }
+
+        CompletableFuture<PlayerPreferences> future = new CompletableFuture<>();
+        this.plugin.getProxy().getScheduler().runAsync(this.plugin, () -> {
+            try {
+                future.complete(new StoredPreferences(this, uuid, read(uuid)));
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        return future;
+    }
+
+    void enqueue(UUID uuid, String key, byte[] value) {
+        this.pending.add(new Mutation(uuid, key, value));
+    }
+
+    @EventHandler
+    public void onLogin(PostLoginEvent e) {
+        UUID uuid = e.getPlayer().getUniqueId();
+        load(uuid).thenAccept(preferences -> {
+            // the player may have left before we finished loading
+            if (this.plugin.getProxy().getPlayer(uuid) == null) {
+                return;
+            }
+
+            this.loaded.put(uuid, (StoredPreferences) preferences);
+            for (Consumer<PlayerPreferences> listener : this.loadListeners) {
+                listener.accept(preferences);
+            }
+        }).exceptionally(t -> {
+            this.plugin.getLogger().severe("Unable to load preferences for " + uuid);
+            t.printStackTrace();
+            return null;
+        });
+    }
+
+    @EventHandler
+    public void onDisconnect(PlayerDisconnectEvent e) {
+        // any changes are already queued, so the in memory copy can be dropped straight away
+        this.loaded.remove(e.getPlayer().getUniqueId());
+    }
+
+    private void flushAndCompact() {
+        synchronized (this.ioLock) {
+            try {
+                flush();
+                if (this.log.length() > this.plugin.getConfig().getStorageCompactThreshold()) {
+                    compact();
+                }
+            } catch (IOException e) {
+                this.plugin.getLogger().severe("Unable to save preferences");
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private Map<String, byte[]> read(UUID uuid) throws IOException {
+        synchronized (this.ioLock) {
+            // make sure we read any changes still waiting to be written
+            flush();
+            return readRecords(uuid);
+        }
+    }
+
+    // must hold ioLock
+    private Map<String, byte[]> readRecords(UUID uuid) throws IOException {
+        Map<String, byte[]> values = new HashMap<>();
+        long[] pointers = this.index.get(uuid);
+        if (pointers == null) {
+            return values;
+        }
+
+        for (long pointer : pointers) {
+            RandomAccessFile file = (pointer & SNAPSHOT_FLAG) != 0 ? this.snapshot : this.log;
+            file.seek(pointer & ~SNAPSHOT_FLAG);
+            file.readLong();
+            file.readLong();
+
+            String key = file.readUTF();
+            byte op = file.readByte();
+            if (op == OP_SET) {
+                byte[] value = new byte[file.readInt()];
+                file.readFully(value);
+                values.put(key, value);
+            } else {
+                values.remove(key);
+            }
+        }
+        return values;
+    }
+
+    // must hold ioLock
+    private void flush() throws IOException {
+        if (this.pending.isEmpty()) {
+            return;
+        }
+
+        long position = this.log.length();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        Mutation mutation;
+        while ((mutation = this.pending.poll()) != null) {
+            addPointer(this.index, mutation.uuid, position + out.size());
+            writeRecord(out, mutation.uuid, mutation.key, mutation.value);
+        }
+
+        this.log.seek(position);
+        this.log.write(bytes.toByteArray());
+    }
+
+    // must hold ioLock, and have just flushed
+    private void compact() throws IOException {
+        File tmp = new File(this.snapshotFile.getParentFile(), this.snapshotFile.getName() + ".tmp");
+        Map<UUID, long[]> newIndex = new HashMap<>();
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp.toPath())))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            for (UUID uuid : this.index.keySet()) {
+                StoredPreferences online = this.loaded.get(uuid);
+                Map<String, byte[]> values = online != null ? online.getValues() : readRecords(uuid);
+                for (Map.Entry<String, byte[]> entry : values.entrySet()) {
+                    addPointer(newIndex, uuid, out.size() | SNAPSHOT_FLAG);
+                    writeRecord(out, uuid, entry.getKey(), entry.getValue());
+                }
+            }
+        }
+
+        this.snapshot.close();
+        Files.move(tmp.toPath(), this.snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        this.snapshot = openFile(this.snapshotFile);
+        this.log.setLength(HEADER_LENGTH);
+
+        this.index.clear();
+        this.index.putAll(newIndex);
+    }
+
+    private static RandomAccessFile openFile(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        if (raf.length() < HEADER_LENGTH) {
+            raf.setLength(0);
+            raf.writeInt(MAGIC);
+            raf.writeInt(VERSION);
+        } else {
+            raf.seek(0);
+            if (raf.readInt() != MAGIC) {
+                raf.close();
+                throw new IOException("Not a gChat preferences file: " + file);
+            }
+            int version = raf.readInt();
+            if (version != VERSION) {
+                raf.close();
+                throw new IOException("Unsupported preferences file version " + version + ": " + file);
+            }
+        }
+        return raf;
+    }
+
+    /**
+     * Reads the location of all records in a file into the index.
+     *
+     * @return the length of the valid records in the file
+     */
+    private long readIndex(RandomAccessFile file, boolean snapshot) throws IOException {
+        file.seek(0);
+        CountingInputStream counting = new CountingInputStream(new BufferedInputStream(Channels.newInputStream(file.getChannel())));
+        DataInputStream in = new DataInputStream(counting);
+        in.skipBytes(HEADER_LENGTH);
+
+        long valid = HEADER_LENGTH;
+        while (true) {
+            try {
+                UUID uuid = new UUID(in.readLong(), in.readLong());
+                in.readUTF();
+                if (in.readByte() == OP_SET) {
+                    int length = in.readInt();
+                    if (in.skipBytes(length) != length) {
+                        throw new EOFException();
+                    }
+                }
+
+                addPointer(this.index, uuid, snapshot ? valid | SNAPSHOT_FLAG : valid);
+                valid = counting.getCount();
+            } catch (EOFException e) {
+                return valid;
+            }
+        }
+    }
+
+    private static void addPointer(Map<UUID, long[]> index, UUID uuid, long pointer) {
+        long[] pointers = index.get(uuid);
+        if (pointers == null) {
+            pointers = new long[]{pointer};
+        } else {
+            pointers = Arrays.copyOf(pointers, pointers.length + 1);
+            pointers[pointers.length - 1] = pointer;
+        }
+        index.put(uuid, pointers);
+    }
+
+    private static void writeRecord(DataOutputStream out, UUID uuid, String key, byte[] value) throws IOException {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+        out.writeUTF(key);
+        if (value == null) {
+            out.writeByte(OP_REMOVE);
+        } else {
+            out.writeByte(OP_SET);
+            out.writeInt(value.length);
+            out.write(value);
+        }
+    }
+
+    private static final class Mutation {
+        private final UUID uuid;
+        private final String key;
+        private final byte[] value;
+
+        Mutation(UUID uuid, String key, byte[] value) {
+            this.uuid = uuid;
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+}
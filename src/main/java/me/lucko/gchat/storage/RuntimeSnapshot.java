@@ -0,0 +1,204 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A snapshot of runtime state which isn't otherwise saved, written when gChat is disabled so
+ * it can be restored if gChat is enabled again shortly after, e.g. when the proxy restarts.
+ *
+ * <p>The snapshot is made up of named sections, each written and read by the component which
+ * owns the state. Sections are kept as bytes until they are read, so components which start
+ * later (e.g. placeholders registered by other plugins) can restore their state when they do.
+ * Sections which are never read are dropped.</p>
+ *
+ * <p>A snapshot is only read once: the file is deleted when it is loaded, so state is never
+ * restored from a run which ended without gChat being disabled. It is also discarded if the
+ * config it was saved with had a different fingerprint, as state such as the last value of
+ * each placeholder definition may no longer apply.</p>
+ */
+public class RuntimeSnapshot {
+    private static final int MAGIC = 0x67435253;
+    private static final int VERSION = 1;
+
+    /** The time the snapshot was created */
+    private final long createdAt;
+    /** The fingerprint of the config the snapshot was created with */
+    private final long configFingerprint;
+    private final Map<String, byte[]> sections;
+
+    public RuntimeSnapshot(long configFingerprint) {
+        this(System.currentTimeMillis(), configFingerprint, new LinkedHashMap<>());
+    }
+
+    private RuntimeSnapshot(long createdAt, long configFingerprint, Map<String, byte[]> sections) {
+        this.createdAt = createdAt;
+        this.configFingerprint = configFingerprint;
+        this.sections = sections;
+    }
+
+    public long getCreatedAt() {
+        return this.createdAt;
+    }
+
+    public long getConfigFingerprint() {
+        return this.configFingerprint;
+    }
+
+    /**
+     * Adds a section to the snapshot.
+     *
+     * @param name the name of the section
+     * @param writer writes the contents of the section
+     * @throws IOException if the section could not be written
+     */
+    public void put(String name, SectionWriter writer) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writer.write(out);
+        }
+        synchronized (this.sections) {
+            this.sections.put(name, bytes.toByteArray());
+        }
+    }
+
+    /**
+     * Reads and removes a section from the snapshot, if it is present.
+     *
+     * @param name the name of the section
+     * @param reader reads the contents of the section
+     * @return true if the section was present
+     * @throws IOException if the section could not be read
+     */
+    public boolean read(String name, SectionReader reader) throws IOException {
+        byte[] bytes;
+        synchronized (this.sections) {
+            bytes = this.sections.remove(name);
+        }
+        if (bytes == null) {
+            return false;
+        }
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            reader.read(in);
+        }
+        return true;
+    }
+
+    /**
+     * Writes the snapshot to a file.
+     *
+     * @param file the file
+     * @throws IOException if the file could not be written
+     */
+    public void save(File file) throws IOException {
+        file.getParentFile().mkdirs();
+        File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(this.createdAt);
+            out.writeLong(this.configFingerprint);
+            synchronized (this.sections) {
+                out.writeInt(this.sections.size());
+                for (Map.Entry<String, byte[]> section : this.sections.entrySet()) {
+                    out.writeUTF(section.getKey());
+                    out.writeInt(section.getValue().length);
+                    out.write(section.getValue());
+                }
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Loads a snapshot from a file, and deletes the file.
+     *
+     * @param file the file
+     * @param maxAge the maximum age of the snapshot, in milliseconds
+     * @param configFingerprint the fingerprint of the current config
+     * @return the snapshot, or null if there isn't one, it is too old, or it was created with a
+     *         different config
+     * @throws IOException if the file could not be read, or isn't a snapshot
+     */
+    public static RuntimeSnapshot load(File file, long maxAge, long configFingerprint) throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unknown file format");
+            }
+
+            long createdAt = in.readLong();
+            long age = System.currentTimeMillis() - createdAt;
+            if (age < 0 || age > maxAge) {
+                return null;
+            }
+            if (in.readLong() != configFingerprint) {
+                return null;
+            }
+
+            int count = in.readInt();
+            Map<String, byte[]> sections = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                sections.put(name, bytes);
+            }
+            return new RuntimeSnapshot(createdAt, configFingerprint, sections);
+        } finally {
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
+    @FunctionalInterface
+    public interface SectionWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface SectionReader {
+        void read(DataInputStream in) throws IOException;
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.storage;
+
+import me.lucko.gchat.api.PlayerPreferences;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link PlayerPreferences} implementation backed by a {@link PreferenceStore}.
+ */
+final class StoredPreferences implements PlayerPreferences {
+    private final PreferenceStore store;
+    private final UUID uniqueId;
+    private final Map<String, byte[]> values;
+
+    StoredPreferences(PreferenceStore store, UUID uniqueId, Map<String, byte[]> values) {
+        this.store = store;
+        this.uniqueId = uniqueId;
+        this.values = new ConcurrentHashMap<>(values);
+    }
+
+    Map<String, byte[]> getValues() {
+        return this.values;
+    }
+
+    @Override
+    public UUID getUniqueId() {
+        return this.uniqueId;
+    }
+
+    @Override
+    public Set<String> getKeys() {
+        return Collections.unmodifiableSet(this.values.keySet());
+    }
+
+    @Override
+    public byte[] getBytes(String key) {
+        byte[] value = this.values.get(key);
+        return value == null ? null : value.clone();
+    }
+
+    @Override
+    public void setBytes(String key, byte[] value) {
+        if (value == null) {
+            if (this.values.remove(key) == null) {
+                return;
+            }
+        } else {
+            value = value.clone();
+            this.values.put(key, value);
+        }
+        this.store.enqueue(this.uniqueId, key, value);
+    }
+
+    @Override
+    public String getString(String key, String def) {
+        byte[] value = this.values.get(key);
+        return value == null ? def : new String(value, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void setString(String key, String value) {
+        setBytes(key, value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean def) {
+        byte[] value = this.values.get(key);
+        return value == null || value.length != 1 ? def : value[0] != 0;
+    }
+
+    @Override
+    public void setBoolean(String key, boolean value) {
+        setBytes(key, new byte[]{(byte) (value ? 1 : 0)});
+    }
+
+    @Override
+    public long getLong(String key, long def) {
+        byte[] value = this.values.get(key);
+        return value == null || value.length != Long.BYTES ? def : ByteBuffer.wrap(value).getLong();
+    }
+
+    @Override
+    public void setLong(String key, long value) {
+        setBytes(key, ByteBuffer.allocate(Long.BYTES).putLong(value).array());
+    }
+
+}
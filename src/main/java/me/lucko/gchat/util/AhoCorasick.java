@@ -0,0 +1,231 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable Aho-Corasick automaton, for finding many patterns in a string in a single pass.
+ *
+ * <p>Patterns are matched exactly as given, so any normalisation (case etc) must be applied by
+ * the caller both when building the automaton and when feeding it characters.</p>
+ *
+ * <p>Typical usage feeds each character through {@link #next(int, char)}, and then walks the
+ * patterns matched at the new state:</p>
+ * <pre>
+ *     for (int s = automaton.firstOutput(state); s >= 0; s = automaton.nextOutput(s)) {
+ *         automaton.getValue(s); automaton.getLength(s);
+ *     }
+ * </pre>
+ *
+ * @param <T> the type of value associated with each pattern
+ */
+public final class AhoCorasick<T> {
+    public static final int ROOT = 0;
+
+    // per-state goto transitions, as parallel arrays sorted by character
+    private final char[][] transitionChars;
+    private final int[][] transitionStates;
+    private final int[] failure;
+
+    // the value of the pattern ending at each state, its length, and the next state in the output chain
+    private final Object[] values;
+    private final int[] lengths;
+    private final int[] outputLink;
+
+    public AhoCorasick(Map<String, T> patterns) {
+        List<char[]> chars = new ArrayList<>();
+        List<int[]> states = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+        List<Integer> lengths = new ArrayList<>();
+
+        // root
+        chars.add(new char[0]);
+        states.add(new int[0]);
+        values.add(null);
+        lengths.add(0);
+
+        // build the trie
+        for (Map.Entry<String, T> entry : patterns.entrySet()) {
+            String pattern = entry.getKey();
+            if (pattern.isEmpty()) {
+                continue;
+            }
+
+            int state = ROOT;
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                char[] cs = chars.get(state);
+                int idx = Arrays.binarySearch(cs, c);
+                if (idx >= 0) {
+                    state = states.get(state)[idx];
+                    continue;
+                }
+
+                int next = chars.size();
+                chars.add(new char[0]);
+                states.add(new int[0]);
+                values.add(null);
+                lengths.add(0);
+
+                int insert = -(idx + 1);
+                chars.set(state, insertChar(cs, insert, c));
+                states.set(state, insertInt(states.get(state), insert, next));
+                state = next;
+            }
+            values.set(state, entry.getValue());
+            lengths.set(state, pattern.length());
+        }
+
+        int size = chars.size();
+        this.transitionChars = chars.toArray(new char[size][]);
+        this.transitionStates = states.toArray(new int[size][]);
+        this.values = values.toArray();
+        this.lengths = new int[size];
+        for (int i = 0; i < size; i++) {
+            this.lengths[i] = lengths.get(i);
+        }
+        this.failure = new int[size];
+        this.outputLink = new int[size];
+        Arrays.fill(this.outputLink, -1);
+
+        // compute failure and output links breadth first
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int child : this.transitionStates[ROOT]) {
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            char[] cs = this.transitionChars[state];
+            int[] children = this.transitionStates[state];
+            for (int i = 0; i < cs.length; i++) {
+                int child = children[i];
+                int fail = this.failure[state];
+                int target;
+                while ((target = step(fail, cs[i])) < 0 && fail != ROOT) {
+                    fail = this.failure[fail];
+                }
+                this.failure[child] = target < 0 ? ROOT : target;
+
+                int f = this.failure[child];
+                this.outputLink[child] = this.values[f] != null ? f : this.outputLink[f];
+                queue.add(child);
+            }
+        }
+    }
+
+    private static char[] insertChar(char[] array, int index, char value) {
+        char[] ret = new char[array.length + 1];
+        System.arraycopy(array, 0, ret, 0, index);
+        ret[index] = value;
+        System.arraycopy(array, index, ret, index + 1, array.length - index);
+        return ret;
+    }
+
+    private static int[] insertInt(int[] array, int index, int value) {
+        int[] ret = new int[array.length + 1];
+        System.arraycopy(array, 0, ret, 0, index);
+        ret[index] = value;
+        System.arraycopy(array, index, ret, index + 1, array.length - index);
+        return ret;
+    }
+
+    private int step(int state, char c) {
+        int idx = Arrays.binarySearch(this.transitionChars[state], c);
+        return idx < 0 ? -1 : this.transitionStates[state][idx];
+    }
+
+    /**
+     * Gets if the automaton contains no patterns.
+     *
+     * @return true if empty
+     */
+    public boolean isEmpty() {
+        return this.transitionChars[ROOT].length == 0;
+    }
+
+    /**
+     * Advances the automaton by one character.
+     *
+     * @param state the current state
+     * @param c the next character
+     * @return the new state
+     */
+    public int next(int state, char c) {
+        int next;
+        while ((next = step(state, c)) < 0 && state != ROOT) {
+            state = this.failure[state];
+        }
+        return next < 0 ? ROOT : next;
+    }
+
+    /**
+     * Gets the first state in the output chain of the given state.
+     *
+     * @param state the state
+     * @return the first state whose pattern ends here, or -1 if none
+     */
+    public int firstOutput(int state) {
+        return this.values[state] != null ? state : this.outputLink[state];
+    }
+
+    /**
+     * Gets the next state in an output chain.
+     *
+     * @param outputState a state returned by {@link #firstOutput(int)} or this method
+     * @return the next state whose pattern ends here, or -1 if none
+     */
+    public int nextOutput(int outputState) {
+        return this.outputLink[outputState];
+    }
+
+    /**
+     * Gets the value of the pattern ending at the given output state.
+     *
+     * @param outputState the output state
+     * @return the value
+     */
+    @SuppressWarnings("unchecked")
+    public T getValue(int outputState) {
+        return (T) this.values[outputState];
+    }
+
+    /**
+     * Gets the length of the pattern ending at the given output state.
+     *
+     * @param outputState the output state
+     * @return the pattern length
+     */
+    public int getLength(int outputState) {
+        return this.lengths[outputState];
+    }
+
+}
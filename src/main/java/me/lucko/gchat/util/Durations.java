@@ -0,0 +1,119 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses and formats short durations, such as "1h30m".
+ */
+public final class Durations {
+
+    private Durations() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Parses a duration made of numbers followed by a unit: s, m, h, d or w.
+     *
+     * @param input the input, e.g. "10m" or "1d12h"
+     * @return the duration in milliseconds, or -1 if the input is invalid
+     */
+    public static long parse(String input) {
+        long total = 0;
+        long number = -1;
+        for (int i = 0; i < input.length(); i++) {
+            char c = Character.toLowerCase(input.charAt(i));
+            if (c >= '0' && c <= '9') {
+                number = (number < 0 ? 0 : number * 10) + (c - '0');
+                if (number > Integer.MAX_VALUE) {
+                    return -1;
+                }
+                continue;
+            }
+
+            if (number < 0) {
+                return -1;
+            }
+
+            switch (c) {
+                case 's':
+                    total += TimeUnit.SECONDS.toMillis(number);
+                    break;
+                case 'm':
+                    total += TimeUnit.MINUTES.toMillis(number);
+                    break;
+                case 'h':
+                    total += TimeUnit.HOURS.toMillis(number);
+                    break;
+                case 'd':
+                    total += TimeUnit.DAYS.toMillis(number);
+                    break;
+                case 'w':
+                    total += TimeUnit.DAYS.toMillis(number * 7);
+                    break;
+                default:
+                    return -1;
+            }
+            number = -1;
+        }
+
+        // a trailing number without a unit, or no input at all
+        if (number >= 0 || total == 0) {
+            return -1;
+        }
+        return total;
+    }
+
+    /**
+     * Formats a duration, e.g. "1h 30m".
+     *
+     * @param millis the duration in milliseconds
+     * @return the formatted duration
+     */
+    public static String format(long millis) {
+        long seconds = Math.max(1, (millis + 999) / 1000);
+        long days = seconds / 86400;
+        long hours = seconds / 3600 % 24;
+        long minutes = seconds / 60 % 60;
+        seconds = seconds % 60;
+
+        StringBuilder sb = new StringBuilder();
+        if (days != 0) {
+            sb.append(days).append("d ");
+        }
+        if (hours != 0) {
+            sb.append(hours).append("h ");
+        }
+        if (minutes != 0) {
+            sb.append(minutes).append("m ");
+        }
+        if (seconds != 0 || sb.length() == 0) {
+            sb.append(seconds).append("s ");
+        }
+        return sb.substring(0, sb.length() - 1);
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.util;
+
+import net.kyori.text.TextComponent;
+import net.kyori.text.event.ClickEvent;
+import net.kyori.text.event.HoverEvent;
+import net.kyori.text.format.Style;
+import net.kyori.text.format.TextColor;
+import net.kyori.text.format.TextDecoration;
+
+/**
+ * Parses text containing legacy color and format codes into components.
+ *
+ * <p>Both '&amp;' and '§' codes are read, in a single pass. The result is always an empty root
+ * component with a flat list of children, one for each run of text with the same style. Codes
+ * which don't change the style don't split a run, and runs with no text are skipped.</p>
+ *
+ * <p>Codes behave as they do in vanilla: a color code clears any format codes before it, and
+ * "&amp;r" clears both.</p>
+ */
+public final class LegacyText {
+    private LegacyText() {}
+
+    private static final TextColor[] COLORS = {
+            TextColor.BLACK, TextColor.DARK_BLUE, TextColor.DARK_GREEN, TextColor.DARK_AQUA,
+            TextColor.DARK_RED, TextColor.DARK_PURPLE, TextColor.GOLD, TextColor.GRAY,
+            TextColor.DARK_GRAY, TextColor.BLUE, TextColor.GREEN, TextColor.AQUA,
+            TextColor.RED, TextColor.LIGHT_PURPLE, TextColor.YELLOW, TextColor.WHITE
+    };
+
+    // codes k to o, in order
+    private static final TextDecoration[] DECORATIONS = {
+            TextDecoration.OBFUSCATED, TextDecoration.BOLD, TextDecoration.STRIKETHROUGH,
+            TextDecoration.UNDERLINED, TextDecoration.ITALIC
+    };
+
+    /**
+     * Every style a run of text can have, indexed by {@link #styleIndex(int, int)}.
+     *
+     * <p>Styles are immutable, so these are shared between all of the components created.</p>
+     */
+    private static final Style[] STYLES = createStyles();
+
+    private static Style[] createStyles() {
+        Style[] styles = new Style[(COLORS.length + 1) << DECORATIONS.length];
+        for (int color = -1; color < COLORS.length; color++) {
+            for (int mask = 0; mask < 1 << DECORATIONS.length; mask++) {
+                Style.Builder style = Style.builder().color(color == -1 ? null : COLORS[color]);
+                for (int i = 0; i < DECORATIONS.length; i++) {
+                    if ((mask & (1 << i)) != 0) {
+                        style.decoration(DECORATIONS[i], true);
+                    }
+                }
+                styles[styleIndex(color, mask)] = style.build();
+            }
+        }
+        return styles;
+    }
+
+    private static int styleIndex(int color, int decorations) {
+        return ((color + 1) << DECORATIONS.length) | decorations;
+    }
+
+    /**
+     * Parses legacy text into a component.
+     *
+     * @param text the text
+     * @return the component
+     */
+    public static TextComponent parse(String text) {
+        return parse(text, null, null);
+    }
+
+    /**
+     * Parses legacy text into a component, with the given events.
+     *
+     * <p>The events are set once on the root component, and inherited by its children.</p>
+     *
+     * @param text the text
+     * @param hoverEvent the hover event, or null
+     * @param clickEvent the click event, or null
+     * @return the component
+     */
+    public static TextComponent parse(String text, HoverEvent hoverEvent, ClickEvent clickEvent) {
+        TextComponent.Builder root = TextComponent.builder("");
+        if (hoverEvent != null) {
+            root.hoverEvent(hoverEvent);
+        }
+        if (clickEvent != null) {
+            root.clickEvent(clickEvent);
+        }
+
+        // the current style, and the style of the run of text being built
+        int style = styleIndex(-1, 0);
+        int runStyle = style;
+        StringBuilder run = new StringBuilder(text.length());
+
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if ((c == '&' || c == '§') && i + 1 < length) {
+                char code = Character.toLowerCase(text.charAt(i + 1));
+                int color = Character.digit(code, 16);
+                if (color >= 0) {
+                    style = styleIndex(color, 0);
+                    i++;
+                    continue;
+                }
+                if (code >= 'k' && code <= 'o') {
+                    style |= 1 << (code - 'k');
+                    i++;
+                    continue;
+                }
+                if (code == 'r') {
+                    style = styleIndex(-1, 0);
+                    i++;
+                    continue;
+                }
+            }
+
+            if (run.length() != 0 && style != runStyle) {
+                root.append(TextComponent.of(run.toString(), STYLES[runStyle]));
+                run.setLength(0);
+            }
+            runStyle = style;
+            run.append(c);
+        }
+
+        if (run.length() != 0) {
+            root.append(TextComponent.of(run.toString(), STYLES[runStyle]));
+        }
+        return root.build();
+    }
+
+    /**
+     * Converts offsets into legacy text to offsets into the text displayed once it's parsed,
+     * which doesn't include the color and format codes.
+     *
+     * @param text the text
+     * @param offsets offsets into the text, in ascending order, which are replaced with the
+     *                displayed offsets
+     */
+    public static void toDisplayedOffsets(String text, int[] offsets) {
+        int displayed = 0;
+        int next = 0;
+
+        int length = text.length();
+        for (int i = 0; i < length && next < offsets.length; i++) {
+            while (next < offsets.length && offsets[next] <= i) {
+                offsets[next++] = displayed;
+            }
+
+            char c = text.charAt(i);
+            if ((c == '&' || c == '§') && i + 1 < length && isCode(Character.toLowerCase(text.charAt(i + 1)))) {
+                // an offset between the two characters of a code is at the same place as one before it
+                i++;
+                while (next < offsets.length && offsets[next] <= i) {
+                    offsets[next++] = displayed;
+                }
+                continue;
+            }
+            displayed++;
+        }
+
+        while (next < offsets.length) {
+            offsets[next++] = displayed;
+        }
+    }
+
+    private static boolean isCode(char code) {
+        return Character.digit(code, 16) >= 0 || (code >= 'k' && code <= 'o') || code == 'r';
+    }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A hashed timing wheel, for tracking large numbers of timeouts with a single timer.
+ *
+ * <p>Time is divided into ticks, and each timeout is placed in the slot for the tick it
+ * expires in, modulo the number of slots. Advancing the wheel only visits the slots for
+ * the ticks which have passed, so the cost doesn't depend on how many timeouts are
+ * pending. Timeouts further away than one revolution stay in their slot until the
+ * revolution they expire in.</p>
+ *
+ * @param <T> the type of value attached to each timeout
+ */
+public class TimingWheel<T> {
+    private final long tickMillis;
+    private final int mask;
+    private final List<Timeout<T>>[] slots;
+    private final long startTime;
+
+    /** The next tick to be processed */
+    private long tick = 0;
+
+    /**
+     * Creates a new wheel.
+     *
+     * @param tickMillis the length of each tick, in milliseconds
+     * @param slots the number of slots, rounded up to a power of two
+     * @param startTime the time of the first tick
+     */
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickMillis, int slots, long startTime) {
+        int size = Integer.highestOneBit(Math.max(2, slots - 1)) << 1;
+        this.tickMillis = tickMillis;
+        this.mask = size - 1;
+        this.slots = new List[size];
+        for (int i = 0; i < size; i++) {
+            this.slots[i] = new ArrayList<>();
+        }
+        this.startTime = startTime;
+    }
+
+    /**
+     * Schedules a timeout.
+     *
+     * @param value the value to pass back when the timeout expires
+     * @param deadline the time the timeout expires, in milliseconds
+     * @return the timeout
+     */
+    public synchronized Timeout<T> schedule(T value, long deadline) {
+        // round up, so timeouts never fire early, and never schedule into the past
+        long deadlineTick = Math.max(this.tick, (deadline - this.startTime + this.tickMillis - 1) / this.tickMillis);
+        Timeout<T> timeout = new Timeout<>(value, deadlineTick);
+        this.slots[(int) (deadlineTick & this.mask)].add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Advances the wheel, passing the values of any expired timeouts to the callback.
+     *
+     * @param now the current time, in milliseconds
+     * @param callback the callback
+     */
+    public void advance(long now, Consumer<T> callback) {
+        List<T> expired = new ArrayList<>();
+        synchronized (this) {
+            long target = (now - this.startTime) / this.tickMillis;
+            // no need to visit a slot more than once per call
+            long limit = Math.min(target, this.tick + this.mask);
+            for (; this.tick <= limit; this.tick++) {
+                collect(this.slots[(int) (this.tick & this.mask)], target, expired);
+            }
+            this.tick = Math.max(this.tick, target + 1);
+        }
+
+        for (T value : expired) {
+            callback.accept(value);
+        }
+    }
+
+    private static <T> void collect(List<Timeout<T>> slot, long target, List<T> expired) {
+        for (Iterator<Timeout<T>> it = slot.iterator(); it.hasNext(); ) {
+            Timeout<T> timeout = it.next();
+            if (timeout.cancelled) {
+                it.remove();
+            } else if (timeout.deadlineTick <= target) {
+                it.remove();
+                expired.add(timeout.value);
+            }
+        }
+    }
+
+    public static final class Timeout<T> {
+        private final T value;
+        private final long deadlineTick;
+        private volatile boolean cancelled = false;
+
+        Timeout(T value, long deadlineTick) {
+            this.value = value;
+            this.deadlineTick = deadlineTick;
+        }
+
+        /**
+         * Cancels the timeout. It is removed from the wheel the next time its slot is visited.
+         */
+        public void cancel() {
+            this.cancelled = true;
+        }
+    }
+}
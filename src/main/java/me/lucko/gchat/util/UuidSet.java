@@ -0,0 +1,249 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A compact set of {@link UUID}s, stored as pairs of longs in a single open-addressed array.
+ *
+ * <p>Instances are not thread safe. Callers sharing a set between threads should treat it as
+ * immutable once published, and use {@link #copy()} to make changes.</p>
+ */
+public final class UuidSet {
+    private static final int MIN_CAPACITY = 8;
+
+    /** Slots of (most significant bits, least significant bits). An all-zero slot is empty. */
+    private long[] table;
+    private int size;
+
+    /** The nil UUID can't be stored in the table, so is tracked separately */
+    private boolean containsNil;
+
+    public UuidSet() {
+        this(MIN_CAPACITY);
+    }
+
+    public UuidSet(int expectedSize) {
+        this.table = new long[tableCapacity(expectedSize) * 2];
+    }
+
+    public static UuidSet of(Collection<UUID> uuids) {
+        UuidSet set = new UuidSet(uuids.size());
+        for (UUID uuid : uuids) {
+            set.add(uuid);
+        }
+        return set;
+    }
+
+    private static int tableCapacity(int expectedSize) {
+        // keep the load factor at or below 0.5
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int hash(long msb, long lsb) {
+        long h = msb ^ lsb;
+        h ^= (h >>> 33);
+        h *= 0xff51afd7ed558ccdL;
+        h ^= (h >>> 33);
+        return (int) h;
+    }
+
+    public int size() {
+        return this.size + (this.containsNil ? 1 : 0);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public boolean contains(UUID uuid) {
+        return contains(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+
+    public boolean contains(long msb, long lsb) {
+        if (msb == 0 && lsb == 0) {
+            return this.containsNil;
+        }
+
+        long[] table = this.table;
+        int mask = (table.length >>> 1) - 1;
+        int slot = hash(msb, lsb) & mask;
+        while (true) {
+            long m = table[slot << 1];
+            long l = table[(slot << 1) + 1];
+            if (m == 0 && l == 0) {
+                return false;
+            }
+            if (m == msb && l == lsb) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public boolean add(UUID uuid) {
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        if (msb == 0 && lsb == 0) {
+            boolean added = !this.containsNil;
+            this.containsNil = true;
+            return added;
+        }
+
+        if ((this.size + 1) * 2 > (this.table.length >>> 1)) {
+            resize(this.table.length);
+        }
+
+        int mask = (this.table.length >>> 1) - 1;
+        int slot = hash(msb, lsb) & mask;
+        while (true) {
+            long m = this.table[slot << 1];
+            long l = this.table[(slot << 1) + 1];
+            if (m == 0 && l == 0) {
+                this.table[slot << 1] = msb;
+                this.table[(slot << 1) + 1] = lsb;
+                this.size++;
+                return true;
+            }
+            if (m == msb && l == lsb) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public boolean remove(UUID uuid) {
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        if (msb == 0 && lsb == 0) {
+            boolean removed = this.containsNil;
+            this.containsNil = false;
+            return removed;
+        }
+
+        long[] table = this.table;
+        int mask = (table.length >>> 1) - 1;
+        int slot = hash(msb, lsb) & mask;
+        while (true) {
+            long m = table[slot << 1];
+            long l = table[(slot << 1) + 1];
+            if (m == 0 && l == 0) {
+                return false;
+            }
+            if (m == msb && l == lsb) {
+                break;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        // backward shift deletion, so lookups never need tombstones
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (true) {
+            long m = table[next << 1];
+            long l = table[(next << 1) + 1];
+            if (m == 0 && l == 0) {
+                break;
+            }
+
+            int ideal = hash(m, l) & mask;
+            // move the entry into the gap if its ideal slot isn't between the gap and its current slot
+            if (((next - ideal) & mask) >= ((next - gap) & mask)) {
+                table[gap << 1] = m;
+                table[(gap << 1) + 1] = l;
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        table[gap << 1] = 0;
+        table[(gap << 1) + 1] = 0;
+        this.size--;
+        return true;
+    }
+
+    private void resize(int newCapacity) {
+        long[] old = this.table;
+        this.table = new long[newCapacity * 2];
+        this.size = 0;
+
+        int mask = newCapacity - 1;
+        for (int i = 0; i < old.length; i += 2) {
+            long msb = old[i];
+            long lsb = old[i + 1];
+            if (msb == 0 && lsb == 0) {
+                continue;
+            }
+
+            int slot = hash(msb, lsb) & mask;
+            while (this.table[slot << 1] != 0 || this.table[(slot << 1) + 1] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            this.table[slot << 1] = msb;
+            this.table[(slot << 1) + 1] = lsb;
+            this.size++;
+        }
+    }
+
+    /**
+     * Creates a copy of this set.
+     *
+     * @return a copy
+     */
+    public UuidSet copy() {
+        UuidSet copy = new UuidSet(0);
+        copy.table = this.table.clone();
+        copy.size = this.size;
+        copy.containsNil = this.containsNil;
+        return copy;
+    }
+
+    /**
+     * Gets the contents of the set as a list.
+     *
+     * @return the uuids in the set
+     */
+    public List<UUID> toList() {
+        List<UUID> list = new ArrayList<>(size());
+        if (this.containsNil) {
+            list.add(new UUID(0, 0));
+        }
+        for (int i = 0; i < this.table.length; i += 2) {
+            if (this.table[i] != 0 || this.table[i + 1] != 0) {
+                list.add(new UUID(this.table[i], this.table[i + 1]));
+            }
+        }
+        return list;
+    }
+
+}
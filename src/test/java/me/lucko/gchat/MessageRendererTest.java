@@ -0,0 +1,196 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat;
+
+import me.lucko.gchat.MessageRenderer.PreparedFormat;
+import me.lucko.gchat.emoji.EmojiReplacer;
+import me.lucko.gchat.link.DomainTrie;
+import me.lucko.gchat.link.LinkScanner;
+
+import net.kyori.text.Component;
+import net.kyori.text.TextComponent;
+import net.kyori.text.event.ClickEvent;
+import net.kyori.text.event.HoverEvent;
+import net.kyori.text.format.TextColor;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.when;
+
+class MessageRendererTest {
+    private MessageRenderer renderer;
+
+    @BeforeEach
+    void setUp(@TempDir Path folder) {
+        MockPlugin mock = new MockPlugin(folder.toFile());
+        when(mock.getConfig().getLinkScanner()).thenReturn(new LinkScanner(false, DomainTrie.of(Collections.emptyList()), DomainTrie.of(Collections.emptyList())));
+
+        // glyphs from the private use area, as used by resource packs
+        Map<String, String> shortcodes = new HashMap<>();
+        shortcodes.put("start", "\uE000");
+        shortcodes.put("end", "\uE001");
+        shortcodes.put("heart", "&c\u2764");
+        when(mock.getConfig().getEmojiReplacer()).thenReturn(new EmojiReplacer(shortcodes, true));
+
+        this.renderer = new MessageRenderer(mock.getPlugin());
+    }
+
+    private static PreparedFormat format(String formatText) {
+        return new PreparedFormat(formatText, null, null, null, true, true, Collections.emptyList());
+    }
+
+    @Test
+    void plainMessages() {
+        TextComponent message = this.renderer.render(format("&7{name}&r: {message}"), "hello");
+        assertEquals("{name}: hello", plain(message));
+        assertEquals("", clickable(message));
+        assertEquals("", hoverable(message));
+    }
+
+    @Test
+    void linksAreClickable() {
+        TextComponent message = this.renderer.render(format("&7alice&r: {message}"), "see https://example.com/page. thanks");
+        assertEquals("alice: see https://example.com/page. thanks", plain(message));
+        assertEquals("https://example.com/page", clickable(message));
+    }
+
+    @Test
+    void linksAfterColorCodes() {
+        TextComponent message = this.renderer.render(format("&7alice&r: {message}"), "&ahttps://example.com&r and &bhttps://example.org");
+        assertEquals("alice: https://example.com and https://example.org", plain(message));
+        assertEquals("https://example.comhttps://example.org", clickable(message));
+    }
+
+    @Test
+    void privateUseGlyphsInTheFormatDontAffectSpans() {
+        // placeholders such as prefixes can contain glyphs from resource packs
+        TextComponent message = this.renderer.render(format("\uE001&7[\uE000vip\uE001] alice\uE000&r: {message} \uE001"), "https://example.com :start: ok");
+        assertEquals("\uE001[\uE000vip\uE001] alice\uE000: https://example.com \uE000 ok \uE001", plain(message));
+        assertEquals("https://example.com", clickable(message));
+        assertEquals("\uE000", hoverable(message));
+    }
+
+    @Test
+    void privateUseCharactersTypedByPlayers() {
+        TextComponent message = this.renderer.render(format("alice: {message}"), "\uE000 https://example.com \uE001 https://example.org");
+        assertEquals("alice: \uE000 https://example.com \uE001 https://example.org", plain(message));
+        assertEquals("https://example.comhttps://example.org", clickable(message));
+    }
+
+    @Test
+    void privateUseGlyphsFromShortcodes() {
+        TextComponent message = this.renderer.render(format("alice: {message}"), ":end: :start::end: https://example.com :start:");
+        assertEquals("alice: \uE001 \uE000\uE001 https://example.com \uE000", plain(message));
+        assertEquals("\uE001\uE000\uE001\uE000", hoverable(message));
+        assertEquals("https://example.com", clickable(message));
+    }
+
+    @Test
+    void glyphsWithColorCodes() {
+        TextComponent message = this.renderer.render(format("&7alice: {message}"), "i :heart: https://example.com");
+        assertEquals("alice: i \u2764 https://example.com", plain(message));
+        assertEquals("\u2764", hoverable(message));
+        assertEquals("https://example.com", clickable(message));
+
+        // the color from before the emoji is restored after it
+        assertEquals(TextColor.RED, colorOf(message, '\u2764'));
+        assertEquals(TextColor.GRAY, colorOf(message, 'x'));
+    }
+
+    @Test
+    void everyCopyOfTheMessageHasSpans() {
+        TextComponent message = this.renderer.render(format("{message} | {message}"), "https://example.com");
+        assertEquals("https://example.com | https://example.com", plain(message));
+        assertEquals("https://example.comhttps://example.com", clickable(message));
+    }
+
+    private static String plain(Component component) {
+        StringBuilder sb = new StringBuilder();
+        visit(component, null, null, null, (c, click, hover, color) -> sb.append(c));
+        return sb.toString();
+    }
+
+    private static String clickable(Component component) {
+        StringBuilder sb = new StringBuilder();
+        visit(component, null, null, null, (c, click, hover, color) -> {
+            if (click != null) {
+                sb.append(c);
+            }
+        });
+        return sb.toString();
+    }
+
+    private static String hoverable(Component component) {
+        StringBuilder sb = new StringBuilder();
+        visit(component, null, null, null, (c, click, hover, color) -> {
+            if (hover != null) {
+                sb.append(c);
+            }
+        });
+        return sb.toString();
+    }
+
+    private static TextColor colorOf(Component component, char character) {
+        TextColor[] ret = new TextColor[1];
+        visit(component, null, null, null, (c, click, hover, color) -> {
+            if (c == character && ret[0] == null) {
+                ret[0] = color;
+            }
+        });
+        return ret[0];
+    }
+
+    /**
+     * Visits each displayed character, with the events and color it inherits.
+     */
+    private static void visit(Component component, ClickEvent click, HoverEvent hover, TextColor color, CharVisitor visitor) {
+        click = component.clickEvent() != null ? component.clickEvent() : click;
+        hover = component.hoverEvent() != null ? component.hoverEvent() : hover;
+        color = component.color() != null ? component.color() : color;
+
+        if (component instanceof TextComponent) {
+            for (char c : ((TextComponent) component).content().toCharArray()) {
+                visitor.visit(c, click, hover, color);
+            }
+        }
+        for (Component child : component.children()) {
+            visit(child, click, hover, color, visitor);
+        }
+    }
+
+    private interface CharVisitor {
+        void visit(char c, ClickEvent click, HoverEvent hover, TextColor color);
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat;
+
+import me.lucko.gchat.config.GChatConfig;
+import net.md_5.bungee.api.ProxyServer;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+import net.md_5.bungee.api.plugin.PluginManager;
+import net.md_5.bungee.api.plugin.PluginDescription;
+import net.md_5.bungee.api.scheduler.ScheduledTask;
+import net.md_5.bungee.api.scheduler.TaskScheduler;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * A mocked {@link GChatPlugin} for tests, with a data folder, config and plugin manager, and a
+ * scheduler which runs async tasks straight away and holds repeating tasks until they're run by
+ * the test.
+ */
+public final class MockPlugin {
+    private final GChatPlugin plugin = mock(GChatPlugin.class);
+    private final ProxyServer proxy = mock(ProxyServer.class);
+    private final GChatConfig config = mock(GChatConfig.class);
+    private final PluginManager pluginManager = new PluginManager(this.proxy);
+    private final List<Runnable> scheduled = new ArrayList<>();
+
+    public MockPlugin(File pluginsFolder) {
+        PluginDescription description = new PluginDescription();
+        description.setName("gChat");
+
+        TaskScheduler scheduler = mock(TaskScheduler.class);
+        when(scheduler.runAsync(any(), any())).thenAnswer(invocation -> {
+            invocation.<Runnable>getArgument(1).run();
+            return mock(ScheduledTask.class);
+        });
+        when(scheduler.schedule(any(), any(), anyLong(), anyLong(), any())).thenAnswer(invocation -> {
+            this.scheduled.add(invocation.getArgument(1));
+            return mock(ScheduledTask.class);
+        });
+
+        when(this.proxy.getPluginsFolder()).thenReturn(pluginsFolder);
+        when(this.proxy.getScheduler()).thenReturn(scheduler);
+        when(this.proxy.getPluginManager()).thenReturn(this.pluginManager);
+        when(this.plugin.getProxy()).thenReturn(this.proxy);
+        when(this.plugin.getDescription()).thenReturn(description);
+        when(this.plugin.getLogger()).thenReturn(Logger.getLogger("gChat"));
+        when(this.plugin.getConfig()).thenReturn(this.config);
+    }
+
+    public GChatPlugin getPlugin() {
+        return this.plugin;
+    }
+
+    public ProxyServer getProxy() {
+        return this.proxy;
+    }
+
+    public GChatConfig getConfig() {
+        return this.config;
+    }
+
+    public PluginManager getPluginManager() {
+        return this.pluginManager;
+    }
+
+    /**
+     * Runs each repeating task once.
+     */
+    public void runScheduledTasks() {
+        for (Runnable task : new ArrayList<>(this.scheduled)) {
+            task.run();
+        }
+    }
+
+    /**
+     * Creates a player, and makes them online.
+     *
+     * @param name the players name
+     * @return the player
+     */
+    public ProxiedPlayer addPlayer(String name) {
+        UUID uuid = UUID.randomUUID();
+        ProxiedPlayer player = mock(ProxiedPlayer.class);
+        when(player.getName()).thenReturn(name);
+        when(player.getUniqueId()).thenReturn(uuid);
+        when(player.isConnected()).thenReturn(true);
+        when(this.proxy.getPlayer(uuid)).thenReturn(player);
+        when(this.proxy.getPlayer(name)).thenReturn(player);
+        return player;
+    }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.analytics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CountMinSketchTest {
+
+    @Test
+    void countsExactlyWithoutCollisions() {
+        CountMinSketch sketch = new CountMinSketch(4, 1024);
+        assertEquals(0, sketch.estimate("hello"));
+        assertEquals(1, sketch.add("hello"));
+        assertEquals(2, sketch.add("hello"));
+        assertEquals(1, sketch.add("world"));
+        assertEquals(2, sketch.estimate("hello"));
+        assertEquals(1, sketch.estimate("world"));
+    }
+
+    @Test
+    void neverUnderestimatesAndStaysWithinBounds() {
+        int width = 256;
+        CountMinSketch sketch = new CountMinSketch(4, width);
+        Map<String, Integer> counts = new HashMap<>();
+        Random random = new Random(42);
+
+        int total = 50_000;
+        for (int i = 0; i < total; i++) {
+            // a skewed distribution, like real chat
+            String item = "item" + random.nextInt(1 + random.nextInt(5000));
+            counts.merge(item, 1, Integer::sum);
+            sketch.add(item);
+        }
+
+        long bound = (long) Math.ceil(Math.E / width * total);
+        int over = 0;
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            long estimate = sketch.estimate(entry.getKey());
+            assertTrue(estimate >= entry.getValue(), entry.getKey());
+            if (estimate - entry.getValue() > bound) {
+                over++;
+            }
+        }
+
+        // the bound holds with probability 1 - e^-4, so allow a few percent over it
+        assertTrue(over <= counts.size() * 0.02, over + " of " + counts.size() + " estimates exceeded the bound");
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.analytics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpaceSavingTest {
+
+    @Test
+    void countsExactlyWithinCapacity() {
+        SpaceSaving<String> top = new SpaceSaving<>(4);
+        for (String item : new String[]{"a", "b", "a", "c", "a", "b"}) {
+            top.offer(item);
+        }
+
+        List<SpaceSaving.Counter<String>> counters = top.top(10);
+        assertEquals(3, counters.size());
+        assertEquals("a", counters.get(0).getItem());
+        assertEquals(3, counters.get(0).getCount());
+        assertEquals("b", counters.get(1).getItem());
+        assertEquals(2, counters.get(1).getCount());
+        assertEquals("c", counters.get(2).getItem());
+        assertEquals(0, counters.get(2).getError());
+
+        assertEquals(2, top.top(2).size());
+    }
+
+    @Test
+    void findsHeavyHittersAmongManyItems() {
+        int capacity = 20;
+        SpaceSaving<String> top = new SpaceSaving<>(capacity);
+        Random random = new Random(42);
+
+        int total = 0;
+        for (int i = 0; i < 10_000; i++) {
+            // three frequent items, hidden in noise from many rare ones
+            top.offer("frequent" + (i % 3));
+            top.offer("rare" + random.nextInt(100_000));
+            total += 2;
+        }
+
+        List<SpaceSaving.Counter<String>> counters = top.top(3);
+        for (SpaceSaving.Counter<String> counter : counters) {
+            assertTrue(counter.getItem().startsWith("frequent"), counter.getItem());
+
+            // the true count is between the count minus its error and the count
+            long actual = 10_000 / 3 + 1;
+            assertTrue(counter.getCount() >= actual - 1);
+            assertTrue(counter.getCount() - counter.getError() <= actual);
+            assertTrue(counter.getError() <= total / capacity);
+        }
+    }
+
+}
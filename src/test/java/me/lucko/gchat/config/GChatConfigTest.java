@@ -0,0 +1,124 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.config;
+
+import me.lucko.gchat.api.ChatFormat;
+
+import net.md_5.bungee.config.Configuration;
+import net.md_5.bungee.config.ConfigurationProvider;
+import net.md_5.bungee.config.YamlConfiguration;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+class GChatConfigTest {
+
+    private static Configuration loadBundled() throws IOException {
+        try (InputStream in = GChatConfig.class.getClassLoader().getResourceAsStream("config.yml")) {
+            assertNotNull(in, "config.yml is missing");
+            return ConfigurationProvider.getProvider(YamlConfiguration.class).load(in);
+        }
+    }
+
+    @Test
+    void bundledConfigLoads() throws IOException {
+        Configuration c = loadBundled();
+
+        // every top level section should have survived parsing
+        for (String section : Arrays.asList("storage", "overload", "fan-out", "server-groups", "formats",
+                "server-formats", "filter", "links", "emoji", "mentions", "private-messages")) {
+            assertNotNull(c.getSection(section), section);
+        }
+
+        GChatConfig config = new GChatConfig(c);
+        assertEquals(Arrays.asList("lobby1", "lobby2"), config.getServerGroups().get("lobbies"));
+        assertFalse(config.getFormats().isEmpty());
+    }
+
+    @Test
+    void serverFormatsOverrideTheDefaults() throws IOException {
+        GChatConfig config = new GChatConfig(loadBundled());
+
+        ChatFormat global = find(config.getFormats(null), "everyone");
+        ChatFormat lobby = find(config.getFormats("lobby1"), "everyone");
+        assertEquals("&8[&bLobby&8] &7{name}&r: {message}", lobby.getFormatText());
+        assertEquals(global.getPriority(), lobby.getPriority());
+        assertEquals(global.getHoverText(), lobby.getHoverText());
+
+        // servers without overrides use the global formats
+        assertEquals(global.getFormatText(), find(config.getFormats("survival"), "everyone").getFormatText());
+    }
+
+    @Test
+    void serverNamesMatchRegardlessOfCase() throws IOException {
+        Configuration c = loadBundled();
+        c.set("server-groups.lobbies", Arrays.asList("Lobby1", "lobby2"));
+        c.set("server-formats.Survival.formats.everyone.format", "&a{name}: {message}");
+        GChatConfig config = new GChatConfig(c);
+
+        String lobby = "&8[&bLobby&8] &7{name}&r: {message}";
+        assertEquals(lobby, find(config.getFormats("lobby1"), "everyone").getFormatText());
+        assertEquals(lobby, find(config.getFormats("LOBBY2"), "everyone").getFormatText());
+        assertEquals("&a{name}: {message}", find(config.getFormats("survival"), "everyone").getFormatText());
+        assertEquals("&a{name}: {message}", find(config.getFormats("SURVIVAL"), "everyone").getFormatText());
+    }
+
+    @Test
+    void snapshotFingerprintFollowsTheFormats() throws IOException {
+        long fingerprint = new GChatConfig(loadBundled()).getSnapshotFingerprint();
+        assertEquals(fingerprint, new GChatConfig(loadBundled()).getSnapshotFingerprint());
+
+        Configuration unrelated = loadBundled();
+        unrelated.set("passthrough", false);
+        assertEquals(fingerprint, new GChatConfig(unrelated).getSnapshotFingerprint());
+
+        Configuration format = loadBundled();
+        format.set("formats.everyone.format", "{name}: {message}");
+        assertNotEquals(fingerprint, new GChatConfig(format).getSnapshotFingerprint());
+
+        Configuration serverFormat = loadBundled();
+        serverFormat.set("server-formats.lobbies.formats.everyone.format", "{name}: {message}");
+        assertNotEquals(fingerprint, new GChatConfig(serverFormat).getSnapshotFingerprint());
+    }
+
+    private static ChatFormat find(ChatFormat[] formats, String id) {
+        for (ChatFormat format : formats) {
+            if (format.getId().equals(id)) {
+                return format;
+            }
+        }
+        throw new AssertionError("no format " + id);
+    }
+
+}
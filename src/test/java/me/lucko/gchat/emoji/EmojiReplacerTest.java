@@ -0,0 +1,97 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.emoji;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EmojiReplacerTest {
+
+    private static EmojiReplacer replacer(boolean hover, String... shortcodes) {
+        Map<String, String> map = new HashMap<>();
+        for (int i = 0; i < shortcodes.length; i += 2) {
+            map.put(shortcodes[i], shortcodes[i + 1]);
+        }
+        return new EmojiReplacer(map, hover);
+    }
+
+    private static List<String> found(EmojiReplacer replacer, String message) {
+        List<String> found = new ArrayList<>();
+        for (EmojiMatch match : replacer.find(message)) {
+            assertEquals(match.getEmoji().getShortcode(), message.substring(match.getStart(), match.getEnd()).toLowerCase());
+            found.add(match.getEmoji().getGlyph());
+        }
+        return found;
+    }
+
+    @Test
+    void findsShortcodes() {
+        EmojiReplacer replacer = replacer(true, "heart", "\u2764", "Smile", "\u263A");
+        assertEquals(Arrays.asList("\u2764", "\u263A", "\u2764"), found(replacer, "i :heart: you :SMILE: :Heart:"));
+        assertEquals(Collections.emptyList(), found(replacer, "no shortcodes: heart :hearts: :smile"));
+    }
+
+    @Test
+    void matchesDontOverlap() {
+        EmojiReplacer replacer = replacer(true, "heart", "\u2764");
+        // the colon between the two can only be used once
+        assertEquals(Collections.singletonList("\u2764"), found(replacer, ":heart:heart:"));
+        assertEquals(Arrays.asList("\u2764", "\u2764"), found(replacer, ":heart::heart:"));
+    }
+
+    @Test
+    void privateUseGlyphs() {
+        EmojiReplacer replacer = replacer(true, "start", "\uE000", "end", "\uE001");
+        assertEquals(Arrays.asList("\uE001", "\uE000"), found(replacer, "\uE000:end:\uE001:start:"));
+    }
+
+    @Test
+    void hover() {
+        assertNotNull(replacer(true, "heart", "\u2764").find(":heart:").get(0).getEmoji().getHoverEvent());
+        assertNull(replacer(false, "heart", "\u2764").find(":heart:").get(0).getEmoji().getHoverEvent());
+    }
+
+    @Test
+    void rejectsInvalidShortcodes() {
+        assertThrows(IllegalArgumentException.class, () -> replacer(true, "a:b", "x"));
+        assertThrows(IllegalArgumentException.class, () -> replacer(true, "a b", "x"));
+        assertThrows(IllegalArgumentException.class, () -> replacer(true, "", "x"));
+        assertTrue(replacer(true).isEmpty());
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.filter;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatFilterTest {
+    private static final FilterRule CENSOR = new FilterRule("censor", EnumSet.of(FilterAction.CENSOR), false, ImmutableList.of("hello"));
+    private static final FilterRule BLOCK = new FilterRule("block", EnumSet.of(FilterAction.BLOCK, FilterAction.ALERT), true, ImmutableList.of("ass"));
+
+    private final ChatFilter filter = new ChatFilter(ImmutableList.of(CENSOR, BLOCK), '*');
+
+    @Test
+    void censorsNormalisedWords() {
+        assertEquals("say *****!", this.filter.filter("say hello!").getMessage());
+        assertEquals("say *****", this.filter.filter("say HeLLo").getMessage());
+        assertEquals("say *****", this.filter.filter("say h3ll0").getMessage());
+        assertEquals("say *********", this.filter.filter("say h.e.l.l.o").getMessage());
+        assertEquals("say *********", this.filter.filter("say heeeelloo").getMessage());
+    }
+
+    @Test
+    void collapsedRunsKeepTheirMinimumLength() {
+        // "ass" is stored as "as" with a run of two, so a single 's' doesn't match
+        assertFalse(this.filter.filter("as").isBlocked());
+        assertTrue(this.filter.filter("ass").isBlocked());
+        assertTrue(this.filter.filter("a$$$").isBlocked());
+    }
+
+    @Test
+    void wholeWords() {
+        assertFalse(this.filter.filter("class").isBlocked());
+        FilterResult result = this.filter.filter("you ass");
+        assertTrue(result.isBlocked());
+        assertEquals(ImmutableList.of("ass"), result.getAlerts());
+    }
+
+    @Test
+    void cleanMessagesAreUnchanged() {
+        String message = "nothing to see here";
+        FilterResult result = this.filter.filter(message);
+        assertSame(message, result.getMessage());
+        assertFalse(result.isBlocked());
+        assertTrue(result.getAlerts().isEmpty());
+    }
+
+    @Test
+    void empty() {
+        assertTrue(ChatFilter.EMPTY.isEmpty());
+        assertEquals("hello", ChatFilter.EMPTY.filter("hello").getMessage());
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.filter;
+
+import com.google.common.collect.ImmutableList;
+import me.lucko.gchat.MockPlugin;
+import net.md_5.bungee.api.chat.BaseComponent;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.invocation.Invocation;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.when;
+
+class FilterHandlerTest {
+    private static final FilterRule BLOCK = new FilterRule("block", EnumSet.of(FilterAction.BLOCK, FilterAction.ALERT), true, ImmutableList.of("ass"));
+
+    private MockPlugin mock;
+    private ProxiedPlayer player;
+    private ProxiedPlayer staff;
+
+    @BeforeEach
+    void setUp(@TempDir Path folder) {
+        this.mock = new MockPlugin(folder.toFile());
+        when(this.mock.getConfig().getFilter()).thenReturn(new ChatFilter(ImmutableList.of(BLOCK), '*'));
+        when(this.mock.getConfig().getFilterAlertMessage()).thenReturn("&7{name}: &f{message} &8({matches})");
+        when(this.mock.getPlugin().replacePlaceholders(any(), anyString())).thenAnswer(invocation ->
+                invocation.<String>getArgument(1).replace("{name}", "Luck").replace("{secret}", "hunter2"));
+
+        this.player = this.mock.addPlayer("Luck");
+        this.staff = this.mock.addPlayer("Notch");
+        when(this.staff.hasPermission("gchat.filter.alert")).thenReturn(true);
+        when(this.mock.getProxy().getPlayers()).thenReturn(Arrays.asList(this.player, this.staff));
+    }
+
+    private static List<String> received(ProxiedPlayer player) {
+        List<String> messages = new ArrayList<>();
+        for (Invocation invocation : mockingDetails(player).getInvocations()) {
+            if (invocation.getMethod().getName().equals("sendMessage")) {
+                StringBuilder sb = new StringBuilder();
+                for (Object argument : invocation.getRawArguments()) {
+                    for (BaseComponent component : argument instanceof BaseComponent[] ? (BaseComponent[]) argument : new BaseComponent[]{(BaseComponent) argument}) {
+                        sb.append(component.toPlainText());
+                    }
+                }
+                messages.add(sb.toString());
+            }
+        }
+        return messages;
+    }
+
+    @Test
+    void alertsShowTheMessageAsPlainText() {
+        FilterHandler handler = new FilterHandler(this.mock.getPlugin());
+        assertNull(handler.filter(this.player, "&c{secret} {matches} you ass"));
+
+        assertEquals(Collections.singletonList("Luck: &c{secret} {matches} you ass (ass)"), received(this.staff));
+        assertEquals(Collections.emptyList(), received(this.player));
+    }
+
+}
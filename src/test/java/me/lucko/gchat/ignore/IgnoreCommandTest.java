@@ -0,0 +1,113 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.ignore;
+
+import me.lucko.gchat.MockPlugin;
+import me.lucko.gchat.api.PlayerPreferences;
+import me.lucko.gchat.messaging.Mailbox;
+import me.lucko.gchat.storage.PreferenceStore;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class IgnoreCommandTest {
+    private static final UUID OFFLINE = UUID.randomUUID();
+
+    private MockPlugin mock;
+    private IgnoreManager ignoreManager;
+    private PlayerPreferences preferences;
+    private Mailbox mailbox;
+    private ProxiedPlayer player;
+    private IgnoreCommand command;
+
+    @BeforeEach
+    void setUp(@TempDir Path folder) {
+        this.mock = new MockPlugin(folder.toFile());
+        this.player = this.mock.addPlayer("Luck");
+        UUID uuid = this.player.getUniqueId();
+
+        this.ignoreManager = mock(IgnoreManager.class);
+        when(this.mock.getPlugin().getIgnoreManager()).thenReturn(this.ignoreManager);
+
+        this.preferences = mock(PlayerPreferences.class);
+        PreferenceStore preferenceStore = mock(PreferenceStore.class);
+        when(preferenceStore.getLoaded(uuid)).thenReturn(Optional.of(this.preferences));
+        when(this.mock.getPlugin().getPreferenceStore()).thenReturn(preferenceStore);
+
+        this.mailbox = mock(Mailbox.class);
+        this.command = new IgnoreCommand(this.mock.getPlugin());
+    }
+
+    @Test
+    void ignoresOfflinePlayersSeenByTheMailbox() {
+        when(this.mock.getPlugin().getMailbox()).thenReturn(this.mailbox);
+        when(this.mailbox.getUniqueId("notch")).thenReturn(OFFLINE);
+        when(this.mailbox.getName(OFFLINE)).thenReturn("Notch");
+        when(this.ignoreManager.getIgnored(any())).thenReturn(Collections.emptyList());
+
+        this.command.execute(this.player, new String[]{"notch"});
+        verify(this.ignoreManager).toggleIgnore(this.preferences, OFFLINE);
+    }
+
+    @Test
+    void unignoresOfflinePlayersByTheIdInTheList() {
+        when(this.ignoreManager.getIgnored(any())).thenReturn(Collections.singletonList(OFFLINE));
+
+        this.command.execute(this.player, new String[]{OFFLINE.toString().toUpperCase()});
+        verify(this.ignoreManager).toggleIgnore(this.preferences, OFFLINE);
+    }
+
+    @Test
+    void unignoresOfflinePlayersByTheNameInTheList() {
+        when(this.mock.getPlugin().getMailbox()).thenReturn(this.mailbox);
+        when(this.mailbox.getName(OFFLINE)).thenReturn("Notch");
+        when(this.ignoreManager.getIgnored(any())).thenReturn(Collections.singletonList(OFFLINE));
+
+        this.command.execute(this.player, new String[]{"NOTCH"});
+        verify(this.ignoreManager).toggleIgnore(this.preferences, OFFLINE);
+    }
+
+    @Test
+    void unknownPlayersAreRejected() {
+        when(this.ignoreManager.getIgnored(any())).thenReturn(Collections.emptyList());
+
+        this.command.execute(this.player, new String[]{"nobody"});
+        verify(this.ignoreManager, never()).toggleIgnore(any(), any());
+    }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.link;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DomainTrieTest {
+
+    @Test
+    void matchesDomainsAndSubdomains() {
+        DomainTrie trie = DomainTrie.of(Arrays.asList("example.com", "*.Example.ORG ", "co.uk"));
+        assertFalse(trie.isEmpty());
+
+        assertTrue(trie.matches("example.com"));
+        assertTrue(trie.matches("www.example.com"));
+        assertTrue(trie.matches("a.b.example.com"));
+        assertTrue(trie.matches("example.org"));
+        assertTrue(trie.matches("cdn.example.org"));
+        assertTrue(trie.matches("bbc.co.uk"));
+
+        assertFalse(trie.matches("com"));
+        assertFalse(trie.matches("example.net"));
+        assertFalse(trie.matches("notexample.com"));
+        assertFalse(trie.matches("example.com.evil.net"));
+        assertFalse(trie.matches("uk"));
+    }
+
+    @Test
+    void empty() {
+        DomainTrie trie = DomainTrie.of(Arrays.asList("", "  "));
+        assertTrue(trie.isEmpty());
+        assertFalse(trie.matches("example.com"));
+        assertTrue(DomainTrie.of(Collections.emptyList()).isEmpty());
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.link;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LinkScannerTest {
+    private static final DomainTrie NONE = DomainTrie.of(Collections.emptyList());
+
+    private static List<String> urls(LinkScanner scanner, String message) {
+        List<String> urls = new ArrayList<>();
+        for (Link link : scanner.scan(message)) {
+            // the url is the linked text, with a scheme added if it didn't have one
+            assertTrue(link.getUrl().endsWith(message.substring(link.getStart(), link.getEnd())));
+            urls.add(link.getUrl());
+        }
+        return urls;
+    }
+
+    @Test
+    void findsLinksWithSchemes() {
+        LinkScanner scanner = new LinkScanner(false, NONE, NONE);
+        assertEquals(Arrays.asList("https://example.com", "http://www.example.org:8080/a/b?c=d#e"),
+                urls(scanner, "see https://example.com and (http://www.example.org:8080/a/b?c=d#e)."));
+        assertEquals(Collections.singletonList("https://example.com/page"), urls(scanner, "go to https://example.com/page!"));
+        assertEquals(Collections.singletonList("HTTPS://Example.com"), urls(scanner, "HTTPS://Example.com"));
+    }
+
+    @Test
+    void schemelessLinksAreOptional() {
+        LinkScanner scanner = new LinkScanner(false, NONE, NONE);
+        assertEquals(Collections.emptyList(), urls(scanner, "edit config.yml and example.com, then restart plugin.jar"));
+
+        scanner = new LinkScanner(true, NONE, NONE);
+        assertEquals(Arrays.asList("https://example.com", "https://www.example.org/page"), urls(scanner, "visit example.com or www.example.org/page"));
+    }
+
+    @Test
+    void rejectsThingsWhichArentLinks() {
+        LinkScanner scanner = new LinkScanner(true, NONE, NONE);
+        assertEquals(Collections.emptyList(), urls(scanner, "1.5 version 1.15.2 https://localhost -bad-.com a.b1 test.c"));
+        assertEquals(Collections.emptyList(), urls(scanner, "user@example.com"));
+    }
+
+    @Test
+    void linksEndAtColorCodes() {
+        LinkScanner scanner = new LinkScanner(false, NONE, NONE);
+        assertEquals(Collections.singletonList("https://example.com/page"), urls(scanner, "&ahttps://example.com/page&r text"));
+    }
+
+    @Test
+    void allowAndDenyLists() {
+        LinkScanner scanner = new LinkScanner(false, NONE, DomainTrie.of(Collections.singletonList("evil.net")));
+        assertEquals(Collections.singletonList("https://example.com"), urls(scanner, "https://example.com https://www.evil.net"));
+
+        scanner = new LinkScanner(false, DomainTrie.of(Collections.singletonList("example.com")), DomainTrie.of(Collections.singletonList("bad.example.com")));
+        assertEquals(Collections.singletonList("https://www.example.com"), urls(scanner, "https://www.example.com https://example.org https://bad.example.com"));
+    }
+
+}
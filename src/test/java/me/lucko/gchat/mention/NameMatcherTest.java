@@ -0,0 +1,84 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.mention;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NameMatcherTest {
+    private static final UUID LUCK = UUID.randomUUID();
+    private static final UUID LUCKY = UUID.randomUUID();
+    private static final UUID BOB = UUID.randomUUID();
+
+    private final NameMatcher matcher = new NameMatcher(ImmutableMap.of("Luck", LUCK, "Lucky", LUCKY, "Bob", BOB));
+
+    @Test
+    void matchesWholeWordsCaseInsensitively() {
+        List<Mention> mentions = this.matcher.find("hey LUCK and bob, not bobby", false, 3);
+        assertEquals(2, mentions.size());
+        assertMention(mentions.get(0), 4, 8, LUCK);
+        assertMention(mentions.get(1), 13, 16, BOB);
+    }
+
+    @Test
+    void prefersTheLongestOverlappingName() {
+        List<Mention> mentions = this.matcher.find("lucky", false, 3);
+        assertEquals(1, mentions.size());
+        assertMention(mentions.get(0), 0, 5, LUCKY);
+    }
+
+    @Test
+    void includesTheAtSign() {
+        List<Mention> mentions = this.matcher.find("hi @Bob!", true, 3);
+        assertEquals(1, mentions.size());
+        assertMention(mentions.get(0), 3, 7, BOB);
+    }
+
+    @Test
+    void requireAtAndMinLength() {
+        assertTrue(this.matcher.find("hi bob", true, 3).isEmpty());
+        assertTrue(this.matcher.find("hi bob", false, 4).isEmpty());
+        assertEquals(1, this.matcher.find("hi @bob", false, 4).size());
+    }
+
+    @Test
+    void empty() {
+        assertTrue(NameMatcher.EMPTY.find("luck", false, 0).isEmpty());
+    }
+
+    private static void assertMention(Mention mention, int start, int end, UUID player) {
+        assertEquals(start, mention.getStart());
+        assertEquals(end, mention.getEnd());
+        assertEquals(player, mention.getPlayer());
+    }
+
+}
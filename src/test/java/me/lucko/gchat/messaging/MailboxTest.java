@@ -0,0 +1,305 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.messaging;
+
+import me.lucko.gchat.MessageRenderer;
+import me.lucko.gchat.MockPlugin;
+import me.lucko.gchat.api.PlayerPreferences;
+import me.lucko.gchat.api.events.GChatPrivateMessageEvent;
+import me.lucko.gchat.filter.FilterHandler;
+import me.lucko.gchat.ignore.IgnoreManager;
+import me.lucko.gchat.mute.MuteManager;
+import me.lucko.gchat.storage.PreferenceStore;
+
+import net.kyori.text.TextComponent;
+import net.md_5.bungee.api.chat.BaseComponent;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+import net.md_5.bungee.api.event.PostLoginEvent;
+import net.md_5.bungee.api.plugin.Listener;
+import net.md_5.bungee.event.EventHandler;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.Invocation;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MailboxTest {
+    private MockPlugin mock;
+    private PreferenceStore preferenceStore;
+    private PrivateMessageManager privateMessageManager;
+    private ProxiedPlayer alice;
+    private ProxiedPlayer bob;
+    private File file;
+
+    @BeforeEach
+    void setUp(@TempDir Path folder) {
+        this.mock = new MockPlugin(folder.toFile());
+        this.file = new File(this.mock.getPlugin().getDataFolder(), "data/mailbox.dat");
+
+        when(this.mock.getConfig().getStorageFlushInterval()).thenReturn(1000L);
+        when(this.mock.getConfig().getMailboxMaxMessages()).thenReturn(2);
+        when(this.mock.getConfig().getMailboxExpiry()).thenReturn(TimeUnit.DAYS.toMillis(1));
+        when(this.mock.getConfig().getMailboxFullMessage()).thenReturn("{name} is full");
+        when(this.mock.getConfig().getMailboxHeader()).thenReturn("{count} messages");
+        when(this.mock.getConfig().getMailboxFormat()).thenReturn("{sender}: {message}");
+
+        this.preferenceStore = mock(PreferenceStore.class);
+        when(this.mock.getPlugin().getPreferenceStore()).thenReturn(this.preferenceStore);
+        when(this.mock.getPlugin().getMuteManager()).thenReturn(mock(MuteManager.class));
+        when(this.mock.getPlugin().getIgnoreManager()).thenReturn(mock(IgnoreManager.class));
+
+        FilterHandler filter = mock(FilterHandler.class);
+        when(filter.filter(any(), anyString())).thenAnswer(invocation -> invocation.getArgument(1));
+        when(this.mock.getPlugin().getFilterHandler()).thenReturn(filter);
+        MessageRenderer renderer = mock(MessageRenderer.class);
+        when(renderer.formatPlayerMessage(any(), anyString())).thenAnswer(invocation -> invocation.getArgument(1));
+        when(renderer.renderOffline(any(), any(), anyString(), anyString())).thenAnswer(invocation ->
+                TextComponent.of(invocation.<String>getArgument(2) + ": " + invocation.getArgument(3)));
+        when(this.mock.getPlugin().getRenderer()).thenReturn(renderer);
+        this.privateMessageManager = mock(PrivateMessageManager.class);
+        when(this.mock.getPlugin().getPrivateMessageManager()).thenReturn(this.privateMessageManager);
+
+        Logger chatLogger = Logger.getAnonymousLogger();
+        chatLogger.setUseParentHandlers(false);
+        when(this.mock.getPlugin().getChatLogger()).thenReturn(chatLogger);
+
+        this.alice = this.mock.addPlayer("alice");
+        this.bob = this.mock.addPlayer("Bob");
+    }
+
+    private Mailbox open() throws IOException {
+        Mailbox mailbox = new Mailbox(this.mock.getPlugin());
+        mailbox.open();
+        return mailbox;
+    }
+
+    /**
+     * Calls the listener the mailbox registered for when a player's preferences load, as
+     * happens when they join.
+     */
+    @SuppressWarnings("unchecked")
+    private void join(ProxiedPlayer player) {
+        ArgumentCaptor<Consumer<PlayerPreferences>> listener = ArgumentCaptor.forClass(Consumer.class);
+        verify(this.preferenceStore, atLeastOnce()).addLoadListener(listener.capture());
+
+        UUID uuid = player.getUniqueId();
+        PlayerPreferences preferences = mock(PlayerPreferences.class);
+        when(preferences.getUniqueId()).thenReturn(uuid);
+        listener.getValue().accept(preferences);
+    }
+
+    private static List<String> received(ProxiedPlayer player) {
+        List<String> messages = new ArrayList<>();
+        for (Invocation invocation : mockingDetails(player).getInvocations()) {
+            if (!invocation.getMethod().getName().equals("sendMessage")) {
+                continue;
+            }
+
+            StringBuilder sb = new StringBuilder();
+            for (Object argument : invocation.getRawArguments()) {
+                BaseComponent[] components = argument instanceof BaseComponent[] ? (BaseComponent[]) argument : new BaseComponent[]{(BaseComponent) argument};
+                for (BaseComponent component : components) {
+                    sb.append(component.toPlainText());
+                }
+            }
+            messages.add(sb.toString());
+        }
+        return messages;
+    }
+
+    @Test
+    void onlyPlayersSeenRecentlyCanBeMessaged() throws IOException {
+        Mailbox mailbox = open();
+        assertFalse(mailbox.send(this.alice, "bob", "hello"));
+
+        mailbox.onLogin(new PostLoginEvent(this.bob));
+        assertTrue(mailbox.send(this.alice, "bob", "hello"));
+        mailbox.close();
+    }
+
+    @Test
+    void messagesAreKeptAcrossRestarts() throws IOException {
+        Mailbox mailbox = open();
+        mailbox.onLogin(new PostLoginEvent(this.bob));
+        mailbox.close();
+
+        // the name is read back from the file
+        mailbox = open();
+        assertTrue(mailbox.send(this.alice, "BOB", "hello"));
+        assertTrue(mailbox.send(this.alice, "bob", "are you there?"));
+        mailbox.close();
+
+        mailbox = open();
+        join(this.bob);
+        assertEquals(Collections.singletonList("2 messages\nalice: hello\nalice: are you there?"), received(this.bob));
+        mailbox.close();
+
+        // delivered messages are cleared
+        this.bob = this.mock.addPlayer("Bob");
+        mailbox = open();
+        join(this.bob);
+        assertEquals(Collections.emptyList(), received(this.bob));
+        mailbox.close();
+    }
+
+    @Test
+    void eventsAndSocialSpySeeOfflineMessages() throws IOException {
+        List<GChatPrivateMessageEvent> events = new ArrayList<>();
+        this.mock.getPluginManager().registerListener(this.mock.getPlugin(), new Listener() {
+            @EventHandler
+            public void onPrivateMessage(GChatPrivateMessageEvent e) {
+                events.add(e);
+                e.setCancelled(e.getRawMessage().contains("cancel"));
+            }
+        });
+
+        Mailbox mailbox = open();
+        mailbox.onLogin(new PostLoginEvent(this.bob));
+        assertTrue(mailbox.send(this.alice, "bob", "hello"));
+        assertTrue(mailbox.send(this.alice, "bob", "cancel me"));
+
+        assertEquals(2, events.size());
+        assertTrue(events.get(0).isOffline());
+        assertEquals(this.bob.getUniqueId(), events.get(0).getRecipientUniqueId());
+        assertEquals("Bob", events.get(0).getRecipientName());
+
+        UUID bobUuid = this.bob.getUniqueId();
+        ArgumentCaptor<TextComponent> spyMessage = ArgumentCaptor.forClass(TextComponent.class);
+        verify(this.privateMessageManager).notifySocialSpies(eq(this.alice), eq(bobUuid), spyMessage.capture());
+        assertEquals("Bob: hello", spyMessage.getValue().content());
+
+        // the cancelled message was never queued
+        join(this.bob);
+        assertEquals(Collections.singletonList("1 messages\nalice: hello"), received(this.bob));
+        mailbox.close();
+    }
+
+    @Test
+    void messagesSentAfterADeliveryAreKept() throws IOException {
+        Mailbox mailbox = open();
+        mailbox.onLogin(new PostLoginEvent(this.bob));
+        mailbox.send(this.alice, "bob", "first");
+        join(this.bob);
+
+        mailbox.send(this.alice, "bob", "second");
+        join(this.bob);
+        assertEquals(Arrays.asList("1 messages\nalice: first", "1 messages\nalice: second"), received(this.bob));
+        mailbox.close();
+    }
+
+    @Test
+    void mailboxesAreCapped() throws IOException {
+        Mailbox mailbox = open();
+        mailbox.onLogin(new PostLoginEvent(this.bob));
+        for (int i = 0; i < 3; i++) {
+            assertTrue(mailbox.send(this.alice, "bob", "message " + i));
+        }
+        assertEquals(Collections.singletonList("Bob is full"), received(this.alice));
+
+        join(this.bob);
+        assertEquals(Collections.singletonList("2 messages\nalice: message 0\nalice: message 1"), received(this.bob));
+        mailbox.close();
+    }
+
+    @Test
+    void deliveredMessagesAreCompactedAway() throws IOException {
+        Mailbox mailbox = open();
+        mailbox.onLogin(new PostLoginEvent(this.bob));
+        mailbox.close();
+        long namesOnly = this.file.length();
+
+        mailbox = open();
+        mailbox.send(this.alice, "bob", "a long message, so the file grows past twice its compacted size");
+        mailbox.send(this.alice, "bob", "another long message, so the file grows past twice its compacted size");
+        when(this.mock.getConfig().getStorageCompactThreshold()).thenReturn(Long.MAX_VALUE);
+        this.mock.runScheduledTasks();
+        assertTrue(this.file.length() > namesOnly * 2);
+
+        when(this.mock.getConfig().getStorageCompactThreshold()).thenReturn(0L);
+        join(this.bob);
+        this.mock.runScheduledTasks();
+        assertEquals(namesOnly, this.file.length());
+        mailbox.close();
+
+        // names survive compaction
+        mailbox = open();
+        assertTrue(mailbox.send(this.alice, "bob", "hello again"));
+        mailbox.close();
+    }
+
+    @Test
+    void partialRecordsAreDiscarded() throws IOException {
+        Mailbox mailbox = open();
+        mailbox.onLogin(new PostLoginEvent(this.bob));
+        mailbox.send(this.alice, "bob", "hello");
+        mailbox.close();
+
+        long length = this.file.length();
+        Files.write(this.file.toPath(), new byte[]{1, 2, 3}, StandardOpenOption.APPEND);
+
+        mailbox = open();
+        assertEquals(length, this.file.length());
+        join(this.bob);
+        assertEquals(Collections.singletonList("1 messages\nalice: hello"), received(this.bob));
+        mailbox.close();
+    }
+
+    @Test
+    void rejectsOtherFiles() throws IOException {
+        this.file.getParentFile().mkdirs();
+        Files.write(this.file.toPath(), "not a mailbox".getBytes());
+        assertThrows(IOException.class, this::open);
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.mute;
+
+import me.lucko.gchat.MockPlugin;
+
+import net.md_5.bungee.api.config.ServerInfo;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+import net.md_5.bungee.api.connection.Server;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MuteManagerTest {
+    private MockPlugin mock;
+    private ProxiedPlayer player;
+
+    @BeforeEach
+    void setUp(@TempDir Path folder) {
+        this.mock = new MockPlugin(folder.toFile());
+        this.player = this.mock.addPlayer("alice");
+
+        ServerInfo info = mock(ServerInfo.class);
+        when(info.getName()).thenReturn("Survival");
+        Server server = mock(Server.class);
+        when(server.getInfo()).thenReturn(info);
+        when(this.player.getServer()).thenReturn(server);
+    }
+
+    @Test
+    void serverNamesMatchRegardlessOfCase() {
+        MuteManager mutes = new MuteManager(this.mock.getPlugin());
+        mutes.muteServer("survival", Mute.PERMANENT, "console");
+        Mute mute = mutes.getMute(this.player);
+        assertNotNull(mute);
+        assertEquals("survival", mute.getName());
+
+        assertTrue(mutes.unmuteServer("SURVIVAL"));
+        assertNull(mutes.getMute(this.player));
+        assertFalse(mutes.unmuteServer("survival"));
+    }
+
+    @Test
+    void exemptPlayersIgnoreServerMutes() {
+        MuteManager mutes = new MuteManager(this.mock.getPlugin());
+        mutes.muteNetwork(Mute.PERMANENT, "console");
+        when(this.player.hasPermission("gchat.mute.exempt")).thenReturn(true);
+        assertNull(mutes.getMute(this.player));
+
+        // but not mutes of themselves
+        mutes.mutePlayer(this.player.getUniqueId(), "alice", Mute.PERMANENT, "console");
+        assertNotNull(mutes.getMute(this.player));
+    }
+
+    @Test
+    void mutesAreSaved() {
+        MuteManager mutes = new MuteManager(this.mock.getPlugin());
+        mutes.open();
+        long expiry = System.currentTimeMillis() + 60_000;
+        mutes.mutePlayer(this.player.getUniqueId(), "alice", expiry, "console");
+        mutes.muteServer("Survival", Mute.PERMANENT, "console");
+        mutes.muteNetwork(System.currentTimeMillis() - 1, "console");
+        mutes.close();
+
+        MuteManager reopened = new MuteManager(this.mock.getPlugin());
+        reopened.open();
+        assertEquals(2, reopened.getMutes().size());
+
+        Mute mute = reopened.getMute(this.player);
+        assertNotNull(mute);
+        assertEquals(Mute.Scope.PLAYER, mute.getScope());
+        assertEquals(expiry, mute.getExpiry());
+
+        assertTrue(reopened.unmutePlayer(this.player.getUniqueId()));
+        mute = reopened.getMute(this.player);
+        assertNotNull(mute);
+        assertEquals(Mute.Scope.SERVER, mute.getScope());
+        assertEquals("Survival", mute.getName());
+        reopened.close();
+    }
+
+}
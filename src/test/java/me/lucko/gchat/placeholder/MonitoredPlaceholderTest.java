@@ -0,0 +1,176 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.placeholder;
+
+import me.lucko.gchat.MockPlugin;
+import me.lucko.gchat.api.Placeholder;
+
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.when;
+
+class MonitoredPlaceholderTest {
+    private MockPlugin mock;
+    private TestPlaceholder placeholder;
+    private ProxiedPlayer alice;
+    private ProxiedPlayer bob;
+
+    @BeforeEach
+    void setUp(@TempDir Path folder) {
+        this.mock = new MockPlugin(folder.toFile());
+        when(this.mock.getConfig().getPlaceholderFailureThreshold()).thenReturn(1);
+        when(this.mock.getConfig().getPlaceholderSlowThreshold()).thenReturn(60_000L);
+        when(this.mock.getConfig().getPlaceholderCooldown()).thenReturn(60_000L);
+        when(this.mock.getConfig().getPlaceholderFallback()).thenReturn("?");
+
+        this.placeholder = new TestPlaceholder();
+        this.alice = this.mock.addPlayer("alice");
+        this.bob = this.mock.addPlayer("bob");
+    }
+
+    @Test
+    void servesEachPlayersLastValueWhileOpen() {
+        MonitoredPlaceholder monitored = new MonitoredPlaceholder(this.mock.getPlugin(), this.placeholder);
+        this.placeholder.values.put("alice", "lobby");
+        this.placeholder.values.put("bob", "survival");
+        assertEquals("lobby", monitored.getReplacement(this.alice, "server"));
+        assertEquals("survival", monitored.getReplacement(this.bob, "server"));
+        this.placeholder.values.put("alice", "creative");
+        assertEquals("creative", monitored.getReplacement(this.alice, "server"));
+
+        this.placeholder.failing = true;
+        assertEquals("creative", monitored.getReplacement(this.alice, "server"));
+        assertEquals(MonitoredPlaceholder.State.OPEN, monitored.getState());
+        assertEquals("creative", monitored.getReplacement(this.alice, "server"));
+        assertEquals("survival", monitored.getReplacement(this.bob, "server"));
+        assertEquals(1, monitored.getTrips());
+    }
+
+    @Test
+    void fallsBackWithoutAPreviousValue() {
+        MonitoredPlaceholder monitored = new MonitoredPlaceholder(this.mock.getPlugin(), this.placeholder);
+        this.placeholder.values.put("alice", "lobby");
+        assertEquals("lobby", monitored.getReplacement(this.alice, "server"));
+
+        this.placeholder.failing = true;
+        assertEquals("?", monitored.getReplacement(this.bob, "server"));
+        assertEquals("?", monitored.getReplacement(null, "server"));
+        // never provided by this placeholder, so left for the next one
+        assertNull(monitored.getReplacement(this.alice, "other"));
+    }
+
+    @Test
+    void lateSuccessesDontCloseTheCircuit() {
+        MonitoredPlaceholder[] monitored = new MonitoredPlaceholder[1];
+        monitored[0] = new MonitoredPlaceholder(this.mock.getPlugin(), (player, definition) -> {
+            if (player == this.bob) {
+                throw new IllegalStateException("placeholder is down");
+            }
+            // the circuit opens whilst this call is in progress
+            monitored[0].getReplacement(this.bob, definition);
+            return "lobby";
+        });
+
+        assertEquals("lobby", monitored[0].getReplacement(this.alice, "server"));
+        assertEquals(MonitoredPlaceholder.State.OPEN, monitored[0].getState());
+    }
+
+    @Test
+    void trialCallsCloseTheCircuit() {
+        MonitoredPlaceholder monitored = new MonitoredPlaceholder(this.mock.getPlugin(), this.placeholder);
+        this.placeholder.failing = true;
+        monitored.getReplacement(this.alice, "server");
+        assertEquals(MonitoredPlaceholder.State.OPEN, monitored.getState());
+
+        when(this.mock.getConfig().getPlaceholderCooldown()).thenReturn(0L);
+        assertEquals(MonitoredPlaceholder.State.HALF_OPEN, monitored.getState());
+        monitored.getReplacement(this.alice, "server");
+        assertEquals(MonitoredPlaceholder.State.HALF_OPEN, monitored.getState());
+
+        this.placeholder.failing = false;
+        this.placeholder.values.put("alice", "lobby");
+        assertEquals("lobby", monitored.getReplacement(this.alice, "server"));
+        assertEquals(MonitoredPlaceholder.State.CLOSED, monitored.getState());
+        assertEquals(1, monitored.getTrips());
+    }
+
+    @Test
+    void snapshotRestoresStateAndValues() throws IOException {
+        MonitoredPlaceholder monitored = new MonitoredPlaceholder(this.mock.getPlugin(), this.placeholder);
+        this.placeholder.values.put("alice", "lobby");
+        assertEquals("lobby", monitored.getReplacement(this.alice, "server"));
+        assertEquals("lobby", monitored.getReplacement(null, "server"));
+        this.placeholder.failing = true;
+        monitored.getReplacement(this.bob, "server");
+        assertEquals(MonitoredPlaceholder.State.OPEN, monitored.getState());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        monitored.writeSnapshot(new DataOutputStream(bytes));
+
+        MonitoredPlaceholder restored = new MonitoredPlaceholder(this.mock.getPlugin(), this.placeholder);
+        restored.readSnapshot(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(MonitoredPlaceholder.State.OPEN, restored.getState());
+        assertEquals("lobby", restored.getReplacement(this.alice, "server"));
+        assertEquals("lobby", restored.getReplacement(null, "server"));
+        assertEquals("?", restored.getReplacement(this.bob, "server"));
+        // the circuit is still open, so the placeholder wasn't called again
+        assertEquals(3, this.placeholder.calls);
+    }
+
+    private static final class TestPlaceholder implements Placeholder {
+        private final Map<String, String> values = new HashMap<>();
+        private boolean failing;
+        private int calls;
+
+        @Override
+        public String getReplacement(ProxiedPlayer player, String definition) {
+            this.calls++;
+            if (this.failing) {
+                throw new IllegalStateException("placeholder is down");
+            }
+            if (!definition.equals("server")) {
+                return null;
+            }
+            return player == null ? "lobby" : this.values.get(player.getName());
+        }
+    }
+
+}
@@ -0,0 +1,226 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.queue;
+
+import me.lucko.gchat.GChatListener;
+import me.lucko.gchat.MockPlugin;
+import me.lucko.gchat.api.ChatFormat;
+import me.lucko.gchat.api.ChatLane;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+import net.md_5.bungee.config.Configuration;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class ChatQueueTest {
+    private final MockPlugin mock = new MockPlugin(new File("."));
+    private final GChatListener listener = mock(GChatListener.class);
+
+    /** The messages handled for each player, in the order they were handled */
+    private final Map<ProxiedPlayer, List<String>> handled = new ConcurrentHashMap<>();
+    private final Set<ProxiedPlayer> inProgress = ConcurrentHashMap.newKeySet();
+    private volatile CountDownLatch blocker = new CountDownLatch(0);
+    private volatile boolean concurrent = false;
+
+    ChatQueueTest() {
+        doAnswer(invocation -> {
+            ProxiedPlayer player = invocation.getArgument(0);
+            if (!this.inProgress.add(player)) {
+                this.concurrent = true;
+            }
+            this.blocker.await();
+            this.handled.computeIfAbsent(player, p -> Collections.synchronizedList(new ArrayList<>())).addAll(invocation.getArgument(2));
+            this.inProgress.remove(player);
+            return null;
+        }).when(this.listener).handle(any(), any(), any());
+    }
+
+    private static ChatFormat format(String id, ChatLane lane) {
+        Configuration c = new Configuration();
+        c.set("format", "{name}: {message}");
+        c.set("lane", lane.name());
+        return new ChatFormat(id, c);
+    }
+
+    @Test
+    void eachPlayersMessagesAreHandledInOrder() {
+        ChatFormat format = format("normal", ChatLane.NORMAL);
+        ChatQueue queue = new ChatQueue(this.mock.getPlugin(), this.listener, 10_000, 4, 1);
+
+        List<ProxiedPlayer> players = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            players.add(this.mock.addPlayer("player" + i));
+        }
+        for (int i = 0; i < 200; i++) {
+            for (ProxiedPlayer player : players) {
+                queue.submit(player, format, Integer.toString(i));
+            }
+        }
+        queue.shutdown();
+
+        assertEquals(false, this.concurrent);
+        for (ProxiedPlayer player : players) {
+            List<String> messages = this.handled.get(player);
+            assertEquals(200, messages.size());
+            for (int i = 0; i < 200; i++) {
+                assertEquals(Integer.toString(i), messages.get(i));
+            }
+        }
+    }
+
+    @Test
+    void higherLanesGoFirstWithoutOvertakingTheSamePlayer() throws Exception {
+        ChatFormat low = format("low", ChatLane.LOW);
+        ChatFormat high = format("high", ChatLane.HIGH);
+        ChatQueue queue = new ChatQueue(this.mock.getPlugin(), this.listener, 100, 1, 1);
+        ProxiedPlayer busy = this.mock.addPlayer("busy");
+        ProxiedPlayer alice = this.mock.addPlayer("alice");
+        ProxiedPlayer staff = this.mock.addPlayer("staff");
+
+        // hold the worker, so the rest wait in the queue
+        this.blocker = new CountDownLatch(1);
+        queue.submit(busy, low, "first");
+        awaitInProgress(busy);
+
+        List<ProxiedPlayer> order = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> {
+            order.add(invocation.getArgument(0));
+            return null;
+        }).when(this.listener).handle(any(), any(), any());
+
+        queue.submit(alice, low, "one");
+        queue.submit(staff, high, "staff");
+        queue.submit(alice, high, "two");
+        this.blocker.countDown();
+        queue.shutdown();
+
+        // staff jumps the queue, but alice's second message waits behind her first
+        assertEquals(staff, order.get(0));
+        assertEquals(alice, order.get(1));
+        assertEquals(alice, order.get(2));
+    }
+
+    @Test
+    void theHighLaneIsNeverShed() throws Exception {
+        ChatFormat normal = format("normal", ChatLane.NORMAL);
+        ChatFormat high = format("high", ChatLane.HIGH);
+        ChatQueue queue = new ChatQueue(this.mock.getPlugin(), this.listener, 2, 1, 1);
+        ProxiedPlayer busy = this.mock.addPlayer("busy");
+
+        this.blocker = new CountDownLatch(1);
+        queue.submit(busy, normal, "hold");
+        awaitInProgress(busy);
+
+        for (int i = 0; i < 5; i++) {
+            queue.submit(this.mock.addPlayer("normal" + i), normal, "hi");
+            queue.submit(this.mock.addPlayer("staff" + i), high, "hi");
+        }
+        assertEquals(3, queue.getShed());
+        assertEquals(2, queue.getQueued(ChatLane.NORMAL));
+        assertEquals(5, queue.getQueued(ChatLane.HIGH));
+
+        this.blocker.countDown();
+        queue.shutdown();
+        assertEquals(8, queue.getProcessed());
+    }
+
+    @Test
+    void fullLanesMergeMessagesFromTheSamePlayer() throws Exception {
+        ChatFormat normal = format("normal", ChatLane.NORMAL);
+        ChatQueue queue = new ChatQueue(this.mock.getPlugin(), this.listener, 1, 1, 3);
+        ProxiedPlayer busy = this.mock.addPlayer("busy");
+        ProxiedPlayer alice = this.mock.addPlayer("alice");
+
+        this.blocker = new CountDownLatch(1);
+        queue.submit(busy, normal, "hold");
+        awaitInProgress(busy);
+
+        for (int i = 0; i < 4; i++) {
+            queue.submit(alice, normal, Integer.toString(i));
+        }
+        assertEquals(2, queue.getCoalesced());
+        assertEquals(1, queue.getShed());
+
+        this.blocker.countDown();
+        queue.shutdown();
+        assertEquals(Arrays.asList("0", "1", "2"), this.handled.get(alice));
+    }
+
+    @Test
+    void shutdownDrainsTheQueue() throws Exception {
+        ChatFormat normal = format("normal", ChatLane.NORMAL);
+        ChatQueue queue = new ChatQueue(this.mock.getPlugin(), this.listener, 100, 2, 1);
+        ProxiedPlayer alice = this.mock.addPlayer("alice");
+
+        this.blocker = new CountDownLatch(1);
+        for (int i = 0; i < 10; i++) {
+            queue.submit(alice, normal, Integer.toString(i));
+        }
+        new Thread(() -> {
+            sleep(100);
+            this.blocker.countDown();
+        }).start();
+        queue.shutdown();
+
+        assertEquals(10, this.handled.get(alice).size());
+
+        // messages submitted after shutdown are dropped
+        queue.submit(alice, normal, "late");
+        assertEquals(1, queue.getShed());
+    }
+
+    private void awaitInProgress(ProxiedPlayer player) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!this.inProgress.contains(player)) {
+            assertTrue(System.nanoTime() < deadline);
+            sleep(1);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.queue;
+
+import me.lucko.gchat.MockPlugin;
+
+import net.kyori.text.TextComponent;
+import net.md_5.bungee.api.chat.BaseComponent;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FanOutTest {
+    private MockPlugin mock;
+    private FanOut fanOut;
+
+    @BeforeEach
+    void setUp(@TempDir Path folder) {
+        this.mock = new MockPlugin(folder.toFile());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (this.fanOut != null) {
+            this.fanOut.shutdown();
+        }
+    }
+
+    @Test
+    void filterKeepsOrder() {
+        this.fanOut = new FanOut(this.mock.getPlugin(), 2, 2, 4);
+        List<ProxiedPlayer> players = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            players.add(this.mock.addPlayer("player" + i));
+        }
+
+        List<ProxiedPlayer> even = new ArrayList<>();
+        for (int i = 0; i < players.size(); i += 2) {
+            even.add(players.get(i));
+        }
+        assertEquals(even, this.fanOut.filter(players, p -> Integer.parseInt(p.getName().substring(6)) % 2 == 0));
+    }
+
+    @Test
+    void dropsInsteadOfWaitingWhenFull() throws InterruptedException {
+        this.fanOut = new FanOut(this.mock.getPlugin(), 1, 1, 1);
+        ProxiedPlayer player = this.mock.addPlayer("slow");
+
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            // only the first message blocks
+            if (sending.getCount() != 0) {
+                sending.countDown();
+                release.await();
+            }
+            return null;
+        }).when(player).sendMessage((BaseComponent[]) any());
+
+        // the first message is being sent, the second waits in the queue, and the third doesn't fit
+        this.fanOut.send(Collections.singletonList(player), TextComponent.of("one"));
+        assertTrue(sending.await(5, TimeUnit.SECONDS));
+        this.fanOut.send(Collections.singletonList(player), TextComponent.of("two"));
+        this.fanOut.send(Collections.singletonList(player), TextComponent.of("three"));
+        assertEquals(1, this.fanOut.getDropped());
+
+        release.countDown();
+        verify(player, timeout(5000).times(2)).sendMessage((BaseComponent[]) any());
+    }
+
+    @Test
+    void skipsDisconnectedRecipients() {
+        this.fanOut = new FanOut(this.mock.getPlugin(), 1, 2, 4);
+        ProxiedPlayer online = this.mock.addPlayer("online");
+        ProxiedPlayer offline = this.mock.addPlayer("offline");
+        when(offline.isConnected()).thenReturn(false);
+
+        this.fanOut.send(Arrays.asList(online, offline), TextComponent.of("hello"));
+        this.fanOut.shutdown();
+        this.fanOut = null;
+
+        verify(online).sendMessage((BaseComponent[]) any());
+        verify(offline, never()).sendMessage((BaseComponent[]) any());
+    }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.storage;
+
+import me.lucko.gchat.MockPlugin;
+import me.lucko.gchat.api.PlayerPreferences;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+class PreferenceStoreTest {
+    private static final UUID PLAYER = UUID.randomUUID();
+
+    @TempDir
+    Path folder;
+
+    private MockPlugin mock;
+    private File logFile;
+    private File snapshotFile;
+
+    @BeforeEach
+    void setup() {
+        this.mock = new MockPlugin(this.folder.toFile());
+        when(this.mock.getConfig().getStorageFlushInterval()).thenReturn(2000L);
+        when(this.mock.getConfig().getStorageCompactThreshold()).thenReturn(1048576L);
+
+        File data = new File(this.mock.getPlugin().getDataFolder(), "data");
+        this.logFile = new File(data, "preferences.log");
+        this.snapshotFile = new File(data, "preferences.snapshot");
+    }
+
+    private PreferenceStore open() throws IOException {
+        PreferenceStore store = new PreferenceStore(this.mock.getPlugin());
+        store.open();
+        return store;
+    }
+
+    @Test
+    void valuesSurviveReopening() throws Exception {
+        PreferenceStore store = open();
+        PlayerPreferences preferences = store.load(PLAYER).get();
+        preferences.setString("colour", "red");
+        preferences.setBoolean("spy", true);
+        preferences.setString("removed", "x");
+        preferences.setString("removed", null);
+        store.close();
+
+        store = open();
+        preferences = store.load(PLAYER).get();
+        assertEquals("red", preferences.getString("colour", null));
+        assertTrue(preferences.getBoolean("spy", false));
+        assertNull(preferences.getString("removed", null));
+        assertEquals(2, preferences.getKeys().size());
+        store.close();
+    }
+
+    @Test
+    void compactionKeepsOnlyTheLatestValues() throws Exception {
+        when(this.mock.getConfig().getStorageCompactThreshold()).thenReturn(0L);
+
+        PreferenceStore store = open();
+        PlayerPreferences preferences = store.load(PLAYER).get();
+        for (int i = 0; i < 100; i++) {
+            preferences.setLong("count", i);
+        }
+        this.mock.runScheduledTasks();
+
+        // the log is truncated back to its header, and the values moved to the snapshot
+        assertEquals(8, this.logFile.length());
+        assertTrue(this.snapshotFile.length() > 8);
+        assertEquals(99, store.load(PLAYER).get().getLong("count", -1));
+        store.close();
+
+        store = open();
+        assertEquals(99, store.load(PLAYER).get().getLong("count", -1));
+        store.close();
+    }
+
+    @Test
+    void incompleteRecordsAreDiscarded() throws Exception {
+        PreferenceStore store = open();
+        store.load(PLAYER).get().setString("colour", "red");
+        store.close();
+
+        long length = this.logFile.length();
+        Files.write(this.logFile.toPath(), new byte[]{1, 2, 3, 4, 5}, StandardOpenOption.APPEND);
+
+        store = open();
+        assertEquals(length, this.logFile.length());
+        assertEquals("red", store.load(PLAYER).get().getString("colour", null));
+
+        // new records are written after the valid ones
+        store.load(UUID.randomUUID()).get().setString("colour", "blue");
+        store.close();
+        store = open();
+        assertEquals("red", store.load(PLAYER).get().getString("colour", null));
+        store.close();
+    }
+
+    @Test
+    void unknownFilesAreRejected() throws Exception {
+        this.logFile.getParentFile().mkdirs();
+        try (RandomAccessFile file = new RandomAccessFile(this.snapshotFile, "rw")) {
+            file.writeInt(0x12345678);
+            file.writeInt(1);
+        }
+
+        PreferenceStore store = new PreferenceStore(this.mock.getPlugin());
+        assertThrows(IOException.class, store::open);
+        assertFalse(this.logFile.exists() && this.logFile.length() > 8);
+    }
+
+}
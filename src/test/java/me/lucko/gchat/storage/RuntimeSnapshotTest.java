@@ -0,0 +1,120 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RuntimeSnapshotTest {
+    private static final long MAX_AGE = TimeUnit.MINUTES.toMillis(10);
+    private static final long FINGERPRINT = 0x1234567890abcdefL;
+
+    @TempDir
+    Path folder;
+
+    private File save() throws IOException {
+        File file = new File(this.folder.toFile(), "data/runtime.dat");
+        RuntimeSnapshot snapshot = new RuntimeSnapshot(FINGERPRINT);
+        snapshot.put("numbers", out -> {
+            out.writeInt(2);
+            out.writeLong(42);
+            out.writeLong(-1);
+        });
+        snapshot.put("text", out -> out.writeUTF("hello"));
+        snapshot.save(file);
+        return file;
+    }
+
+    @Test
+    void sectionsSurviveSaving() throws IOException {
+        RuntimeSnapshot snapshot = RuntimeSnapshot.load(save(), MAX_AGE, FINGERPRINT);
+        assertNotNull(snapshot);
+
+        List<Long> numbers = new ArrayList<>();
+        assertTrue(snapshot.read("numbers", in -> {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                numbers.add(in.readLong());
+            }
+        }));
+        assertEquals(Arrays.asList(42L, -1L), numbers);
+
+        String[] text = new String[1];
+        assertTrue(snapshot.read("text", in -> text[0] = in.readUTF()));
+        assertEquals("hello", text[0]);
+
+        // sections are only read once
+        assertFalse(snapshot.read("text", in -> { throw new AssertionError(); }));
+        assertFalse(snapshot.read("missing", in -> { throw new AssertionError(); }));
+    }
+
+    @Test
+    void snapshotsAreOnlyLoadedOnce() throws IOException {
+        File file = save();
+        assertNotNull(RuntimeSnapshot.load(file, MAX_AGE, FINGERPRINT));
+        assertFalse(file.exists());
+        assertNull(RuntimeSnapshot.load(file, MAX_AGE, FINGERPRINT));
+    }
+
+    @Test
+    void snapshotsFromAnotherConfigAreDiscarded() throws IOException {
+        File file = save();
+        assertNull(RuntimeSnapshot.load(file, MAX_AGE, FINGERPRINT + 1));
+        assertFalse(file.exists());
+    }
+
+    @Test
+    void oldSnapshotsAreDiscarded() throws IOException {
+        File file = save();
+        assertNull(RuntimeSnapshot.load(file, -1, FINGERPRINT));
+        assertFalse(file.exists());
+    }
+
+    @Test
+    void rejectsOtherFiles() throws IOException {
+        File file = new File(this.folder.toFile(), "runtime.dat");
+        Files.write(file.toPath(), "not a snapshot".getBytes());
+        assertThrows(IOException.class, () -> RuntimeSnapshot.load(file, MAX_AGE, FINGERPRINT));
+        assertFalse(file.exists());
+    }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.util;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AhoCorasickTest {
+
+    @Test
+    void findsOverlappingPatterns() {
+        AhoCorasick<String> automaton = new AhoCorasick<>(ImmutableMap.of("he", "he", "she", "she", "his", "his", "hers", "hers"));
+        assertEquals(sorted("she@1", "he@2", "hers@2"), sorted(find(automaton, "ushers")));
+    }
+
+    @Test
+    void empty() {
+        AhoCorasick<String> automaton = new AhoCorasick<>(Collections.emptyMap());
+        assertTrue(automaton.isEmpty());
+        assertTrue(find(automaton, "anything").isEmpty());
+        assertFalse(new AhoCorasick<>(ImmutableMap.of("a", "a")).isEmpty());
+    }
+
+    @Test
+    void matchesNaiveSearch() {
+        Random random = new Random(1);
+        Map<String, String> patterns = new HashMap<>();
+        for (int i = 0; i < 50; i++) {
+            String pattern = randomString(random, 1 + random.nextInt(4));
+            patterns.put(pattern, pattern);
+        }
+        AhoCorasick<String> automaton = new AhoCorasick<>(patterns);
+
+        for (int i = 0; i < 200; i++) {
+            String text = randomString(random, random.nextInt(40));
+            List<String> expected = new ArrayList<>();
+            for (String pattern : patterns.keySet()) {
+                for (int at = text.indexOf(pattern); at >= 0; at = text.indexOf(pattern, at + 1)) {
+                    expected.add(pattern + "@" + at);
+                }
+            }
+            assertEquals(sorted(expected.toArray(new String[0])), sorted(find(automaton, text)), text);
+        }
+    }
+
+    private static List<String> find(AhoCorasick<String> automaton, String text) {
+        List<String> found = new ArrayList<>();
+        int state = AhoCorasick.ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            state = automaton.next(state, text.charAt(i));
+            for (int s = automaton.firstOutput(state); s >= 0; s = automaton.nextOutput(s)) {
+                assertEquals(automaton.getValue(s).length(), automaton.getLength(s));
+                found.add(automaton.getValue(s) + "@" + (i + 1 - automaton.getLength(s)));
+            }
+        }
+        return found;
+    }
+
+    private static List<String> sorted(String... values) {
+        return sorted(new ArrayList<>(Arrays.asList(values)));
+    }
+
+    private static List<String> sorted(List<String> values) {
+        Collections.sort(values);
+        return values;
+    }
+
+    private static String randomString(Random random, int length) {
+        // a small alphabet, so patterns overlap often
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append((char) ('a' + random.nextInt(3)));
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,62 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DurationsTest {
+
+    @Test
+    void parse() {
+        assertEquals(TimeUnit.SECONDS.toMillis(30), Durations.parse("30s"));
+        assertEquals(TimeUnit.MINUTES.toMillis(90), Durations.parse("1h30m"));
+        assertEquals(TimeUnit.DAYS.toMillis(15), Durations.parse("2W1d"));
+    }
+
+    @Test
+    void parseRejectsInvalidInput() {
+        assertEquals(-1, Durations.parse(""));
+        assertEquals(-1, Durations.parse("10"));
+        assertEquals(-1, Durations.parse("1h30"));
+        assertEquals(-1, Durations.parse("m"));
+        assertEquals(-1, Durations.parse("5y"));
+        assertEquals(-1, Durations.parse("0s"));
+        assertEquals(-1, Durations.parse("99999999999s"));
+    }
+
+    @Test
+    void format() {
+        assertEquals("1s", Durations.format(0));
+        assertEquals("1s", Durations.format(1));
+        assertEquals("1h 30m", Durations.format(TimeUnit.MINUTES.toMillis(90)));
+        assertEquals("2d 1s", Durations.format(TimeUnit.DAYS.toMillis(2) + 1000));
+    }
+
+}
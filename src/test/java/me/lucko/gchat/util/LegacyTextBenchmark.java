@@ -0,0 +1,97 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.util;
+
+import net.kyori.text.Component;
+import net.kyori.text.serializer.legacy.LegacyComponentSerializer;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.function.Function;
+
+/**
+ * Compares the speed and allocation rate of {@link LegacyText} with kyori's
+ * {@link LegacyComponentSerializer}, over a set of typical chat formats.
+ *
+ * <p>This isn't run as part of the build. Usage, after {@code mvn test-compile}:
+ * {@code java -cp target/classes:target/test-classes:<dependencies> me.lucko.gchat.util.LegacyTextBenchmark [iterations]}</p>
+ */
+public final class LegacyTextBenchmark {
+    private LegacyTextBenchmark() {}
+
+    static final String[] SAMPLES = {
+            "&7Luck&7: hello there",
+            "&8[&aLobby&8] &b&lAdmin &7Luck&8: &fhas anyone seen the new map?",
+            "&e&l[!] &r&6Server restarting in &c5 &6minutes, &esave your work&6.",
+            "&7<&lName&7>&r hi &ahello&a world",
+            "&2[&aMember&2] &7Notch&f: &f&ogg &f&ono re",
+            "plain text with no codes at all, which is still quite common in chat"
+    };
+
+    public static void main(String[] args) {
+        int iterations = args.length == 0 ? 200_000 : Integer.parseInt(args[0]);
+
+        Function<String, Component> kyori = text -> LegacyComponentSerializer.legacy().deserialize(text, '&');
+        Function<String, Component> gchat = LegacyText::parse;
+
+        // warm up both, so the timed runs use compiled code
+        run(kyori, iterations);
+        run(gchat, iterations);
+
+        System.out.println("Parsing " + SAMPLES.length + " formats, " + iterations + " times each");
+        report("LegacyComponentSerializer", kyori, iterations);
+        report("LegacyText", gchat, iterations);
+    }
+
+    private static void report(String name, Function<String, Component> parser, int iterations) {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean allocations = threads instanceof com.sun.management.ThreadMXBean ? (com.sun.management.ThreadMXBean) threads : null;
+        long thread = Thread.currentThread().getId();
+
+        long bytesBefore = allocations == null ? 0 : allocations.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        int blackhole = run(parser, iterations);
+        long elapsed = System.nanoTime() - start;
+        long bytes = allocations == null ? -1 : allocations.getThreadAllocatedBytes(thread) - bytesBefore;
+
+        long operations = (long) iterations * SAMPLES.length;
+        System.out.printf("%-26s %8.1f ns/op %10s B/op   (%d)%n", name,
+                (double) elapsed / operations,
+                bytes < 0 ? "?" : String.format("%.1f", (double) bytes / operations),
+                blackhole);
+    }
+
+    private static int run(Function<String, Component> parser, int iterations) {
+        int total = 0;
+        for (int i = 0; i < iterations; i++) {
+            for (String sample : SAMPLES) {
+                total += parser.apply(sample).children().size();
+            }
+        }
+        return total;
+    }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.util;
+
+import net.kyori.text.Component;
+import net.kyori.text.TextComponent;
+import net.kyori.text.format.TextColor;
+import net.kyori.text.format.TextDecoration;
+import net.kyori.text.serializer.legacy.LegacyComponentSerializer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LegacyTextTest {
+
+    // the formats from the default config, with their placeholders filled in
+    private static final String[] CONFIG_FORMATS = {
+            "&cYou do not have permission to use the chat!",
+            "&8[Lobby] ",
+            "* [Admin] Luck&c: &b&lhello there",
+            "&8[&bLobby&8] &7Luck&r: hello there",
+            "&8[&cFilter&8] &7Luck: &fsome bad words &8(bad, words)",
+            "&c\u2764",
+            "&e&lLuck",
+            "&eLuck &7mentioned you",
+            "&7[&bme &7-> &bNotch&7] &fhello there",
+            "&7Click to reply to Notch",
+            "&8[&7spy&8] &7Luck -> Notch: hello there",
+            "&6You received 2 message(s) whilst you were offline:",
+            "&8[5m ago] &bLuck&7: &fhello there"
+    };
+
+    /**
+     * Flattens a component into the style of each character it displays, resolving the
+     * styles inherited from parent components.
+     */
+    private static List<String> styledCharacters(Component component) {
+        List<String> result = new ArrayList<>();
+        collect(component, null, EnumSet.noneOf(TextDecoration.class), result);
+        return result;
+    }
+
+    private static void collect(Component component, TextColor parentColor, Set<TextDecoration> parentDecorations, List<String> result) {
+        TextColor color = component.color() != null ? component.color() : parentColor;
+        Set<TextDecoration> decorations = EnumSet.noneOf(TextDecoration.class);
+        for (TextDecoration decoration : TextDecoration.values()) {
+            TextDecoration.State state = component.decoration(decoration);
+            if (state == TextDecoration.State.TRUE || (state == TextDecoration.State.NOT_SET && parentDecorations.contains(decoration))) {
+                decorations.add(decoration);
+            }
+        }
+
+        if (component instanceof TextComponent) {
+            StringBuilder style = new StringBuilder().append(color);
+            for (TextDecoration decoration : decorations) {
+                style.append(' ').append(decoration);
+            }
+            for (char c : ((TextComponent) component).content().toCharArray()) {
+                result.add(c + " " + style);
+            }
+        }
+        for (Component child : component.children()) {
+            collect(child, color, decorations, result);
+        }
+    }
+
+    private static void assertMatchesKyori(String text) {
+        Component expected = LegacyComponentSerializer.legacy().deserialize(text, '&');
+        assertEquals(styledCharacters(expected), styledCharacters(LegacyText.parse(text)), text);
+    }
+
+    @Test
+    void matchesKyoriForConfigFormats() {
+        for (String format : CONFIG_FORMATS) {
+            assertMatchesKyori(format);
+        }
+    }
+
+    @Test
+    void matchesKyoriForBenchmarkSamples() {
+        for (String sample : LegacyTextBenchmark.SAMPLES) {
+            assertMatchesKyori(sample);
+        }
+    }
+
+    @Test
+    void colorCodesClearFormatCodes() {
+        List<String> styles = styledCharacters(LegacyText.parse("&l&ca&lb&rc"));
+        assertEquals("a red", styles.get(0));
+        assertEquals("b red bold", styles.get(1));
+        assertEquals("c null", styles.get(2));
+    }
+
+    @Test
+    void readsSectionSignCodes() {
+        assertEquals(styledCharacters(LegacyText.parse("&a&lhi")), styledCharacters(LegacyText.parse("\u00a7a\u00a7Lhi")));
+    }
+
+    @Test
+    void runsWithTheSameStyleAreMerged() {
+        TextComponent component = LegacyText.parse("&7a&7b&7&lc&zd");
+        assertEquals(2, component.children().size());
+        assertEquals("ab", ((TextComponent) component.children().get(0)).content());
+        assertEquals("c&zd", ((TextComponent) component.children().get(1)).content());
+        assertTrue(component.children().get(1).hasDecoration(TextDecoration.BOLD));
+    }
+
+    @Test
+    void toDisplayedOffsets() {
+        int[] offsets = {0, 1, 2, 3, 5, 9, 12};
+        LegacyText.toDisplayedOffsets("&7ab&&l&ocd&", offsets);
+        assertArrayEquals(new int[]{0, 0, 0, 1, 3, 3, 6}, offsets);
+    }
+
+}
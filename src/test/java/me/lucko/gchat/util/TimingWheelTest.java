@@ -0,0 +1,115 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TimingWheelTest {
+
+    @Test
+    void firesWhenTheDeadlinePasses() {
+        TimingWheel<String> wheel = new TimingWheel<>(100, 8, 0);
+        wheel.schedule("a", 250);
+        wheel.schedule("b", 300);
+
+        List<String> fired = new ArrayList<>();
+        wheel.advance(200, fired::add);
+        assertEquals(Collections.emptyList(), fired);
+
+        // deadlines are rounded up to the next tick, so timeouts never fire early
+        wheel.advance(299, fired::add);
+        assertEquals(Collections.emptyList(), fired);
+        wheel.advance(300, fired::add);
+        assertEquals(Arrays.asList("a", "b"), fired);
+
+        fired.clear();
+        wheel.advance(1000, fired::add);
+        assertEquals(Collections.emptyList(), fired);
+    }
+
+    @Test
+    void keepsTimeoutsBeyondOneRevolution() {
+        TimingWheel<String> wheel = new TimingWheel<>(100, 8, 0);
+        // the same slot as tick 3, but two revolutions later
+        wheel.schedule("later", 1900);
+        wheel.schedule("sooner", 300);
+
+        List<String> fired = new ArrayList<>();
+        wheel.advance(400, fired::add);
+        assertEquals(Collections.singletonList("sooner"), fired);
+
+        fired.clear();
+        wheel.advance(1800, fired::add);
+        assertEquals(Collections.emptyList(), fired);
+        wheel.advance(1900, fired::add);
+        assertEquals(Collections.singletonList("later"), fired);
+    }
+
+    @Test
+    void catchesUpAfterALongPause() {
+        TimingWheel<Integer> wheel = new TimingWheel<>(100, 8, 0);
+        for (int i = 1; i <= 50; i++) {
+            wheel.schedule(i, i * 100);
+        }
+
+        List<Integer> fired = new ArrayList<>();
+        wheel.advance(10_000, fired::add);
+        Collections.sort(fired);
+        assertEquals(50, fired.size());
+        assertEquals(1, (int) fired.get(0));
+        assertEquals(50, (int) fired.get(49));
+    }
+
+    @Test
+    void pastDeadlinesFireOnTheNextAdvance() {
+        TimingWheel<String> wheel = new TimingWheel<>(100, 8, 0);
+        wheel.advance(500, v -> {});
+        wheel.schedule("late", 100);
+
+        List<String> fired = new ArrayList<>();
+        wheel.advance(600, fired::add);
+        assertEquals(Collections.singletonList("late"), fired);
+    }
+
+    @Test
+    void cancelledTimeoutsDontFire() {
+        TimingWheel<String> wheel = new TimingWheel<>(100, 8, 0);
+        wheel.schedule("cancelled", 200).cancel();
+        wheel.schedule("kept", 200);
+
+        List<String> fired = new ArrayList<>();
+        wheel.advance(200, fired::add);
+        assertEquals(Collections.singletonList("kept"), fired);
+    }
+
+}
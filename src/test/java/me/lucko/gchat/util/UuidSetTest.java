@@ -0,0 +1,118 @@
+/*
+ * This file is part of gChat, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.gchat.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UuidSetTest {
+
+    @Test
+    void addContainsRemove() {
+        UuidSet set = new UuidSet();
+        UUID uuid = UUID.randomUUID();
+
+        assertTrue(set.add(uuid));
+        assertFalse(set.add(uuid));
+        assertTrue(set.contains(uuid));
+        assertEquals(1, set.size());
+
+        assertTrue(set.remove(uuid));
+        assertFalse(set.remove(uuid));
+        assertFalse(set.contains(uuid));
+        assertTrue(set.isEmpty());
+    }
+
+    @Test
+    void nilUuid() {
+        UuidSet set = new UuidSet();
+        UUID nil = new UUID(0, 0);
+
+        assertFalse(set.contains(nil));
+        assertTrue(set.add(nil));
+        assertFalse(set.add(nil));
+        assertTrue(set.contains(nil));
+        assertEquals(1, set.size());
+        assertTrue(set.toList().contains(nil));
+
+        assertTrue(set.remove(nil));
+        assertFalse(set.contains(nil));
+        assertEquals(0, set.size());
+    }
+
+    @Test
+    void matchesHashSet() {
+        // few distinct values, so adds and removes often hit the same entries and clusters form
+        Random random = new Random(1);
+        UUID[] values = new UUID[500];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = new UUID(random.nextInt(64), random.nextLong());
+        }
+
+        UuidSet set = new UuidSet();
+        Set<UUID> expected = new HashSet<>();
+        for (int i = 0; i < 100_000; i++) {
+            UUID uuid = values[random.nextInt(values.length)];
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(uuid), set.remove(uuid));
+            } else {
+                assertEquals(expected.add(uuid), set.add(uuid));
+            }
+            assertEquals(expected.size(), set.size());
+        }
+
+        for (UUID uuid : values) {
+            assertEquals(expected.contains(uuid), set.contains(uuid));
+        }
+        assertEquals(expected, new HashSet<>(set.toList()));
+    }
+
+    @Test
+    void copyIsIndependent() {
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+        UuidSet set = new UuidSet();
+        set.add(a);
+
+        UuidSet copy = set.copy();
+        copy.add(b);
+        copy.remove(a);
+
+        assertTrue(set.contains(a));
+        assertFalse(set.contains(b));
+        assertFalse(copy.contains(a));
+        assertTrue(copy.contains(b));
+    }
+
+}